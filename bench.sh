@@ -0,0 +1,13 @@
+#!/bin/bash
+
+# Benchmark script for the Dijkstra engines
+# Any arguments are passed to DijkstraBenchmark, e.g.
+#   ./bench.sh -w 2 -i 3 -t 500 -e customHeap data/graphs/graph1000.graphml
+
+echo "Compiling Java source files..."
+mkdir -p bin bench/bin
+javac -cp lib/jdom-2.0.6/jdom-2.0.6.jar -d bin src/*.java || exit 1
+javac -cp lib/jdom-2.0.6/jdom-2.0.6.jar:bin -d bench/bin bench/*.java || exit 1
+echo
+
+java -Xms1g -Xmx1g -cp lib/jdom-2.0.6/jdom-2.0.6.jar:bin:bench/bin DijkstraBenchmark "$@"
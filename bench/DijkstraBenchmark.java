@@ -0,0 +1,213 @@
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * Micro-benchmark for the Dijkstra engines.
+ * <p>
+ * Each engine is run against the bundled GraphML files and against generated
+ * random graphs of increasing size and density. For every pair the harness
+ * runs timed warmup iterations, then measurement iterations, and reports
+ * throughput (queries per second), average latency per query and bytes
+ * allocated per query (from the per-thread allocation counters, the same
+ * figure the JMH GC profiler reports as gc.alloc.rate.norm). Allocation is
+ * summed over every live thread, so engines that search on a pool, such as
+ * delta-stepping, are charged for their workers too; a thread that exits
+ * mid-iteration takes its count with it.
+ * <p>
+ * Usage: {@code DijkstraBenchmark [-w warmupIterations] [-i iterations]
+ * [-t millisPerIteration] [-e engineFilter] [graphml files...]}
+ */
+public class DijkstraBenchmark {
+
+    /**
+     * A single-source shortest path engine under test
+     */
+    interface Engine {
+        DijkstraShortestPath.DijkstraResult run(Graph graph, Vertex source);
+    }
+
+    /**
+     * A named graph together with the source vertices queries rotate through
+     */
+    static class Workload {
+        final String name;
+        final Graph graph;
+        final Vertex[] sources;
+
+        Workload(String name, Graph graph, long seed) {
+            this.name = name;
+            this.graph = graph;
+            List<Vertex> vertices = graph.getVertices();
+            Random random = new Random(seed);
+            this.sources = new Vertex[Math.min(16, vertices.size())];
+            for (int i = 0; i < sources.length; i++) {
+                sources[i] = vertices.get(random.nextInt(vertices.size()));
+            }
+        }
+    }
+
+    /** The ArrayList engine is O(V^2), so it is skipped above this size */
+    private static final int ARRAY_LIST_LIMIT = 20_000;
+
+    /** Generated graphs as {vertices, average out-degree} */
+    private static final int[][] GENERATED = {
+        {1_000, 4}, {10_000, 4}, {10_000, 16}, {100_000, 4}, {100_000, 16}
+    };
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /** Keeps the JIT from discarding the search results */
+    static long blackhole;
+
+    public static void main(String[] args) throws Exception {
+        int warmup = 3;
+        int iterations = 5;
+        long iterationMillis = 1000;
+        String engineFilter = "";
+        List<String> files = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-w": warmup = Integer.parseInt(args[++i]); break;
+                case "-i": iterations = Integer.parseInt(args[++i]); break;
+                case "-t": iterationMillis = Long.parseLong(args[++i]); break;
+                case "-e": engineFilter = args[++i]; break;
+                default: files.add(args[i]);
+            }
+        }
+        if (files.isEmpty()) {
+            File[] bundled = new File("data/graphs").listFiles((dir, name) -> name.endsWith(".graphml"));
+            if (bundled != null) {
+                Arrays.sort(bundled);
+                for (File f : bundled) {
+                    files.add(f.getPath());
+                }
+            }
+        }
+
+        List<Workload> workloads = new ArrayList<>();
+        for (String file : files) {
+            workloads.add(new Workload(new File(file).getName(), GraphBuilder.buildFromGraphML(file), 42));
+        }
+        for (int[] spec : GENERATED) {
+            Graph g = randomGraph(spec[0], spec[0] * spec[1], 50, 42);
+            workloads.add(new Workload("random_v" + spec[0] + "_d" + spec[1], g, 42));
+        }
+
+        Map<String, Engine> engines = new LinkedHashMap<>();
+        engines.put("priorityQueue", DijkstraShortestPath::dijkstraWithPriorityQueue);
+        engines.put("arrayList", DijkstraShortestPath::dijkstraWithArrayList);
+        engines.put("customHeap", DijkstraHeap::dijkstraWithCustomHeap);
+        // the same engines over the CSR backend, converted once per workload
+        engines.put("priorityQueue/csr", DijkstraShortestPath::dijkstraWithPriorityQueue);
+        engines.put("customHeap/csr", DijkstraHeap::dijkstraWithCustomHeap);
+        engines.put("monotoneQueue/csr", (g, s) -> MonotoneQueueShortestPath.shortestPaths((IndexedGraph) g, s));
+        // same distances as the others, but tied paths may pick a different predecessor
+        engines.put("deltaStepping/csr", (g, s) -> DeltaSteppingShortestPath.shortestPaths((IndexedGraph) g, s));
+
+        System.out.printf("%-34s %-18s %14s %14s %16s%n", "graph", "engine", "ops/s", "us/op", "B/op");
+        for (Workload workload : workloads) {
+            Workload compact = null;
+            for (Map.Entry<String, Engine> engine : engines.entrySet()) {
+                String name = engine.getKey();
+                if (!name.contains(engineFilter)) {
+                    continue;
+                }
+                if (name.startsWith("arrayList") && workload.graph.getVertexCount() > ARRAY_LIST_LIMIT) {
+                    continue;
+                }
+                Workload target = workload;
+                if (name.endsWith("/csr")) {
+                    if (compact == null) {
+                        compact = new Workload(workload.name, CompactGraph.fromGraph(workload.graph), 42);
+                    }
+                    target = compact;
+                }
+                measure(target, name, engine.getValue(), warmup, iterations, iterationMillis);
+            }
+        }
+    }
+
+    private static void measure(Workload workload, String name, Engine engine,
+                                int warmup, int iterations, long iterationMillis) {
+        for (int i = 0; i < warmup; i++) {
+            runIteration(workload, engine, iterationMillis);
+        }
+        long ops = 0;
+        long nanos = 0;
+        long bytes = 0;
+        for (int i = 0; i < iterations; i++) {
+            long[] sample = runIteration(workload, engine, iterationMillis);
+            ops += sample[0];
+            nanos += sample[1];
+            bytes += sample[2];
+        }
+        System.out.printf("%-34s %-18s %14.1f %14.2f %16d%n", workload.name, name,
+                ops * 1e9 / nanos, nanos / 1e3 / ops, bytes / ops);
+    }
+
+    /**
+     * Runs queries for roughly the given time
+     * @return {queries run, elapsed nanoseconds, bytes allocated}
+     */
+    private static long[] runIteration(Workload workload, Engine engine, long iterationMillis) {
+        long deadline = System.nanoTime() + iterationMillis * 1_000_000L;
+        long ops = 0;
+        Map<Long, Long> allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long now;
+        do {
+            Vertex source = workload.sources[(int) (ops % workload.sources.length)];
+            DijkstraShortestPath.DijkstraResult result = engine.run(workload.graph, source);
+            blackhole += result.getDistance(source);
+            ops++;
+            now = System.nanoTime();
+        } while (now < deadline);
+        long allocated = 0;
+        for (Map.Entry<Long, Long> entry : allocatedBytes().entrySet()) {
+            // threads started during the iteration count from zero
+            allocated += entry.getValue() - allocatedBefore.getOrDefault(entry.getKey(), 0L);
+        }
+        return new long[] {ops, now - start, allocated};
+    }
+
+    /**
+     * Reads the allocation counter of every live thread
+     * @return bytes allocated so far, by thread id
+     */
+    private static Map<Long, Long> allocatedBytes() {
+        long[] ids = THREADS.getAllThreadIds();
+        long[] bytes = THREADS.getThreadAllocatedBytes(ids);
+        Map<Long, Long> allocated = new HashMap<>(ids.length * 2);
+        for (int i = 0; i < ids.length; i++) {
+            // -1 for a thread that exited between the two calls
+            if (bytes[i] >= 0) {
+                allocated.put(ids[i], bytes[i]);
+            }
+        }
+        return allocated;
+    }
+
+    /**
+     * Generates a uniform random directed graph with labels "0".."n-1"
+     */
+    static Graph randomGraph(int vertexCount, int edgeCount, int maxWeight, long seed) {
+        Random random = new Random(seed);
+        MyGraph graph = new MyGraph();
+        Vertex[] vertices = new Vertex[vertexCount];
+        for (int i = 0; i < vertexCount; i++) {
+            vertices[i] = new Vertex(String.valueOf(i));
+            graph.addVertex(vertices[i]);
+        }
+        for (int e = 0; e < edgeCount; e++) {
+            int s = random.nextInt(vertexCount);
+            int t = random.nextInt(vertexCount);
+            if (s != t) {
+                graph.addEdge(vertices[s], vertices[t], 1 + random.nextInt(maxWeight));
+            }
+        }
+        return graph;
+    }
+}
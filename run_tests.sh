@@ -69,4 +69,95 @@ echo "data/graphs/random_v100_e1000_w50.graphml 0" | java -cp lib/jdom-2.0.6/jdo
 echo
 
 
+# Single route (5th field) and distance matrix (several sources or "all"),
+# compared against the expected output
+failures=0
+
+check_output() {
+    echo "Actual:"
+    echo "$2"
+    if diff <(echo "$2") "$1" > /dev/null; then
+        echo "PASS"
+    else
+        echo "FAIL: output differs from $1"
+        failures=$((failures + 1))
+    fi
+}
+
+echo "Test 11: Graph10 route from 0 to 5"
+check_output data/graphs/graph10_target5_output.txt \
+    "$(echo "data/graphs/graph10.graphml 0 false true 5" | java -cp lib/jdom-2.0.6/jdom-2.0.6.jar:bin GraphShortestPathDriver)"
+echo
+
+echo "Test 12: Random graph route from 0 to an unreachable vertex"
+check_output data/graphs/random_v10_e10_w50_target8_output.txt \
+    "$(echo "data/graphs/random_v10_e10_w50.graphml 0 false true 8" | java -cp lib/jdom-2.0.6/jdom-2.0.6.jar:bin GraphShortestPathDriver)"
+echo
+
+echo "Test 13: Graph10 distance matrix from 0, 3 and 7"
+check_output data/graphs/graph10_matrix_output.txt \
+    "$(echo "data/graphs/graph10.graphml 0,3,7" | java -cp lib/jdom-2.0.6/jdom-2.0.6.jar:bin GraphShortestPathDriver)"
+echo
+
+echo "Test 14: Random graph distance matrix from all vertices"
+check_output data/graphs/random_v10_e10_w50_matrix_output.txt \
+    "$(echo "data/graphs/random_v10_e10_w50.graphml all" | java -cp lib/jdom-2.0.6/jdom-2.0.6.jar:bin GraphShortestPathDriver)"
+echo
+
+# Incremental repair after a batch of edge updates, compared against a
+# fresh search of the updated graph
+echo "Test 15: Graph10 after raising a tree edge, lowering, raising and inserting edges"
+check_output data/graphs/graph10_dynamic_output.txt \
+    "$(java -cp lib/jdom-2.0.6/jdom-2.0.6.jar:bin DynamicShortestPath data/graphs/graph10.graphml 0 \
+        0,6,40 8,9,2 4,2,30 1,4,3 5,9,1 2> /dev/null)"
+echo
+
+echo "Test 16: Graph100A after a batch of 8 edge updates"
+check_output data/graphs/graph100A_dynamic_output.txt \
+    "$(java -cp lib/jdom-2.0.6/jdom-2.0.6.jar:bin DynamicShortestPath data/graphs/graph100A.graphml 0 \
+        35,30,2 38,10,3 63,43,90 68,51,90 74,72,1 5,29,9 73,59,4 43,36,1 2> /dev/null)"
+echo
+
+# Server mode: the same requests over stdin and over a TCP connection that
+# stays open, answered one at a time and then pipelined
+echo "Test 17: Server over stdin"
+check_output data/graphs/graph10_server_output.txt \
+    "$(printf 'PING\nDIST g 0 5\nPATH g 0 5\nBATCH g 0 1 2 3\nNOPE\nSHUTDOWN\n' | \
+        java -cp lib/jdom-2.0.6/jdom-2.0.6.jar:bin ShortestPathServer --stdin g=data/graphs/graph10.graphml 2> /dev/null)"
+echo
+
+echo "Test 18: Server over TCP"
+server_log=$(mktemp)
+java -cp lib/jdom-2.0.6/jdom-2.0.6.jar:bin ShortestPathServer --port 0 g=data/graphs/graph10.graphml 2> "$server_log" &
+server_pid=$!
+for i in $(seq 50); do
+    port=$(sed -n 's/^listening on port //p' "$server_log")
+    [ -n "$port" ] && break
+    sleep 0.2
+done
+tcp_output=$(
+    exec 3<> /dev/tcp/127.0.0.1/$port
+    # the connection stays open, so each answer must come back before the next request
+    printf 'PING\n' >&3
+    read -t 5 -r line <&3 && echo "$line"
+    printf 'DIST g 0 5\nPATH g 0 5\nBATCH g 0 1 2 3\nNOPE\n' >&3
+    for i in 1 2 3 4; do
+        read -t 5 -r line <&3 && echo "$line"
+    done
+    printf 'SHUTDOWN\n' >&3
+    read -t 5 -r line <&3 && echo "$line"
+    exec 3>&-
+)
+check_output data/graphs/graph10_server_output.txt "$tcp_output"
+# a server that never acknowledged SHUTDOWN would keep the script waiting
+[ "${tcp_output##*$'\n'}" == "OK BYE" ] || kill $server_pid 2> /dev/null
+if ! wait $server_pid; then
+    echo "FAIL: server did not shut down cleanly"
+    failures=$((failures + 1))
+fi
+rm -f "$server_log"
+echo
+
+
 echo "=== All tests completed ==="
+exit $failures
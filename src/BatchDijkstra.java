@@ -0,0 +1,172 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs many single-source searches over one shared read-only graph in parallel.
+ * <p>
+ * Workers pull the next source from a shared counter, so uneven searches
+ * balance themselves, and each worker thread searches with its own
+ * {@link DijkstraWorkspace}. Nothing is shared between workers except the
+ * graph and the output, so throughput scales with the number of threads.
+ */
+public class BatchDijkstra {
+
+    /**
+     * Receives the distances from one source
+     */
+    public interface RowSink {
+        /**
+         * Called once per source, from the worker thread that searched it,
+         * possibly concurrently with calls for other sources.
+         *
+         * @param row the position of the source in the batch
+         * @param source the source vertex
+         * @param distances distance to every vertex by id, Integer.MAX_VALUE
+         *                  if unreachable; the array is reused by the worker
+         *                  after this call returns
+         */
+        void accept(int row, Vertex source, int[] distances);
+    }
+
+    /**
+     * Receives the shortest-path tree from one source
+     */
+    public interface TreeSink {
+        /**
+         * Called once per source, like {@link RowSink#accept}.
+         *
+         * @param row the position of the source in the batch
+         * @param source the source vertex
+         * @param distances distance to every vertex by id, Integer.MAX_VALUE
+         *                  if unreachable
+         * @param predecessors predecessor id of every vertex by id, -1 for
+         *                     the source and unreachable vertices; both arrays
+         *                     are reused by the worker after this call returns
+         */
+        void accept(int row, Vertex source, int[] distances, int[] predecessors);
+    }
+
+    /**
+     * Computes the distance matrix from the given sources on the common ForkJoinPool
+     * @param graph the graph to search
+     * @param sourceLabels the labels of the source vertices
+     * @return distances[row][vertex id], Integer.MAX_VALUE if unreachable
+     */
+    public static int[][] distanceMatrix(IndexedGraph graph, List<String> sourceLabels) {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        return distanceMatrix(graph, sourceLabels, pool, pool.getParallelism());
+    }
+
+    /**
+     * Computes the distance matrix from the given sources
+     * @param graph the graph to search
+     * @param sourceLabels the labels of the source vertices
+     * @param executor the executor to run the workers on
+     * @param parallelism the number of workers to start
+     * @return distances[row][vertex id], Integer.MAX_VALUE if unreachable
+     */
+    public static int[][] distanceMatrix(IndexedGraph graph, List<String> sourceLabels,
+                                         ExecutorService executor, int parallelism) {
+        int[][] matrix = new int[sourceLabels.size()][];
+        run(graph, sourceLabels, executor, parallelism,
+                (row, source, distances) -> matrix[row] = distances.clone());
+        return matrix;
+    }
+
+    /**
+     * Searches from every source and streams each row of distances to a sink.
+     * Blocks until every source has been searched.
+     *
+     * @param graph the graph to search
+     * @param sourceLabels the labels of the source vertices
+     * @param executor the executor to run the workers on
+     * @param parallelism the number of workers to start
+     * @param sink receives one row per source
+     * @throws IllegalArgumentException if a label is not in the graph
+     */
+    public static void run(IndexedGraph graph, List<String> sourceLabels, ExecutorService executor,
+                           int parallelism, RowSink sink) {
+        run(graph, sourceLabels, executor, parallelism, sink, null);
+    }
+
+    /**
+     * Searches from every source and streams each shortest-path tree to a
+     * sink. Blocks until every source has been searched.
+     *
+     * @param graph the graph to search
+     * @param sourceLabels the labels of the source vertices
+     * @param executor the executor to run the workers on
+     * @param parallelism the number of workers to start
+     * @param sink receives one tree per source
+     * @throws IllegalArgumentException if a label is not in the graph
+     */
+    public static void runTrees(IndexedGraph graph, List<String> sourceLabels, ExecutorService executor,
+                                int parallelism, TreeSink sink) {
+        run(graph, sourceLabels, executor, parallelism, null, sink);
+    }
+
+    private static void run(IndexedGraph graph, List<String> sourceLabels, ExecutorService executor,
+                            int parallelism, RowSink rows, TreeSink trees) {
+        int n = graph.getVertexCount();
+        int[] sources = new int[sourceLabels.size()];
+        for (int i = 0; i < sources.length; i++) {
+            Vertex v = graph.getVertex(sourceLabels.get(i));
+            if (v == null) {
+                throw new IllegalArgumentException("Source vertex " + sourceLabels.get(i) + " not found in graph");
+            }
+            sources[i] = graph.indexOf(v);
+        }
+
+        AtomicInteger next = new AtomicInteger();
+        int workers = Math.max(1, Math.min(parallelism, sources.length));
+        List<Future<?>> futures = new ArrayList<>(workers);
+        for (int w = 0; w < workers; w++) {
+            futures.add(executor.submit(() -> {
+                int[] row = new int[n];
+                int[] predecessors = trees == null ? null : new int[n];
+                int i;
+                while ((i = next.getAndIncrement()) < sources.length) {
+                    DijkstraWorkspace workspace = DijkstraWorkspace.forThread(n);
+                    DijkstraHeap.search(graph, sources[i], workspace, DijkstraHeap.DEFAULT_ARITY);
+                    Arrays.fill(row, Integer.MAX_VALUE);
+                    if (predecessors != null) {
+                        Arrays.fill(predecessors, -1);
+                    }
+                    for (int r = 0, reached = workspace.getReachedCount(); r < reached; r++) {
+                        int v = workspace.getReached(r);
+                        row[v] = workspace.getDistance(v);
+                        if (predecessors != null) {
+                            predecessors[v] = workspace.getPredecessor(v);
+                        }
+                    }
+                    if (trees != null) {
+                        trees.accept(i, graph.vertexAt(sources[i]), row, predecessors);
+                    } else {
+                        rows.accept(i, graph.vertexAt(sources[i]), row);
+                    }
+                }
+            }));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(f -> f.cancel(true));
+            throw new CancellationException("Batch search interrupted");
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
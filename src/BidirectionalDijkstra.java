@@ -0,0 +1,171 @@
+import java.util.*;
+
+/**
+ * Point-to-point shortest path search that runs Dijkstra forwards from the
+ * source and backwards from the target at the same time.
+ * <p>
+ * Each side settles roughly the vertices within half the path length of its
+ * endpoint, so on large graphs far fewer vertices are touched than by a
+ * single search that stops at the target.
+ */
+public class BidirectionalDijkstra {
+
+    /** Reverse index per graph, dropped along with the graph */
+    private static final Map<IndexedGraph, ReverseAdjacencyIndex> REVERSES =
+            Collections.synchronizedMap(new WeakHashMap<>());
+    /** Forward and backward search state of the calling thread */
+    private static final ThreadLocal<DijkstraWorkspace[]> WORKSPACES = new ThreadLocal<>();
+
+    /**
+     * Shortest path from source to target, using the graph's cached reverse
+     * index and the calling thread's workspaces.
+     */
+    public static DijkstraShortestPath.DijkstraResult shortestPath(IndexedGraph graph, Vertex source, Vertex target) {
+        return shortestPath(graph, reverseIndex(graph), source, target);
+    }
+
+    /**
+     * Returns the reverse adjacency index of a graph, building it on first use.
+     * The graph must not change afterwards.
+     * <p>
+     * Time complexity: O(V + E) once per graph, O(1) after that
+     * @param graph the graph to index
+     * @return the shared reverse index of the graph
+     */
+    public static ReverseAdjacencyIndex reverseIndex(IndexedGraph graph) {
+        ReverseAdjacencyIndex reverse = REVERSES.get(graph);
+        if (reverse == null) {
+            reverse = new ReverseAdjacencyIndex(graph);
+            REVERSES.put(graph, reverse);
+        }
+        return reverse;
+    }
+
+    /**
+     * Shortest path from source to target, searching with the calling thread's workspaces.
+     *
+     * @param graph the graph containing vertices
+     * @param reverse the reverse adjacency index of the graph
+     * @param source the source vertex
+     * @param target the target vertex
+     * @return a DijkstraResult holding the path from source to target, if any
+     */
+    public static DijkstraShortestPath.DijkstraResult shortestPath(IndexedGraph graph, ReverseAdjacencyIndex reverse,
+                                                                   Vertex source, Vertex target) {
+        int n = graph.getVertexCount();
+        DijkstraWorkspace[] pair = WORKSPACES.get();
+        if (pair == null || pair[0].capacity() < n) {
+            pair = new DijkstraWorkspace[] {new DijkstraWorkspace(n), new DijkstraWorkspace(n)};
+            WORKSPACES.set(pair);
+        }
+        pair[0].begin();
+        pair[1].begin();
+        return shortestPath(graph, reverse, source, target, pair[0], pair[1]);
+    }
+
+    /**
+     * Shortest path from source to target.
+     * <p>
+     * The search state lives in the two workspaces, so a query touches only
+     * the vertices the two halves reach and allocates nothing in O(V). The
+     * result only records the vertices on the path: getDistance and getPath
+     * are exact for the target and for every vertex on its path, and report
+     * no path for every other vertex.
+     *
+     * @param graph the graph containing vertices
+     * @param reverse the reverse adjacency index of the graph
+     * @param source the source vertex
+     * @param target the target vertex
+     * @param forward the workspace for the forward half, started for this query
+     * @param backward the workspace for the backward half, started for this query
+     * @return a DijkstraResult holding the path from source to target, if any
+     * @throws IllegalArgumentException if the source or target is not in the graph
+     */
+    public static DijkstraShortestPath.DijkstraResult shortestPath(IndexedGraph graph, ReverseAdjacencyIndex reverse,
+                                                                   Vertex source, Vertex target,
+                                                                   DijkstraWorkspace forward,
+                                                                   DijkstraWorkspace backward) {
+        int s = graph.indexOf(source);
+        int t = graph.indexOf(target);
+        if (s < 0) {
+            throw new IllegalArgumentException("Source vertex " + source + " not found in graph");
+        }
+        if (t < 0) {
+            throw new IllegalArgumentException("Target vertex " + target + " not found in graph");
+        }
+        IndexedDaryHeap forwardHeap = forward.heap(DijkstraHeap.DEFAULT_ARITY);
+        IndexedDaryHeap backwardHeap = backward.heap(DijkstraHeap.DEFAULT_ARITY);
+
+        forward.update(s, 0, -1);
+        backward.update(t, 0, -1);
+        forwardHeap.insert(s, 0);
+        backwardHeap.insert(t, 0);
+
+        // best complete path found so far and the vertex where its halves meet
+        long best = s == t ? 0 : Long.MAX_VALUE;
+        int meeting = s == t ? s : -1;
+
+        while (!forwardHeap.isEmpty() && !backwardHeap.isEmpty()) {
+            long forwardTop = forwardHeap.getKey(forwardHeap.peek());
+            long backwardTop = backwardHeap.getKey(backwardHeap.peek());
+            // no unsettled vertex can lie on a shorter path
+            if (forwardTop + backwardTop >= best) {
+                break;
+            }
+
+            if (forwardTop <= backwardTop) {
+                int u = forwardHeap.extractMin();
+                int du = forward.getDistance(u);
+                for (int e = graph.edgeStart(u), end = graph.edgeEnd(u); e < end; e++) {
+                    int v = graph.edgeTarget(e);
+                    int newDistance = du + graph.edgeWeight(e);
+                    if (newDistance < forward.getDistance(v)) {
+                        forward.update(v, newDistance, u);
+                        forwardHeap.decreaseKey(v, newDistance);
+                        int dv = backward.getDistance(v);
+                        if (dv != Integer.MAX_VALUE && (long) newDistance + dv < best) {
+                            best = (long) newDistance + dv;
+                            meeting = v;
+                        }
+                    }
+                }
+            } else {
+                int u = backwardHeap.extractMin();
+                int du = backward.getDistance(u);
+                for (int e = reverse.edgeStart(u), end = reverse.edgeEnd(u); e < end; e++) {
+                    int v = reverse.edgeSource(e);
+                    int newDistance = du + reverse.edgeWeight(e);
+                    // the backward predecessor of v is its successor on the way to the target
+                    if (newDistance < backward.getDistance(v)) {
+                        backward.update(v, newDistance, u);
+                        backwardHeap.decreaseKey(v, newDistance);
+                        int dv = forward.getDistance(v);
+                        if (dv != Integer.MAX_VALUE && (long) newDistance + dv < best) {
+                            best = (long) newDistance + dv;
+                            meeting = v;
+                        }
+                    }
+                }
+            }
+        }
+
+        Map<Vertex, Integer> distances = new HashMap<>();
+        Map<Vertex, Vertex> predecessors = new HashMap<>();
+        if (meeting >= 0) {
+            // forward half: meeting vertex back to the source
+            for (int v = meeting; v >= 0; v = forward.getPredecessor(v)) {
+                distances.put(graph.vertexAt(v), forward.getDistance(v));
+                if (forward.getPredecessor(v) >= 0) {
+                    predecessors.put(graph.vertexAt(v), graph.vertexAt(forward.getPredecessor(v)));
+                }
+            }
+            // backward half: meeting vertex on to the target
+            for (int v = meeting; backward.getPredecessor(v) >= 0; v = backward.getPredecessor(v)) {
+                int next = backward.getPredecessor(v);
+                distances.put(graph.vertexAt(next), (int) best - backward.getDistance(next));
+                predecessors.put(graph.vertexAt(next), graph.vertexAt(v));
+            }
+        }
+        return new DijkstraShortestPath.DijkstraResult(distances, predecessors, source);
+    }
+}
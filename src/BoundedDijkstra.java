@@ -0,0 +1,272 @@
+import java.util.*;
+
+/**
+ * Dijkstra searches that stop early, for queries that only need the part of
+ * the shortest-path tree near the source:
+ * <ul>
+ *   <li>{@link #withinRadius}: every vertex within a distance of the source,
+ *       as for an isochrone;</li>
+ *   <li>{@link #nearestTargets}: the k nearest vertices of a target set, as
+ *       for the nearest depots to a point;</li>
+ *   <li>{@link #multiSource}: one search from several sources at once that
+ *       records which source reaches each vertex first, as for the nearest
+ *       depot to every point.</li>
+ * </ul>
+ * Vertices beyond the radius never enter the queue, and a search stops as
+ * soon as its k-th target is settled. The state lives in the thread's
+ * {@link DijkstraWorkspace} and the results only hold the settled vertices,
+ * so a query costs time proportional to the region it explores rather than
+ * to the size of the graph.
+ */
+public class BoundedDijkstra {
+
+    /** Radius that never stops a search */
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    /**
+     * Shortest paths to every vertex within a distance of the source.
+     * <p>
+     * Time complexity: O((V' + E') log V'), for the V' vertices within the
+     * radius and their E' edges
+     * @param graph the graph containing vertices
+     * @param source the source vertex
+     * @param radius the largest distance to settle
+     * @return a DijkstraResult holding exactly the vertices within the radius
+     * @throws IllegalArgumentException if the source is not in the graph or the radius is negative
+     */
+    public static DijkstraShortestPath.DijkstraResult withinRadius(IndexedGraph graph, Vertex source, int radius) {
+        DijkstraWorkspace workspace = DijkstraWorkspace.forThread(graph.getVertexCount());
+        IntList settled = search(graph, sourceIds(graph, Collections.singletonList(source)), workspace,
+                radius, null, 0);
+        Map<Vertex, Integer> distances = new HashMap<>(settled.size * 2);
+        Map<Vertex, Vertex> predecessors = new HashMap<>(settled.size * 2);
+        collect(graph, workspace, settled, distances, predecessors);
+        return new DijkstraShortestPath.DijkstraResult(distances, predecessors, source);
+    }
+
+    /**
+     * Shortest paths to the k vertices of a target set nearest to the source.
+     * <p>
+     * Time complexity: O((V' + E') log V' + T log T), for the V' vertices no
+     * farther than the k-th target, their E' edges and the T targets
+     * @param graph the graph containing vertices
+     * @param source the source vertex
+     * @param targets the candidate targets; the source itself counts if it is one
+     * @param k how many targets to find
+     * @return the targets found, nearest first, with the paths to them and
+     *         to every other vertex settled on the way
+     * @throws IllegalArgumentException if a vertex is not in the graph or k is negative
+     */
+    public static TargetResult nearestTargets(IndexedGraph graph, Vertex source, Collection<Vertex> targets, int k) {
+        return nearestTargets(graph, source, targets, k, UNBOUNDED);
+    }
+
+    /**
+     * Shortest paths to the k vertices of a target set nearest to the source,
+     * looking no farther than a radius. Fewer than k targets are returned
+     * when fewer are reachable within it.
+     * @param graph the graph containing vertices
+     * @param source the source vertex
+     * @param targets the candidate targets; the source itself counts if it is one
+     * @param k how many targets to find
+     * @param radius the largest distance to settle
+     * @return the targets found, nearest first, with the paths to them and
+     *         to every other vertex settled on the way
+     * @throws IllegalArgumentException if a vertex is not in the graph, or k or the radius is negative
+     */
+    public static TargetResult nearestTargets(IndexedGraph graph, Vertex source, Collection<Vertex> targets,
+                                              int k, int radius) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative: " + k);
+        }
+        int[] targetIds = vertexIds(graph, targets, "Target");
+        Arrays.sort(targetIds);
+        DijkstraWorkspace workspace = DijkstraWorkspace.forThread(graph.getVertexCount());
+        IntList settled = search(graph, sourceIds(graph, Collections.singletonList(source)), workspace,
+                radius, targetIds, k);
+        Map<Vertex, Integer> distances = new HashMap<>(settled.size * 2);
+        Map<Vertex, Vertex> predecessors = new HashMap<>(settled.size * 2);
+        collect(graph, workspace, settled, distances, predecessors);
+        List<Vertex> found = new ArrayList<>(Math.min(k, targetIds.length));
+        for (int i = 0; i < settled.size && found.size() < k; i++) {
+            if (Arrays.binarySearch(targetIds, settled.data[i]) >= 0) {
+                found.add(graph.vertexAt(settled.data[i]));
+            }
+        }
+        return new TargetResult(distances, predecessors, source, found);
+    }
+
+    /**
+     * Shortest paths from the nearest of several sources to every vertex,
+     * as if one search ran from a virtual vertex with a zero-weight edge to
+     * each source. Where two sources are equally near, the vertex goes to
+     * the one whose path reached it first.
+     * <p>
+     * Time complexity: O((V' + E') log V'), for the V' vertices within the
+     * radius of some source and their E' edges
+     * @param graph the graph containing vertices
+     * @param sources the sources, each at distance 0
+     * @param radius the largest distance to settle, or {@link #UNBOUNDED}
+     * @return a MultiSourceResult holding exactly the vertices within the radius of a source
+     * @throws IllegalArgumentException if a source is not in the graph or the radius is negative
+     */
+    public static MultiSourceResult multiSource(IndexedGraph graph, Collection<Vertex> sources, int radius) {
+        DijkstraWorkspace workspace = DijkstraWorkspace.forThread(graph.getVertexCount());
+        IntList settled = search(graph, sourceIds(graph, sources), workspace, radius, null, 0);
+        Map<Vertex, Integer> distances = new HashMap<>(settled.size * 2);
+        Map<Vertex, Vertex> predecessors = new HashMap<>(settled.size * 2);
+        Map<Vertex, Vertex> origins = new HashMap<>(settled.size * 2);
+        collect(graph, workspace, settled, distances, predecessors);
+        // settle order puts every predecessor before the vertices it leads to
+        for (int i = 0; i < settled.size; i++) {
+            Vertex vertex = graph.vertexAt(settled.data[i]);
+            Vertex predecessor = predecessors.get(vertex);
+            origins.put(vertex, predecessor == null ? vertex : origins.get(predecessor));
+        }
+        return new MultiSourceResult(distances, predecessors, origins);
+    }
+
+    /**
+     * Bounded search by vertex id, leaving the distances and predecessors in
+     * the workspace. The workspace must have been started for this query
+     * with {@link DijkstraWorkspace#begin()}.
+     *
+     * @param graph the graph containing vertices
+     * @param sources the ids of the sources, each at distance 0
+     * @param workspace the search state to fill
+     * @param radius the largest distance to settle, or {@link #UNBOUNDED}
+     * @param sortedTargets target ids in ascending order, or null for none
+     * @param k stop once this many targets are settled; ignored without targets
+     * @return the ids of the settled vertices, in the order they were settled
+     */
+    static IntList search(IndexedGraph graph, int[] sources, DijkstraWorkspace workspace, int radius,
+                          int[] sortedTargets, int k) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("radius must not be negative: " + radius);
+        }
+        IntList settled = new IntList();
+        if (sortedTargets != null && (k == 0 || sortedTargets.length == 0)) {
+            return settled;
+        }
+        IndexedDaryHeap heap = workspace.heap(DijkstraHeap.DEFAULT_ARITY);
+        long start = SearchMetrics.start();
+        long relaxed = 0, improved = 0;
+        int peak = 0, found = 0;
+        for (int s : sources) {
+            if (workspace.getDistance(s) != 0) {
+                workspace.update(s, 0, -1);
+                heap.insert(s, 0);
+            }
+        }
+        peak = heap.size();
+
+        while (!heap.isEmpty()) {
+            int current = heap.extractMin();
+            workspace.settle(current);
+            settled.add(current);
+            if (sortedTargets != null && Arrays.binarySearch(sortedTargets, current) >= 0 && ++found == k) {
+                break;
+            }
+            int currentDistance = workspace.getDistance(current);
+
+            for (int e = graph.edgeStart(current), end = graph.edgeEnd(current); e < end; e++) {
+                int neighbor = graph.edgeTarget(e);
+                if (!workspace.isSettled(neighbor)) {
+                    relaxed++;
+                    int newDistance = currentDistance + graph.edgeWeight(e);
+                    // vertices beyond the radius are never queued
+                    if (newDistance <= radius && newDistance < workspace.getDistance(neighbor)) {
+                        workspace.update(neighbor, newDistance, current);
+                        heap.decreaseKey(neighbor, newDistance);
+                        improved++;
+                        peak = Math.max(peak, heap.size());
+                    }
+                }
+            }
+        }
+        if (SearchMetrics.enabled()) {
+            int inserts = workspace.getReachedCount();
+            SearchMetrics.record(new SearchStats("bounded/csr", start, settled.size, relaxed, improved,
+                    0, inserts, improved + sources.length - inserts, peak));
+        }
+        return settled;
+    }
+
+    private static void collect(IndexedGraph graph, DijkstraWorkspace workspace, IntList settled,
+                                Map<Vertex, Integer> distances, Map<Vertex, Vertex> predecessors) {
+        for (int i = 0; i < settled.size; i++) {
+            int v = settled.data[i];
+            distances.put(graph.vertexAt(v), workspace.getDistance(v));
+            int predecessor = workspace.getPredecessor(v);
+            if (predecessor >= 0) {
+                predecessors.put(graph.vertexAt(v), graph.vertexAt(predecessor));
+            }
+        }
+    }
+
+    private static int[] sourceIds(IndexedGraph graph, Collection<Vertex> sources) {
+        return vertexIds(graph, sources, "Source");
+    }
+
+    private static int[] vertexIds(IndexedGraph graph, Collection<Vertex> vertices, String role) {
+        int[] ids = new int[vertices.size()];
+        int i = 0;
+        for (Vertex vertex : vertices) {
+            int id = graph.indexOf(vertex);
+            if (id < 0) {
+                throw new IllegalArgumentException(role + " vertex " + vertex + " not found in graph");
+            }
+            ids[i++] = id;
+        }
+        return ids;
+    }
+
+    /**
+     * Result of a k-nearest-target search: the targets found, nearest first,
+     * plus the distances and paths of every vertex settled before the search
+     * stopped.
+     */
+    public static class TargetResult extends DijkstraShortestPath.DijkstraResult {
+
+        private final List<Vertex> targets;
+
+        TargetResult(Map<Vertex, Integer> distances, Map<Vertex, Vertex> predecessors, Vertex source,
+                     List<Vertex> targets) {
+            super(distances, predecessors, source);
+            this.targets = Collections.unmodifiableList(targets);
+        }
+
+        /**
+         * Get the targets found, in order of distance from the source
+         */
+        public List<Vertex> getTargets() {
+            return targets;
+        }
+    }
+
+    /**
+     * Result of a multi-source search. Paths start at the source nearest to
+     * their end vertex; getSource() is null, since there is no single one.
+     */
+    public static class MultiSourceResult extends DijkstraShortestPath.DijkstraResult {
+
+        private final Map<Vertex, Vertex> origins;
+
+        MultiSourceResult(Map<Vertex, Integer> distances, Map<Vertex, Vertex> predecessors,
+                          Map<Vertex, Vertex> origins) {
+            super(distances, predecessors, null);
+            this.origins = origins;
+        }
+
+        /**
+         * Returns the source whose shortest path reaches the given vertex,
+         * or null if no source reached it within the radius.
+         *
+         * @param vertex the vertex
+         * @return the nearest source to the vertex
+         */
+        public Vertex getOrigin(Vertex vertex) {
+            return origins.get(vertex);
+        }
+    }
+}
@@ -0,0 +1,410 @@
+import java.util.*;
+
+/**
+ * Immutable weighted directed graph stored in compressed sparse row (CSR) form.
+ * <p>
+ * Vertices get dense ids in label order. The edges leaving vertex {@code v}
+ * are stored contiguously in {@code targets} and {@code weights} between
+ * {@code offsets[v]} and {@code offsets[v + 1]}, so an edge costs two ints
+ * instead of a boxed Integer and a HashMap entry.
+ */
+public class CompactGraph implements IndexedGraph {
+
+    private final Vertex[] vertices;
+    private final LabelIndex labelIndex;
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] weights;
+    private final int maxWeight;
+
+    /**
+     * Creates a graph from prepared CSR arrays.
+     * @param vertices the vertices, sorted by label
+     * @param offsets edge offsets per vertex, of length vertices.length + 1
+     * @param targets target vertex id per edge
+     * @param weights weight per edge
+     */
+    CompactGraph(Vertex[] vertices, int[] offsets, int[] targets, int[] weights) {
+        this(vertices, offsets, targets, weights, true);
+    }
+
+    /**
+     * @param bindOrdinals whether to record each vertex's id in the vertex,
+     *                     for O(1) indexOf; off for graphs that share their
+     *                     vertices with another graph using the same ids
+     */
+    private CompactGraph(Vertex[] vertices, int[] offsets, int[] targets, int[] weights, boolean bindOrdinals) {
+        this.vertices = vertices;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        int max = 0;
+        for (int weight : weights) {
+            max = Math.max(max, weight);
+        }
+        this.maxWeight = max;
+        this.labelIndex = new LabelIndex(vertices);
+        if (bindOrdinals) {
+            for (int i = 0; i < vertices.length; i++) {
+                vertices[i].bindOrdinal(this, i);
+            }
+        }
+    }
+
+    /**
+     * Copies any graph into CSR form.
+     * <p>
+     * The edges of each vertex keep the iteration order of
+     * {@code graph.getAdjacentVertices}, so searches break ties the same way
+     * on both representations. The copy numbers its own Vertex objects and
+     * leaves those of the source graph untouched, so the caller's vertices
+     * never keep a copy alive; they are still accepted by label.
+     * <p>
+     * Time complexity: O(V log V + E)
+     * @param graph the graph to copy
+     * @return an immutable copy of the graph
+     */
+    public static CompactGraph fromGraph(Graph graph) {
+        if (graph instanceof CompactGraph) {
+            return (CompactGraph) graph;
+        }
+        List<Vertex> vertexList = graph.getVertices();
+        Vertex[] vertices = new Vertex[vertexList.size()];
+        Map<Vertex, Integer> index = new HashMap<>(vertices.length * 2);
+        for (int i = 0; i < vertices.length; i++) {
+            vertices[i] = new Vertex(vertexList.get(i).getLabel());
+            index.put(vertices[i], i);
+        }
+
+        int[] offsets = new int[vertices.length + 1];
+        for (int i = 0; i < vertices.length; i++) {
+            offsets[i + 1] = offsets[i] + graph.getAdjacentVertices(vertexList.get(i)).size();
+        }
+
+        int[] targets = new int[offsets[vertices.length]];
+        int[] weights = new int[targets.length];
+        for (int i = 0; i < vertices.length; i++) {
+            int e = offsets[i];
+            for (Map.Entry<Vertex, Integer> entry : graph.getAdjacentVertices(vertexList.get(i)).entrySet()) {
+                targets[e] = index.get(entry.getKey());
+                weights[e] = entry.getValue();
+                e++;
+            }
+        }
+        return new CompactGraph(vertices, offsets, targets, weights);
+    }
+
+    /**
+     * Builds the reverse of a graph, with every edge pointing the other way.
+     * The vertices and their ids are shared with the original graph, so a
+     * search of the reverse graph computes distances to a vertex.
+     * <p>
+     * Time complexity: O(V + E)
+     * @param graph the graph to reverse
+     * @return the reversed graph
+     */
+    public static CompactGraph reverse(IndexedGraph graph) {
+        int n = graph.getVertexCount();
+        Vertex[] vertices = new Vertex[n];
+        for (int v = 0; v < n; v++) {
+            vertices[v] = graph.vertexAt(v);
+        }
+        ReverseAdjacencyIndex reverse = new ReverseAdjacencyIndex(graph);
+        int[] offsets = new int[n + 1];
+        int[] targets = new int[graph.getEdgeCount()];
+        int[] weights = new int[targets.length];
+        for (int v = 0; v < n; v++) {
+            offsets[v] = reverse.edgeStart(v);
+            for (int e = reverse.edgeStart(v), end = reverse.edgeEnd(v); e < end; e++) {
+                targets[e] = reverse.edgeSource(e);
+                weights[e] = reverse.edgeWeight(e);
+            }
+        }
+        offsets[n] = targets.length;
+        // the vertices stay bound to the forward graph, which gives them the same ids
+        return new CompactGraph(vertices, offsets, targets, weights, false);
+    }
+
+    /**
+     * Incremental builder that collects labelled vertices and edges in
+     * primitive buffers and packs them into a CompactGraph, without ever
+     * creating a map-backed graph.
+     * <p>
+     * As with {@link MyGraph#addEdge}, edges may name vertices that were not
+     * added yet, and a repeated edge keeps the last weight given.
+     */
+    public static class Builder implements GraphSink {
+
+        private final Map<String, Integer> labelIds = new HashMap<>();
+        private final List<String> labels = new ArrayList<>();
+        private int[] edgeSources = new int[16];
+        private int[] edgeTargets = new int[16];
+        private int[] edgeWeights = new int[16];
+        private int edgeCount;
+
+        @Override
+        public void addVertex(String label) {
+            idOf(label);
+        }
+
+        @Override
+        public void addEdge(String source, String target, int weight) {
+            int s = idOf(source);
+            int t = idOf(target);
+            if (edgeCount == edgeSources.length) {
+                int capacity = edgeCount * 2;
+                edgeSources = Arrays.copyOf(edgeSources, capacity);
+                edgeTargets = Arrays.copyOf(edgeTargets, capacity);
+                edgeWeights = Arrays.copyOf(edgeWeights, capacity);
+            }
+            edgeSources[edgeCount] = s;
+            edgeTargets[edgeCount] = t;
+            edgeWeights[edgeCount] = weight;
+            edgeCount++;
+        }
+
+        private int idOf(String label) {
+            Integer id = labelIds.get(label);
+            if (id == null) {
+                id = labels.size();
+                labelIds.put(label, id);
+                labels.add(label);
+            }
+            return id;
+        }
+
+        /**
+         * Packs the collected vertices and edges into CSR arrays.
+         * <p>
+         * Time complexity: O(V log V + E)
+         * @return the finished graph
+         */
+        public CompactGraph build() {
+            int n = labels.size();
+
+            // number vertices in label order, as getVertices() returns them
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> labels.get(a).compareTo(labels.get(b)));
+            Vertex[] vertices = new Vertex[n];
+            int[] rank = new int[n];
+            for (int i = 0; i < n; i++) {
+                vertices[i] = new Vertex(labels.get(order[i]));
+                rank[order[i]] = i;
+            }
+            return pack(vertices, rank, edgeSources, edgeTargets, edgeWeights, edgeCount);
+        }
+    }
+
+    /**
+     * Packs an edge list in file order into a CompactGraph: a stable
+     * counting sort by source, then repeated edges collapsed as by
+     * {@link MyGraph#addEdge}.
+     * <p>
+     * Time complexity: O(V + E)
+     * @param vertices the vertices, sorted by label
+     * @param rank the vertex id of each endpoint id used in the edge list,
+     *             or null if the edge list already uses vertex ids
+     * @param edgeSources source of each edge
+     * @param edgeTargets target of each edge
+     * @param edgeWeights weight of each edge
+     * @param edgeCount the number of edges in the arrays
+     * @return the finished graph
+     */
+    static CompactGraph pack(Vertex[] vertices, int[] rank, int[] edgeSources, int[] edgeTargets,
+                             int[] edgeWeights, int edgeCount) {
+        int n = vertices.length;
+        // counting sort of the edges by source, keeping insertion order
+        int[] offsets = new int[n + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            int s = rank == null ? edgeSources[e] : rank[edgeSources[e]];
+            offsets[s + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] targets = new int[edgeCount];
+        int[] weights = new int[edgeCount];
+        int[] next = Arrays.copyOf(offsets, n);
+        for (int e = 0; e < edgeCount; e++) {
+            int s = rank == null ? edgeSources[e] : rank[edgeSources[e]];
+            int slot = next[s]++;
+            targets[slot] = rank == null ? edgeTargets[e] : rank[edgeTargets[e]];
+            weights[slot] = edgeWeights[e];
+        }
+        return dropDuplicateEdges(vertices, offsets, targets, weights);
+    }
+
+    /**
+     * Collapses repeated source/target pairs into their first slot with the
+     * last weight, matching the overwrite semantics of MyGraph.addEdge.
+     */
+    private static CompactGraph dropDuplicateEdges(Vertex[] vertices, int[] offsets, int[] targets, int[] weights) {
+        int n = vertices.length;
+        int[] slotOf = new int[n];
+        Arrays.fill(slotOf, -1);
+        int write = 0;
+        int rowStart = 0;
+        for (int v = 0; v < n; v++) {
+            int rowEnd = offsets[v + 1];
+            offsets[v] = write;
+            for (int e = rowStart; e < rowEnd; e++) {
+                int t = targets[e];
+                if (slotOf[t] >= 0) {
+                    weights[slotOf[t]] = weights[e];
+                } else {
+                    slotOf[t] = write;
+                    targets[write] = t;
+                    weights[write] = weights[e];
+                    write++;
+                }
+            }
+            for (int e = offsets[v]; e < write; e++) {
+                slotOf[targets[e]] = -1;
+            }
+            rowStart = rowEnd;
+        }
+        offsets[n] = write;
+        if (write < targets.length) {
+            targets = Arrays.copyOf(targets, write);
+            weights = Arrays.copyOf(weights, write);
+        }
+        return new CompactGraph(vertices, offsets, targets, weights);
+    }
+
+
+    /**
+     * Not supported, the graph is immutable.
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void addVertex(Vertex vertex) {
+        throw new UnsupportedOperationException("CompactGraph is immutable");
+    }
+
+    /**
+     * Not supported, the graph is immutable.
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void addEdge(Vertex source, Vertex target, int weight) {
+        throw new UnsupportedOperationException("CompactGraph is immutable");
+    }
+
+    /**
+     * Returns a list of all vertices in the graph, sorted by label.
+     * @return a list of all vertices in the graph
+     */
+    @Override
+    public List<Vertex> getVertices() {
+        return Collections.unmodifiableList(Arrays.asList(vertices));
+    }
+
+    /**
+     * Returns a map of adjacent vertices and edge weights.
+     * <p>
+     * The map is built on every call; search code should walk the edge
+     * range with {@link #edgeStart(int)} and {@link #edgeEnd(int)} instead.
+     * @param vertex the vertex for which to return the adjacent vertices
+     * @return a map of adjacent vertices and weights
+     */
+    @Override
+    public Map<Vertex, Integer> getAdjacentVertices(Vertex vertex) {
+        int v = indexOf(vertex);
+        if (v < 0) {
+            return new HashMap<>();
+        }
+        Map<Vertex, Integer> adj = new LinkedHashMap<>();
+        for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+            adj.put(vertices[targets[e]], weights[e]);
+        }
+        return adj;
+    }
+
+    @Override
+    public boolean hasVertex(Vertex vertex) {
+        return indexOf(vertex) >= 0;
+    }
+
+    @Override
+    public Vertex getVertex(String label) {
+        int index = labelIndex.indexOf(label);
+        return index < 0 ? null : vertices[index];
+    }
+
+    @Override
+    public int getVertexCount() {
+        return vertices.length;
+    }
+
+    @Override
+    public int indexOf(Vertex vertex) {
+        int index = vertex.ordinalIn(this);
+        return index >= 0 ? index : labelIndex.indexOf(vertex.getLabel());
+    }
+
+    @Override
+    public Vertex vertexAt(int index) {
+        return vertices[index];
+    }
+
+    @Override
+    public int getEdgeCount() {
+        return targets.length;
+    }
+
+    @Override
+    public int getMaxWeight() {
+        return maxWeight;
+    }
+
+    @Override
+    public int edgeStart(int index) {
+        return offsets[index];
+    }
+
+    @Override
+    public int edgeEnd(int index) {
+        return offsets[index + 1];
+    }
+
+    @Override
+    public int edgeTarget(int edge) {
+        return targets[edge];
+    }
+
+    @Override
+    public int edgeWeight(int edge) {
+        return weights[edge];
+    }
+
+    /**
+     * Returns a string representation of the graph in the same layout as
+     * {@link MyGraph#toString()}.
+     * @return a string representation of the graph
+     */
+    @Override
+    public String toString() {
+        return describe(this);
+    }
+
+    /**
+     * Formats any indexed graph in the same layout as {@link MyGraph#toString()}.
+     * @param graph the graph to format
+     * @return a string representation of the graph
+     */
+    static String describe(IndexedGraph graph) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Graph with  ").append(graph.getVertexCount()).append(" vertices:\n");
+        for (int v = 0; v < graph.getVertexCount(); v++) {
+            sb.append(graph.vertexAt(v).getLabel()).append(" -> ");
+            for (int e = graph.edgeStart(v), end = graph.edgeEnd(v); e < end; e++) {
+                sb.append(graph.vertexAt(graph.edgeTarget(e)).getLabel()).append("(").append(graph.edgeWeight(e)).append(") ");
+            }
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,301 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Contraction hierarchy over an {@link IndexedGraph}: a vertex ranking plus
+ * the upward edges (original edges and shortcuts) of every vertex.
+ * <p>
+ * A query runs a forward search from the source and a backward search from
+ * the target, each only along edges that lead to higher-ranked vertices.
+ * Both searches stay within a small "upward cone", so a route query settles
+ * a few hundred vertices instead of a large part of the graph. Shortcuts
+ * remember the vertex they bypass and are unpacked back into original edges.
+ * <p>
+ * Hierarchies are built by {@link ContractionHierarchyBuilder} and can be
+ * saved with {@link #write(String)} and loaded with {@link #read(String, IndexedGraph)}.
+ */
+public class ContractionHierarchy {
+
+    /** "DJCH" */
+    static final int MAGIC = 0x444A4348;
+    static final int VERSION = 1;
+
+    private final IndexedGraph graph;
+    private final int[] rank;
+    private final UpwardEdges forward;
+    private final UpwardEdges backward;
+    private final ThreadLocal<DijkstraWorkspace[]> workspaces;
+
+    /**
+     * Upward edges in CSR form. For the forward direction the entries of
+     * vertex v are edges v -&gt; other; for the backward direction they are
+     * edges other -&gt; v. A middle of -1 marks an original edge.
+     */
+    static class UpwardEdges {
+        final int[] offsets;
+        final int[] others;
+        final int[] weights;
+        final int[] middles;
+
+        UpwardEdges(int[] offsets, int[] others, int[] weights, int[] middles) {
+            this.offsets = offsets;
+            this.others = others;
+            this.weights = weights;
+            this.middles = middles;
+        }
+
+        int size() {
+            return others.length;
+        }
+    }
+
+    ContractionHierarchy(IndexedGraph graph, int[] rank, UpwardEdges forward, UpwardEdges backward) {
+        this.graph = graph;
+        this.rank = rank;
+        this.forward = forward;
+        this.backward = backward;
+        int n = graph.getVertexCount();
+        this.workspaces = ThreadLocal.withInitial(() -> new DijkstraWorkspace[] {
+            new DijkstraWorkspace(n), new DijkstraWorkspace(n)
+        });
+    }
+
+    public IndexedGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Get the number of shortcut edges added by contraction
+     */
+    public int getShortcutCount() {
+        int count = 0;
+        for (int m : forward.middles) {
+            if (m >= 0) count++;
+        }
+        for (int m : backward.middles) {
+            if (m >= 0) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Shortest path from source to target.
+     * <p>
+     * As with {@link BidirectionalDijkstra}, the result records only the
+     * vertices on the path, with shortcuts unpacked: getPath(target) returns
+     * the same kind of path as a full Dijkstra search.
+     *
+     * @param source the source vertex
+     * @param target the target vertex
+     * @return a DijkstraResult holding the path from source to target, if any
+     * @throws IllegalArgumentException if the source or target is not in the graph
+     */
+    public DijkstraShortestPath.DijkstraResult shortestPath(Vertex source, Vertex target) {
+        int s = graph.indexOf(source);
+        int t = graph.indexOf(target);
+        if (s < 0) {
+            throw new IllegalArgumentException("Source vertex " + source + " not found in graph");
+        }
+        if (t < 0) {
+            throw new IllegalArgumentException("Target vertex " + target + " not found in graph");
+        }
+        DijkstraWorkspace[] pair = workspaces.get();
+        DijkstraWorkspace up = pair[0];
+        DijkstraWorkspace down = pair[1];
+        up.begin();
+        down.begin();
+        IndexedDaryHeap upHeap = up.heap(DijkstraHeap.DEFAULT_ARITY);
+        IndexedDaryHeap downHeap = down.heap(DijkstraHeap.DEFAULT_ARITY);
+
+        up.update(s, 0, -1);
+        down.update(t, 0, -1);
+        upHeap.insert(s, 0);
+        downHeap.insert(t, 0);
+        long best = s == t ? 0 : Long.MAX_VALUE;
+        int meeting = s == t ? s : -1;
+
+        boolean forwardTurn = true;
+        while (true) {
+            // a side is finished once its queue minimum cannot improve the best path
+            boolean upActive = !upHeap.isEmpty() && upHeap.getKey(upHeap.peek()) < best;
+            boolean downActive = !downHeap.isEmpty() && downHeap.getKey(downHeap.peek()) < best;
+            if (!upActive && !downActive) {
+                break;
+            }
+            boolean useForward = upActive && (forwardTurn || !downActive);
+            forwardTurn = !forwardTurn;
+
+            DijkstraWorkspace side = useForward ? up : down;
+            DijkstraWorkspace other = useForward ? down : up;
+            IndexedDaryHeap heap = useForward ? upHeap : downHeap;
+            UpwardEdges edges = useForward ? forward : backward;
+
+            int u = heap.extractMin();
+            side.settle(u);
+            int du = side.getDistance(u);
+            if (other.getDistance(u) != Integer.MAX_VALUE && (long) du + other.getDistance(u) < best) {
+                best = (long) du + other.getDistance(u);
+                meeting = u;
+            }
+            for (int e = edges.offsets[u], end = edges.offsets[u + 1]; e < end; e++) {
+                int v = edges.others[e];
+                int newDistance = du + edges.weights[e];
+                if (newDistance < side.getDistance(v)) {
+                    side.update(v, newDistance, u);
+                    heap.decreaseKey(v, newDistance);
+                }
+            }
+        }
+
+        Map<Vertex, Integer> distances = new HashMap<>();
+        Map<Vertex, Vertex> predecessors = new HashMap<>();
+        if (meeting >= 0) {
+            // hierarchy hops from the source up to the meeting vertex and down to the target
+            IntList hops = new IntList();
+            for (int v = meeting; v >= 0; v = up.getPredecessor(v)) {
+                hops.add(v);
+            }
+            for (int i = 0, j = hops.size - 1; i < j; i++, j--) {
+                int tmp = hops.data[i];
+                hops.data[i] = hops.data[j];
+                hops.data[j] = tmp;
+            }
+            for (int v = down.getPredecessor(meeting); v >= 0; v = down.getPredecessor(v)) {
+                hops.add(v);
+            }
+
+            IntList path = new IntList();
+            IntList pathDistances = new IntList();
+            path.add(hops.data[0]);
+            pathDistances.add(0);
+            for (int i = 0; i + 1 < hops.size; i++) {
+                unpack(hops.data[i], hops.data[i + 1], path, pathDistances);
+            }
+            for (int i = 0; i < path.size; i++) {
+                Vertex v = graph.vertexAt(path.data[i]);
+                distances.put(v, pathDistances.data[i]);
+                if (i > 0) {
+                    predecessors.put(v, graph.vertexAt(path.data[i - 1]));
+                }
+            }
+        }
+        return new DijkstraShortestPath.DijkstraResult(distances, predecessors, source);
+    }
+
+    /**
+     * Expands the hierarchy edge from -&gt; to into original edges, appending
+     * every vertex after from to the path along with its distance.
+     */
+    private void unpack(int from, int to, IntList path, IntList pathDistances) {
+        IntList stack = new IntList();
+        stack.add(to);
+        stack.add(from);
+        while (!stack.isEmpty()) {
+            int a = stack.data[--stack.size];
+            int b = stack.data[--stack.size];
+            int e = findEdge(a, b);
+            UpwardEdges edges = rank[a] < rank[b] ? forward : backward;
+            int middle = edges.middles[e];
+            if (middle < 0) {
+                pathDistances.add(pathDistances.data[pathDistances.size - 1] + edges.weights[e]);
+                path.add(b);
+            } else {
+                // expand a -> middle before middle -> b
+                stack.add(b);
+                stack.add(middle);
+                stack.add(middle);
+                stack.add(a);
+            }
+        }
+    }
+
+    /**
+     * Finds the hierarchy edge a -&gt; b. It is stored with whichever endpoint
+     * was contracted first: in the forward edges of a, or the backward edges of b.
+     * @return the edge index in the corresponding UpwardEdges
+     */
+    private int findEdge(int a, int b) {
+        boolean inForward = rank[a] < rank[b];
+        UpwardEdges edges = inForward ? forward : backward;
+        int owner = inForward ? a : b;
+        int other = inForward ? b : a;
+        int found = -1;
+        for (int e = edges.offsets[owner], end = edges.offsets[owner + 1]; e < end; e++) {
+            if (edges.others[e] == other && (found < 0 || edges.weights[e] < edges.weights[found])) {
+                found = e;
+            }
+        }
+        if (found < 0) {
+            throw new IllegalStateException("Hierarchy has no edge " + a + " -> " + b);
+        }
+        return found;
+    }
+
+    /**
+     * Writes the hierarchy to a file. The graph itself is not written; it
+     * has to be supplied again when the hierarchy is read.
+     * @param file the path of the file to write
+     */
+    public void write(String file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(rank.length);
+            out.writeInt(graph.getEdgeCount());
+            writeInts(out, rank);
+            for (UpwardEdges edges : new UpwardEdges[] {forward, backward}) {
+                out.writeInt(edges.size());
+                writeInts(out, edges.offsets);
+                writeInts(out, edges.others);
+                writeInts(out, edges.weights);
+                writeInts(out, edges.middles);
+            }
+        }
+    }
+
+    /**
+     * Reads a hierarchy written by {@link #write(String)}
+     * @param file the path of the hierarchy file
+     * @param graph the graph the hierarchy was built from
+     * @return the hierarchy
+     * @throws IOException if the file cannot be read or was built for a different graph
+     */
+    public static ContractionHierarchy read(String file, IndexedGraph graph) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a contraction hierarchy");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException(file + " has hierarchy version " + version + ", expected " + VERSION);
+            }
+            int n = in.readInt();
+            int m = in.readInt();
+            if (n != graph.getVertexCount() || m != graph.getEdgeCount()) {
+                throw new IOException(file + " was built for a graph with " + n + " vertices and " + m
+                        + " edges, not " + graph.getVertexCount() + " and " + graph.getEdgeCount());
+            }
+            int[] rank = readInts(in, n);
+            UpwardEdges[] directions = new UpwardEdges[2];
+            for (int d = 0; d < 2; d++) {
+                int size = in.readInt();
+                directions[d] = new UpwardEdges(readInts(in, n + 1), readInts(in, size), readInts(in, size), readInts(in, size));
+            }
+            return new ContractionHierarchy(graph, rank, directions[0], directions[1]);
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in, int count) throws IOException {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+}
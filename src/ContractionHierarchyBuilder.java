@@ -0,0 +1,425 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Preprocessing for {@link ContractionHierarchy}.
+ * <p>
+ * Vertices are contracted in rounds. Each round picks an independent set of
+ * vertices whose priority (edge difference plus contracted neighbours) is
+ * lower than that of every remaining neighbour, then contracts the whole set
+ * in parallel: for every in-neighbour u and out-neighbour w of a contracted
+ * vertex v, a shortcut u -&gt; w is added unless a bounded witness search finds
+ * a path from u to w that is no longer and avoids v. Witness searches also
+ * avoid the other vertices of the round, so two vertices contracted together
+ * never rely on each other as witnesses. Shortcuts are merged on one thread,
+ * then the priorities of the affected neighbours are recomputed in parallel.
+ */
+public class ContractionHierarchyBuilder {
+
+    /**
+     * Receives progress after every contraction round
+     */
+    public interface ProgressListener {
+        void progress(int contracted, int total, int shortcuts);
+    }
+
+    /** Witness searches for real contractions give up after settling this many vertices */
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+
+    /**
+     * Witness searches that only estimate a priority use a smaller limit; a
+     * missed witness only makes the estimate pessimistic
+     */
+    private static final int PRIORITY_SETTLE_LIMIT = 50;
+
+    private final IndexedGraph graph;
+    private final int n;
+    private final ForkJoinPool pool;
+
+    // remaining graph, with edges to contracted vertices filtered on use
+    private final IntList[] outTargets;
+    private final IntList[] outWeights;
+    private final IntList[] outMiddles;
+    private final IntList[] inSources;
+    private final IntList[] inWeights;
+    private final IntList[] inMiddles;
+
+    private final boolean[] contracted;
+    private final boolean[] inRound;
+    private final int[] dirtyMark;
+    private final int[] priority;
+    private final int[] deletedNeighbours;
+    private final int[] rank;
+    private int round;
+    private int shortcutCount;
+
+    private ContractionHierarchyBuilder(IndexedGraph graph, ForkJoinPool pool) {
+        this.graph = graph;
+        this.n = graph.getVertexCount();
+        this.pool = pool;
+        outTargets = new IntList[n];
+        outWeights = new IntList[n];
+        outMiddles = new IntList[n];
+        inSources = new IntList[n];
+        inWeights = new IntList[n];
+        inMiddles = new IntList[n];
+        for (int v = 0; v < n; v++) {
+            outTargets[v] = new IntList(4);
+            outWeights[v] = new IntList(4);
+            outMiddles[v] = new IntList(4);
+            inSources[v] = new IntList(4);
+            inWeights[v] = new IntList(4);
+            inMiddles[v] = new IntList(4);
+        }
+        for (int v = 0; v < n; v++) {
+            for (int e = graph.edgeStart(v), end = graph.edgeEnd(v); e < end; e++) {
+                int w = graph.edgeTarget(e);
+                if (w != v) {
+                    addOrImprove(v, w, graph.edgeWeight(e), -1);
+                }
+            }
+        }
+        contracted = new boolean[n];
+        inRound = new boolean[n];
+        dirtyMark = new int[n];
+        priority = new int[n];
+        deletedNeighbours = new int[n];
+        rank = new int[n];
+    }
+
+    /**
+     * Builds a hierarchy on the common ForkJoinPool without progress output
+     */
+    public static ContractionHierarchy build(IndexedGraph graph) {
+        return build(graph, ForkJoinPool.commonPool(), null);
+    }
+
+    /**
+     * Builds a hierarchy
+     * @param graph the graph to preprocess
+     * @param pool the pool to run witness searches on
+     * @param listener receives progress after every round, may be null
+     * @return the hierarchy
+     */
+    public static ContractionHierarchy build(IndexedGraph graph, ForkJoinPool pool, ProgressListener listener) {
+        return new ContractionHierarchyBuilder(graph, pool).contractAll(listener);
+    }
+
+    private ContractionHierarchy contractAll(ProgressListener listener) {
+        IntList remaining = new IntList(n);
+        for (int v = 0; v < n; v++) {
+            remaining.add(v);
+        }
+        parallelFor(remaining, v -> priority[v] = computePriority(v));
+
+        IntList[] upTargets = new IntList[n];
+        IntList[] upWeights = new IntList[n];
+        IntList[] upMiddles = new IntList[n];
+        IntList[] downSources = new IntList[n];
+        IntList[] downWeights = new IntList[n];
+        IntList[] downMiddles = new IntList[n];
+
+        int contractedCount = 0;
+        while (contractedCount < n) {
+            round++;
+            IntList selected = new IntList();
+            for (int i = 0; i < remaining.size; i++) {
+                int v = remaining.data[i];
+                if (isLocalMinimum(v)) {
+                    selected.add(v);
+                    inRound[v] = true;
+                }
+            }
+
+            // witness searches read the remaining graph, which is not modified until the merge
+            IntList[] shortcuts = new IntList[n];
+            parallelFor(selected, v -> shortcuts[v] = findShortcuts(v, WITNESS_SETTLE_LIMIT));
+
+            IntList neighbours = new IntList();
+            for (int i = 0; i < selected.size; i++) {
+                int v = selected.data[i];
+                // every remaining edge of v leads to a vertex contracted later, so it points upwards
+                upTargets[v] = new IntList(outTargets[v].size);
+                upWeights[v] = new IntList(outTargets[v].size);
+                upMiddles[v] = new IntList(outTargets[v].size);
+                for (int e = 0; e < outTargets[v].size; e++) {
+                    int w = outTargets[v].data[e];
+                    if (!contracted[w]) {
+                        upTargets[v].add(w);
+                        upWeights[v].add(outWeights[v].data[e]);
+                        upMiddles[v].add(outMiddles[v].data[e]);
+                        neighbours.add(w);
+                    }
+                }
+                downSources[v] = new IntList(inSources[v].size);
+                downWeights[v] = new IntList(inSources[v].size);
+                downMiddles[v] = new IntList(inSources[v].size);
+                for (int e = 0; e < inSources[v].size; e++) {
+                    int u = inSources[v].data[e];
+                    if (!contracted[u]) {
+                        downSources[v].add(u);
+                        downWeights[v].add(inWeights[v].data[e]);
+                        downMiddles[v].add(inMiddles[v].data[e]);
+                        neighbours.add(u);
+                    }
+                }
+            }
+            for (int i = 0; i < selected.size; i++) {
+                int v = selected.data[i];
+                contracted[v] = true;
+                inRound[v] = false;
+                rank[v] = contractedCount++;
+            }
+            for (int i = 0; i < selected.size; i++) {
+                int v = selected.data[i];
+                IntList list = shortcuts[v];
+                for (int j = 0; j < list.size; j += 3) {
+                    if (addOrImprove(list.data[j], list.data[j + 1], list.data[j + 2], v)) {
+                        shortcutCount++;
+                    }
+                }
+            }
+
+            IntList dirty = new IntList();
+            for (int i = 0; i < neighbours.size; i++) {
+                int w = neighbours.data[i];
+                if (!contracted[w] && dirtyMark[w] != round) {
+                    dirtyMark[w] = round;
+                    deletedNeighbours[w]++;
+                    dirty.add(w);
+                }
+            }
+            parallelFor(dirty, v -> priority[v] = computePriority(v));
+
+            IntList next = new IntList(remaining.size - selected.size);
+            for (int i = 0; i < remaining.size; i++) {
+                if (!contracted[remaining.data[i]]) {
+                    next.add(remaining.data[i]);
+                }
+            }
+            remaining = next;
+            if (listener != null) {
+                listener.progress(contractedCount, n, shortcutCount);
+            }
+        }
+
+        return new ContractionHierarchy(graph, rank,
+                toCsr(upTargets, upWeights, upMiddles), toCsr(downSources, downWeights, downMiddles));
+    }
+
+    /**
+     * Is v's priority lower than that of every remaining neighbour?
+     * Ties are broken by a hash of the id so that ids do not bias the order.
+     */
+    private boolean isLocalMinimum(int v) {
+        for (int pass = 0; pass < 2; pass++) {
+            IntList others = pass == 0 ? outTargets[v] : inSources[v];
+            for (int e = 0; e < others.size; e++) {
+                int u = others.data[e];
+                if (u != v && !contracted[u] && !before(v, u)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean before(int v, int u) {
+        if (priority[v] != priority[u]) {
+            return priority[v] < priority[u];
+        }
+        int hv = Integer.rotateLeft(v * 0x9E3779B9, 13);
+        int hu = Integer.rotateLeft(u * 0x9E3779B9, 13);
+        return hv != hu ? hv < hu : v < u;
+    }
+
+    /**
+     * Edge difference plus the number of neighbours already contracted
+     */
+    private int computePriority(int v) {
+        int degree = 0;
+        for (int e = 0; e < outTargets[v].size; e++) {
+            if (!contracted[outTargets[v].data[e]]) degree++;
+        }
+        for (int e = 0; e < inSources[v].size; e++) {
+            if (!contracted[inSources[v].data[e]]) degree++;
+        }
+        return findShortcuts(v, PRIORITY_SETTLE_LIMIT).size / 3 - degree + deletedNeighbours[v];
+    }
+
+    /**
+     * Works out which shortcuts contracting v would need
+     * @param settleLimit the settle limit of each witness search
+     * @return triples of (source, target, weight)
+     */
+    private IntList findShortcuts(int v, int settleLimit) {
+        IntList result = new IntList();
+        int maxOut = 0;
+        for (int e = 0; e < outTargets[v].size; e++) {
+            if (!contracted[outTargets[v].data[e]]) {
+                maxOut = Math.max(maxOut, outWeights[v].data[e]);
+            }
+        }
+        for (int i = 0; i < inSources[v].size; i++) {
+            int u = inSources[v].data[i];
+            if (contracted[u] || u == v) {
+                continue;
+            }
+            int weightIn = inWeights[v].data[i];
+            DijkstraWorkspace workspace = witnessSearch(u, v, weightIn + maxOut, settleLimit);
+            for (int j = 0; j < outTargets[v].size; j++) {
+                int w = outTargets[v].data[j];
+                if (contracted[w] || w == u) {
+                    continue;
+                }
+                int via = weightIn + outWeights[v].data[j];
+                if (workspace.getDistance(w) > via) {
+                    result.add(u);
+                    result.add(w);
+                    result.add(via);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Bounded Dijkstra from u over the remaining graph, avoiding v and the
+     * vertices selected in the current round
+     */
+    private DijkstraWorkspace witnessSearch(int u, int v, int maxDistance, int settleLimit) {
+        DijkstraWorkspace workspace = DijkstraWorkspace.forThread(n);
+        IndexedDaryHeap heap = workspace.heap(DijkstraHeap.DEFAULT_ARITY);
+        workspace.update(u, 0, -1);
+        heap.insert(u, 0);
+        int settled = 0;
+        while (!heap.isEmpty() && settled < settleLimit) {
+            int x = heap.extractMin();
+            int dx = workspace.getDistance(x);
+            if (dx > maxDistance) {
+                break;
+            }
+            workspace.settle(x);
+            settled++;
+            IntList targets = outTargets[x];
+            for (int e = 0; e < targets.size; e++) {
+                int y = targets.data[e];
+                if (y == v || contracted[y] || inRound[y]) {
+                    continue;
+                }
+                int newDistance = dx + outWeights[x].data[e];
+                if (newDistance < workspace.getDistance(y)) {
+                    workspace.update(y, newDistance, x);
+                    heap.decreaseKey(y, newDistance);
+                }
+            }
+        }
+        return workspace;
+    }
+
+    /**
+     * Adds the edge u -&gt; w, or lowers its weight if it already exists
+     * @return true if a new edge was added
+     */
+    private boolean addOrImprove(int u, int w, int weight, int middle) {
+        IntList targets = outTargets[u];
+        for (int e = 0; e < targets.size; e++) {
+            if (targets.data[e] == w) {
+                if (weight < outWeights[u].data[e]) {
+                    outWeights[u].data[e] = weight;
+                    outMiddles[u].data[e] = middle;
+                    IntList sources = inSources[w];
+                    for (int f = 0; f < sources.size; f++) {
+                        if (sources.data[f] == u) {
+                            inWeights[w].data[f] = weight;
+                            inMiddles[w].data[f] = middle;
+                        }
+                    }
+                }
+                return false;
+            }
+        }
+        outTargets[u].add(w);
+        outWeights[u].add(weight);
+        outMiddles[u].add(middle);
+        inSources[w].add(u);
+        inWeights[w].add(weight);
+        inMiddles[w].add(middle);
+        return true;
+    }
+
+    private void parallelFor(IntList vertices, java.util.function.IntConsumer body) {
+        int chunks = Math.min(vertices.size, pool.getParallelism() * 4);
+        if (chunks <= 1) {
+            for (int i = 0; i < vertices.size; i++) {
+                body.accept(vertices.data[i]);
+            }
+            return;
+        }
+        List<Callable<Void>> tasks = new ArrayList<>(chunks);
+        for (int c = 0; c < chunks; c++) {
+            int from = (int) ((long) vertices.size * c / chunks);
+            int to = (int) ((long) vertices.size * (c + 1) / chunks);
+            tasks.add(() -> {
+                for (int i = from; i < to; i++) {
+                    body.accept(vertices.data[i]);
+                }
+                return null;
+            });
+        }
+        for (Future<Void> future : pool.invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Contraction interrupted");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+
+    private ContractionHierarchy.UpwardEdges toCsr(IntList[] others, IntList[] weights, IntList[] middles) {
+        int[] offsets = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] = offsets[v] + others[v].size;
+        }
+        int m = offsets[n];
+        int[] otherArray = new int[m];
+        int[] weightArray = new int[m];
+        int[] middleArray = new int[m];
+        for (int v = 0; v < n; v++) {
+            System.arraycopy(others[v].data, 0, otherArray, offsets[v], others[v].size);
+            System.arraycopy(weights[v].data, 0, weightArray, offsets[v], others[v].size);
+            System.arraycopy(middles[v].data, 0, middleArray, offsets[v], others[v].size);
+        }
+        return new ContractionHierarchy.UpwardEdges(offsets, otherArray, weightArray, middleArray);
+    }
+
+    /**
+     * Builds a hierarchy for a graph and writes it to a file.
+     *
+     * @param args the command line arguments: &lt;graph file&gt; &lt;hierarchy file&gt;
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("usage: ContractionHierarchyBuilder <graph file> <hierarchy file>");
+            System.exit(1);
+        }
+        IndexedGraph graph = GraphBuilder.load(args[0]);
+        long start = System.nanoTime();
+        ContractionHierarchy hierarchy = build(graph, ForkJoinPool.commonPool(), (done, total, shortcuts) ->
+                System.err.printf("\rcontracted %d/%d vertices, %d shortcuts", done, total, shortcuts));
+        System.err.println();
+        hierarchy.write(args[1]);
+        System.out.printf("Built hierarchy with %d shortcuts in %d ms, wrote %s%n",
+                hierarchy.getShortcutCount(), (System.nanoTime() - start) / 1_000_000, args[1]);
+    }
+}
@@ -0,0 +1,304 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Parallel single-source shortest paths by delta-stepping (Meyer and Sanders).
+ * <p>
+ * Tentative distances are grouped into buckets of width delta. All vertices
+ * in the lowest non-empty bucket are relaxed together: first their light
+ * edges (weight &lt;= delta), repeatedly, until the bucket stops refilling,
+ * then their heavy edges once. Each of those phases is split across a
+ * ForkJoinPool, so one large query can use every core.
+ * <p>
+ * Distance and predecessor of a vertex are packed into one long and lowered
+ * with compare-and-set, so concurrent relaxations never leave a predecessor
+ * that disagrees with its distance. Distances are identical to those of
+ * {@link DijkstraShortestPath#dijkstraWithPriorityQueue}; where two shortest
+ * paths have equal cost, either may be returned.
+ */
+public class DeltaSteppingShortestPath {
+
+    /** Frontier slices smaller than this are relaxed on the current thread */
+    private static final int GRAIN = 256;
+
+    private static final long UNREACHED = pack(Integer.MAX_VALUE, -1);
+
+    /** Suggested delta per graph, dropped along with the graph */
+    private static final Map<IndexedGraph, Integer> DELTAS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Delta-stepping with the heuristic delta on the common ForkJoinPool.
+     * Distances match the sequential engines, but where two shortest paths
+     * tie the predecessor depends on thread timing, so getPath and the
+     * driver's output may differ from theirs; use a sequential engine when
+     * the exact paths must be reproducible.
+     * @param graph the graph containing vertices
+     * @param source the source vertex
+     * @return a DijkstraResult, containing a map of distances and a map of predecessors
+     */
+    public static DijkstraShortestPath.DijkstraResult shortestPaths(IndexedGraph graph, Vertex source) {
+        return shortestPaths(graph, source, suggestDelta(graph), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Picks a bucket width from the weight range: the largest weight divided
+     * by the average out-degree, so a vertex has about one light edge per
+     * unit of degree, and never less than the smallest non-zero weight. On
+     * the bundled w50 graphs (weights 1 to 50) this gives delta between 5 and 50.
+     * The graph must not change afterwards.
+     * <p>
+     * Time complexity: O(E) once per graph, O(1) after that
+     * @param graph the graph to inspect
+     * @return a bucket width of at least 1
+     */
+    public static int suggestDelta(IndexedGraph graph) {
+        Integer delta = DELTAS.get(graph);
+        if (delta == null) {
+            delta = computeDelta(graph);
+            DELTAS.put(graph, delta);
+        }
+        return delta;
+    }
+
+    private static int computeDelta(IndexedGraph graph) {
+        int n = graph.getVertexCount();
+        int m = graph.getEdgeCount();
+        if (n == 0 || m == 0) {
+            return 1;
+        }
+        int maxWeight = graph.getMaxWeight();
+        int minWeight = Integer.MAX_VALUE;
+        for (int e = 0; e < m; e++) {
+            int w = graph.edgeWeight(e);
+            if (w > 0) {
+                minWeight = Math.min(minWeight, w);
+            }
+        }
+        double averageDegree = (double) m / n;
+        int delta = (int) Math.ceil(maxWeight / Math.max(1.0, averageDegree));
+        if (minWeight != Integer.MAX_VALUE) {
+            delta = Math.max(delta, minWeight);
+        }
+        return Math.max(1, delta);
+    }
+
+    /**
+     * Delta-stepping with an explicit bucket width and pool. As with
+     * {@link #shortestPaths(IndexedGraph, Vertex)}, tied paths may differ
+     * from those of the sequential engines.
+     * @param graph the graph containing vertices
+     * @param source the source vertex
+     * @param delta the bucket width, at least 1
+     * @param pool the pool to relax frontiers on
+     * @return a DijkstraResult, containing a map of distances and a map of predecessors
+     */
+    public static DijkstraShortestPath.DijkstraResult shortestPaths(IndexedGraph graph, Vertex source,
+                                                                    int delta, ForkJoinPool pool) {
+        if (delta < 1) {
+            throw new IllegalArgumentException("delta must be at least 1, got " + delta);
+        }
+        int s = graph.indexOf(source);
+        if (s < 0) {
+            return DijkstraShortestPath.sourceOnly(source);
+        }
+        int n = graph.getVertexCount();
+        AtomicLongArray state = new AtomicLongArray(n);
+        for (int v = 0; v < n; v++) {
+            state.set(v, UNREACHED);
+        }
+
+        int maxWeight = graph.getMaxWeight();
+        // tentative distances never run more than maxWeight past the current bucket
+        Buckets buckets = new Buckets(maxWeight / delta + 2);
+
+        state.set(s, pack(0, -1));
+        buckets.add(0, s);
+
+        int[] frontierStamp = new int[n];
+        int[] settledStamp = new int[n];
+        int phase = 0;
+        IntList settled = new IntList();
+
+        int bucket = 0;
+        while (true) {
+            bucket = buckets.nextNonEmpty(bucket);
+            if (bucket < 0) {
+                break;
+            }
+            settled.clear();
+            int bucketStamp = bucket + 1;
+
+            // light edges can refill the current bucket, so repeat until it stays empty
+            while (!buckets.isEmpty(bucket)) {
+                IntList candidates = buckets.take(bucket);
+                phase++;
+                IntList frontier = new IntList();
+                for (int i = 0; i < candidates.size; i++) {
+                    int v = candidates.data[i];
+                    if (distance(state.get(v)) / delta == bucket && frontierStamp[v] != phase) {
+                        frontierStamp[v] = phase;
+                        frontier.add(v);
+                        if (settledStamp[v] != bucketStamp) {
+                            settledStamp[v] = bucketStamp;
+                            settled.add(v);
+                        }
+                    }
+                }
+                relax(pool, graph, state, buckets, frontier, delta, true);
+            }
+            relax(pool, graph, state, buckets, settled, delta, false);
+        }
+
+        Map<Vertex, Integer> distances = new HashMap<>();
+        Map<Vertex, Vertex> predecessors = new HashMap<>();
+        for (int v = 0; v < n; v++) {
+            long packed = state.get(v);
+            if (distance(packed) != Integer.MAX_VALUE) {
+                distances.put(graph.vertexAt(v), distance(packed));
+                if (predecessor(packed) >= 0) {
+                    predecessors.put(graph.vertexAt(v), graph.vertexAt(predecessor(packed)));
+                }
+            }
+        }
+        return new DijkstraShortestPath.DijkstraResult(distances, predecessors, source);
+    }
+
+    private static void relax(ForkJoinPool pool, IndexedGraph graph, AtomicLongArray state, Buckets buckets,
+                              IntList vertices, int delta, boolean light) {
+        if (vertices.size == 0) {
+            return;
+        }
+        RelaxTask task = new RelaxTask(graph, state, buckets, vertices, 0, vertices.size, delta, light);
+        if (vertices.size <= GRAIN) {
+            task.compute();
+        } else {
+            pool.invoke(task);
+        }
+    }
+
+    /**
+     * Relaxes the light or heavy edges of a slice of the frontier, splitting
+     * the slice in half until it is small enough to run directly.
+     */
+    private static class RelaxTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final IndexedGraph graph;
+        private final AtomicLongArray state;
+        private final Buckets buckets;
+        private final IntList vertices;
+        private final int from;
+        private final int to;
+        private final int delta;
+        private final boolean light;
+
+        RelaxTask(IndexedGraph graph, AtomicLongArray state, Buckets buckets, IntList vertices,
+                  int from, int to, int delta, boolean light) {
+            this.graph = graph;
+            this.state = state;
+            this.buckets = buckets;
+            this.vertices = vertices;
+            this.from = from;
+            this.to = to;
+            this.delta = delta;
+            this.light = light;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > GRAIN) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RelaxTask(graph, state, buckets, vertices, from, mid, delta, light),
+                          new RelaxTask(graph, state, buckets, vertices, mid, to, delta, light));
+                return;
+            }
+            IntList improvedVertices = new IntList();
+            IntList improvedDistances = new IntList();
+            for (int i = from; i < to; i++) {
+                int u = vertices.data[i];
+                int du = distance(state.get(u));
+                for (int e = graph.edgeStart(u), end = graph.edgeEnd(u); e < end; e++) {
+                    int w = graph.edgeWeight(e);
+                    if ((w <= delta) != light) {
+                        continue;
+                    }
+                    int v = graph.edgeTarget(e);
+                    int newDistance = du + w;
+                    long current = state.get(v);
+                    while (newDistance < distance(current)) {
+                        if (state.compareAndSet(v, current, pack(newDistance, u))) {
+                            improvedVertices.add(v);
+                            improvedDistances.add(newDistance);
+                            break;
+                        }
+                        current = state.get(v);
+                    }
+                }
+            }
+            buckets.addAll(improvedVertices, improvedDistances, delta);
+        }
+    }
+
+    /**
+     * Cyclic array of buckets; a bucket holds vertices whose tentative
+     * distance was in its range when added, and stale entries are filtered
+     * when the bucket is taken.
+     */
+    private static class Buckets {
+        private final IntList[] slots;
+
+        Buckets(int count) {
+            slots = new IntList[count];
+            for (int i = 0; i < count; i++) {
+                slots[i] = new IntList();
+            }
+        }
+
+        synchronized void add(int bucket, int vertex) {
+            slots[bucket % slots.length].add(vertex);
+        }
+
+        synchronized void addAll(IntList vertices, IntList distances, int delta) {
+            for (int i = 0; i < vertices.size; i++) {
+                slots[(distances.data[i] / delta) % slots.length].add(vertices.data[i]);
+            }
+        }
+
+        synchronized boolean isEmpty(int bucket) {
+            return slots[bucket % slots.length].size == 0;
+        }
+
+        synchronized IntList take(int bucket) {
+            int slot = bucket % slots.length;
+            IntList taken = slots[slot];
+            slots[slot] = new IntList();
+            return taken;
+        }
+
+        /**
+         * Get the first non-empty bucket at or after the given one, or -1
+         */
+        synchronized int nextNonEmpty(int bucket) {
+            for (int i = 0; i < slots.length; i++) {
+                if (slots[(bucket + i) % slots.length].size > 0) {
+                    return bucket + i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static long pack(int distance, int predecessor) {
+        return ((long) distance << 32) | (predecessor & 0xFFFFFFFFL);
+    }
+
+    private static int distance(long packed) {
+        return (int) (packed >>> 32);
+    }
+
+    private static int predecessor(long packed) {
+        return (int) packed;
+    }
+}
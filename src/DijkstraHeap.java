@@ -153,18 +153,27 @@ public class DijkstraHeap {
     }
     
     /**
-     * Dijkstra using custom heap implementation
+     * Default arity of the primitive heap used for indexed graphs
+     */
+    public static final int DEFAULT_ARITY = 4;
+
+    /**
+     * Dijkstra using custom heap implementation.
+     * IndexedGraphs are searched with an {@link IndexedDaryHeap} of the default arity.
      */
     public static DijkstraShortestPath.DijkstraResult dijkstraWithCustomHeap(Graph graph, Vertex source) {
+        if (graph instanceof IndexedGraph) {
+            return dijkstraWithCustomHeap((IndexedGraph) graph, source, DEFAULT_ARITY);
+        }
         Map<Vertex, Integer> distances = new HashMap<>();
         Map<Vertex, Vertex> predecessors = new HashMap<>();
         Set<Vertex> visited = new HashSet<>();
         DijkstraHeap heap = new DijkstraHeap();
+        long start = SearchMetrics.start();
+        long relaxed = 0, improved = 0, stalePops = 0, inserts = 1;
+        int peak = 1;
         
-        // Initialize distances
-        for (Vertex v : graph.getVertices()) {
-            distances.put(v, Integer.MAX_VALUE);
-        }
+        // Vertices are initialised lazily: a missing distance means infinity
         distances.put(source, 0);
         heap.insert(source, 0);
         
@@ -172,6 +181,7 @@ public class DijkstraHeap {
             Vertex current = heap.extractMin();
             
             if (visited.contains(current)) {
+                stalePops++;
                 continue;
             }
             
@@ -184,16 +194,93 @@ public class DijkstraHeap {
                 int weight = entry.getValue();
                 
                 if (!visited.contains(neighbor)) {
+                    relaxed++;
                     int newDistance = distances.get(current) + weight;
-                    if (newDistance < distances.get(neighbor)) {
+                    Integer oldDistance = distances.get(neighbor);
+                    if (oldDistance == null || newDistance < oldDistance) {
                         distances.put(neighbor, newDistance);
                         predecessors.put(neighbor, current);
                         heap.decreaseKey(neighbor, newDistance);
+                        improved++;
+                        if (oldDistance == null) {
+                            inserts++;
+                            peak = Math.max(peak, heap.size());
+                        }
                     }
                 }
             }
         }
+        if (SearchMetrics.enabled()) {
+            SearchMetrics.record(new SearchStats("customHeap", start, visited.size(), relaxed, improved,
+                    stalePops, inserts, improved + 1 - inserts, peak));
+        }
         
         return new DijkstraShortestPath.DijkstraResult(distances, predecessors, source);
     }
+    
+    /**
+     * Dijkstra using the allocation-free {@link IndexedDaryHeap}.
+     * Each vertex is in the heap at most once and its key is lowered in place,
+     * so there are no stale entries to skip.
+     *
+     * @param graph the graph containing vertices
+     * @param source the source vertex
+     * @param arity the heap arity, one of 2, 4 or 8
+     * @return a DijkstraResult, containing a map of distances and a map of predecessors
+     */
+    public static DijkstraShortestPath.DijkstraResult dijkstraWithCustomHeap(IndexedGraph graph, Vertex source, int arity) {
+        int s = graph.indexOf(source);
+        if (s < 0) {
+            return DijkstraShortestPath.sourceOnly(source);
+        }
+        DijkstraWorkspace workspace = DijkstraWorkspace.forThread(graph.getVertexCount());
+        search(graph, s, workspace, arity);
+        return workspace.toResult(graph, source, false);
+    }
+
+    /**
+     * Full single-source search by vertex id, leaving the distances and
+     * predecessors in the workspace. The workspace must have been started
+     * for this query with {@link DijkstraWorkspace#begin()}.
+     *
+     * @param graph the graph containing vertices
+     * @param source the id of the source vertex
+     * @param workspace the search state to fill
+     * @param arity the heap arity, one of 2, 4 or 8
+     */
+    static void search(IndexedGraph graph, int source, DijkstraWorkspace workspace, int arity) {
+        IndexedDaryHeap heap = workspace.heap(arity);
+        long start = SearchMetrics.start();
+        long relaxed = 0, improved = 0;
+        int settled = 0, peak = 1;
+        workspace.update(source, 0, -1);
+        heap.insert(source, 0);
+
+        while (!heap.isEmpty()) {
+            int current = heap.extractMin();
+            workspace.settle(current);
+            settled++;
+            int currentDistance = workspace.getDistance(current);
+
+            for (int e = graph.edgeStart(current), end = graph.edgeEnd(current); e < end; e++) {
+                int neighbor = graph.edgeTarget(e);
+                if (!workspace.isSettled(neighbor)) {
+                    relaxed++;
+                    int newDistance = currentDistance + graph.edgeWeight(e);
+                    if (newDistance < workspace.getDistance(neighbor)) {
+                        workspace.update(neighbor, newDistance, current);
+                        heap.decreaseKey(neighbor, newDistance);
+                        improved++;
+                        peak = Math.max(peak, heap.size());
+                    }
+                }
+            }
+        }
+        if (SearchMetrics.enabled()) {
+            // every reached vertex was inserted once; the other improvements lowered a key in place
+            int inserts = workspace.getReachedCount();
+            SearchMetrics.record(new SearchStats("customHeap/csr", start, settled, relaxed, improved,
+                    0, inserts, improved + 1 - inserts, peak));
+        }
+    }
 }
@@ -15,6 +15,23 @@ public class DijkstraShortestPath {
             this.predecessors = predecessors;
             this.sourceVertex = sourceVertex;
         }
+
+        /**
+         * For subclasses that keep distances and predecessors in another form
+         * and override getDistance and getPath.
+         */
+        protected DijkstraResult(Vertex sourceVertex) {
+            this(Collections.emptyMap(), Collections.emptyMap(), sourceVertex);
+        }
+
+        /**
+         * Returns the source vertex of the search.
+         *
+         * @return the source vertex
+         */
+        public Vertex getSource() {
+            return sourceVertex;
+        }
         
         /**
          * Returns the shortest distance from the source vertex to the given vertex.
@@ -26,6 +43,17 @@ public class DijkstraShortestPath {
         public int getDistance(Vertex vertex) {
             return distances.getOrDefault(vertex, Integer.MAX_VALUE);
         }
+
+        /**
+         * Returns the vertex before the given vertex on its shortest path,
+         * or null for the source and for unreachable vertices.
+         *
+         * @param vertex the target vertex
+         * @return the predecessor of the vertex in the shortest-path tree
+         */
+        public Vertex getPredecessor(Vertex vertex) {
+            return predecessors.get(vertex);
+        }
         
         /**
          * Returns the shortest path from the source vertex to the given vertex.
@@ -62,21 +90,31 @@ public class DijkstraShortestPath {
             List<Vertex> vertices = graph.getVertices();
             
             for (Vertex vertex : vertices) {
-                List<Vertex> path = getPath(vertex);
-                int distance = getDistance(vertex);
-                
-                System.out.print("shortest path to " + vertex.getLabel() + ": ");
-                
-                if (path.isEmpty()) {
-                    System.out.println("NO PATH");
-                } else {
-                    for (int i = 0; i < path.size(); i++) {
-                       if (i > 0) System.out.print(" ");
-                        System.out.print(path.get(i).getLabel());
-                    }
-                    
-                    System.out.println(": cost = " + distance);
+                printResult(vertex);
+            }
+        }
+
+        /**
+         * Prints the shortest path and distance from the source vertex to one vertex,
+         * in the same format as printResults.
+         *
+         * @param vertex the target vertex
+         */
+        public void printResult(Vertex vertex) {
+            List<Vertex> path = getPath(vertex);
+            int distance = getDistance(vertex);
+
+            System.out.print("shortest path to " + vertex.getLabel() + ": ");
+
+            if (path.isEmpty()) {
+                System.out.println("NO PATH");
+            } else {
+                for (int i = 0; i < path.size(); i++) {
+                   if (i > 0) System.out.print(" ");
+                    System.out.print(path.get(i).getLabel());
                 }
+
+                System.out.println(": cost = " + distance);
             }
         }
     }
@@ -91,6 +129,9 @@ public class DijkstraShortestPath {
      * @return a DijkstraResult, containing a map of distances and a map of predecessors
      */
     public static DijkstraResult dijkstraWithPriorityQueue(Graph graph, Vertex source) {
+        if (graph instanceof IndexedGraph) {
+            return dijkstraIndexed((IndexedGraph) graph, source);
+        }
         Map<Vertex, Integer> distances = new HashMap<>();
         Map<Vertex, Vertex> predecessors = new HashMap<>();
         Set<Vertex> visited = new HashSet<>();
@@ -98,11 +139,12 @@ public class DijkstraShortestPath {
         // Priority queue to select the vertex with the smallest distance
         PriorityQueue<VertexDistance> pq  = new PriorityQueue<>(Comparator.comparingInt(vd -> vd.distance)) ;
         
+        // counters for SearchMetrics; kept in locals so they cost next to nothing when metrics are off
+        long start = SearchMetrics.start();
+        long relaxed = 0, improved = 0, stalePops = 0;
+        int peak = 1;
 
-        // Initialize distances loop through all vertices
-        for (Vertex v : graph.getVertices()) {
-            distances.put(v, Integer.MAX_VALUE);
-        }
+        // Vertices are initialised lazily: a missing distance means infinity
         distances.put(source, 0);
         pq.offer(new VertexDistance(source, 0));
         
@@ -111,6 +153,7 @@ public class DijkstraShortestPath {
             VertexDistance current = pq.poll();
             
             if (visited.contains(current.vertex)) {
+                stalePops++;
                 continue;
             }
             
@@ -125,21 +168,190 @@ public class DijkstraShortestPath {
                 int weight = entry.getValue();
                 
                 if (!visited.contains(neighbor)) {
-
+                    relaxed++;
                     int newDistance = distances.get(current.vertex) +  weight;
-                    if (newDistance <distances.get(neighbor)) {
+                    if (newDistance < distances.getOrDefault(neighbor, Integer.MAX_VALUE)) {
                         distances.put(neighbor, newDistance);
                         predecessors.put(neighbor, current.vertex);
                         //offer is a priority queue operation that adds an element
                         pq.offer(new VertexDistance(neighbor, newDistance));
+                        improved++;
+                        peak = Math.max(peak, pq.size());
                     }
                 }
             }
         }
+        if (SearchMetrics.enabled()) {
+            // every improvement is a fresh insert; the queue has no decreaseKey
+            SearchMetrics.record(new SearchStats("priorityQueue", start, visited.size(), relaxed, improved,
+                    stalePops, improved + 1, 0, peak));
+        }
         // Return the result containing distances and predecessors
         return new DijkstraResult(distances, predecessors, source);
     }
     
+    /**
+     * Point-to-point Dijkstra that stops as soon as the target is settled.
+     * <p>
+     * Only settled vertices are recorded in the result: their distances and
+     * paths are exact, and every other vertex reports no path. Vertices are
+     * initialised lazily, so the work done is proportional to the part of the
+     * graph closer to the source than the target.
+     *
+     * @param graph the graph containing vertices
+     * @param source the source vertex
+     * @param target the target vertex
+     * @return a DijkstraResult, containing the settled distances and predecessors
+     */
+    public static DijkstraResult dijkstraToTarget(Graph graph, Vertex source, Vertex target) {
+        if (graph instanceof IndexedGraph) {
+            return dijkstraToTarget((IndexedGraph) graph, source, target);
+        }
+        Map<Vertex, Integer> distances = new HashMap<>();
+        Map<Vertex, Vertex> predecessors = new HashMap<>();
+        Map<Vertex, Integer> settled = new HashMap<>();
+        Map<Vertex, Vertex> settledPredecessors = new HashMap<>();
+        PriorityQueue<VertexDistance> pq = new PriorityQueue<>(Comparator.comparingInt(vd -> vd.distance));
+
+        distances.put(source, 0);
+        pq.offer(new VertexDistance(source, 0));
+
+        while (!pq.isEmpty()) {
+            VertexDistance current = pq.poll();
+            if (settled.containsKey(current.vertex)) {
+                continue;
+            }
+            settled.put(current.vertex, current.distance);
+            Vertex predecessor = predecessors.get(current.vertex);
+            if (predecessor != null) {
+                settledPredecessors.put(current.vertex, predecessor);
+            }
+            if (current.vertex.equals(target)) {
+                break;
+            }
+
+            for (Map.Entry<Vertex, Integer> entry : graph.getAdjacentVertices(current.vertex).entrySet()) {
+                Vertex neighbor = entry.getKey();
+                if (!settled.containsKey(neighbor)) {
+                    int newDistance = current.distance + entry.getValue();
+                    if (newDistance < distances.getOrDefault(neighbor, Integer.MAX_VALUE)) {
+                        distances.put(neighbor, newDistance);
+                        predecessors.put(neighbor, current.vertex);
+                        pq.offer(new VertexDistance(neighbor, newDistance));
+                    }
+                }
+            }
+        }
+        return new DijkstraResult(settled, settledPredecessors, source);
+    }
+
+    /**
+     * Point-to-point Dijkstra over an IndexedGraph, using an {@link IndexedDaryHeap}
+     * and stopping once the target is settled.
+     *
+     * @param graph the graph containing vertices
+     * @param source the source vertex
+     * @param target the target vertex
+     * @return a DijkstraResult, containing the settled distances and predecessors
+     */
+    static DijkstraResult dijkstraToTarget(IndexedGraph graph, Vertex source, Vertex target) {
+        int s = graph.indexOf(source);
+        int t = graph.indexOf(target);
+        if (s < 0) {
+            return sourceOnly(source);
+        }
+        DijkstraWorkspace workspace = DijkstraWorkspace.forThread(graph.getVertexCount());
+        IndexedDaryHeap heap = workspace.heap(DijkstraHeap.DEFAULT_ARITY);
+
+        workspace.update(s, 0, -1);
+        heap.insert(s, 0);
+
+        while (!heap.isEmpty()) {
+            int current = heap.extractMin();
+            workspace.settle(current);
+            if (current == t) {
+                break;
+            }
+            int currentDistance = workspace.getDistance(current);
+            for (int e = graph.edgeStart(current), end = graph.edgeEnd(current); e < end; e++) {
+                int neighbor = graph.edgeTarget(e);
+                int newDistance = currentDistance + graph.edgeWeight(e);
+                // settled vertices can never improve, so no visited check is needed
+                if (newDistance < workspace.getDistance(neighbor)) {
+                    workspace.update(neighbor, newDistance, current);
+                    heap.decreaseKey(neighbor, newDistance);
+                }
+            }
+        }
+        return workspace.toResult(graph, source, true);
+    }
+
+    /**
+     * Priority queue Dijkstra over the primitive edge arrays of an IndexedGraph.
+     * Distances, predecessors and the visited set live in the thread's
+     * {@link DijkstraWorkspace}, so relaxations never box or hash and a new
+     * query does not pay an O(V) initialisation.
+     *
+     * @param graph the graph containing vertices
+     * @param source the source vertex
+     * @return a DijkstraResult, containing a map of distances and a map of predecessors
+     */
+    static DijkstraResult dijkstraIndexed(IndexedGraph graph, Vertex source) {
+        DijkstraWorkspace workspace = DijkstraWorkspace.forThread(graph.getVertexCount());
+
+        PriorityQueue<IndexDistance> pq = new PriorityQueue<>(Comparator.comparingInt(id -> id.distance));
+        long start = SearchMetrics.start();
+        long relaxed = 0, improved = 0, stalePops = 0;
+        int settled = 0, peak = 1;
+        int s = graph.indexOf(source);
+        if (s < 0) {
+            return sourceOnly(source);
+        }
+        workspace.update(s, 0, -1);
+        pq.offer(new IndexDistance(s, 0));
+
+        while (!pq.isEmpty()) {
+            int current = pq.poll().index;
+            if (workspace.isSettled(current)) {
+                stalePops++;
+                continue;
+            }
+            workspace.settle(current);
+            settled++;
+            int currentDistance = workspace.getDistance(current);
+
+            // relax the contiguous edge range of the current vertex
+            for (int e = graph.edgeStart(current), end = graph.edgeEnd(current); e < end; e++) {
+                int neighbor = graph.edgeTarget(e);
+                if (!workspace.isSettled(neighbor)) {
+                    relaxed++;
+                    int newDistance = currentDistance + graph.edgeWeight(e);
+                    if (newDistance < workspace.getDistance(neighbor)) {
+                        workspace.update(neighbor, newDistance, current);
+                        pq.offer(new IndexDistance(neighbor, newDistance));
+                        improved++;
+                        peak = Math.max(peak, pq.size());
+                    }
+                }
+            }
+        }
+        if (SearchMetrics.enabled()) {
+            SearchMetrics.record(new SearchStats("priorityQueue/csr", start, settled, relaxed, improved,
+                    stalePops, improved + 1, 0, peak));
+        }
+        return workspace.toResult(graph, source, false);
+    }
+
+    /**
+     * The result of a search from a vertex that is not in the graph: as with
+     * the map-based searches, the source is at distance 0 and nothing else is reachable.
+     */
+    static DijkstraResult sourceOnly(Vertex source) {
+        Map<Vertex, Integer> distances = new HashMap<>();
+        distances.put(source, 0);
+        return new DijkstraResult(distances, new HashMap<>(), source);
+    }
+
     /**
      * Dijkstra using ArrayList 
      */
@@ -157,6 +369,10 @@ public class DijkstraShortestPath {
             unvisited.add(v);
         }
         distances.put(source, 0); // distance to source is 0
+
+        long start = SearchMetrics.start();
+        long relaxed = 0, improved = 0;
+        int peak = unvisited.size();
         
         while (!unvisited.isEmpty() ) {
 
@@ -191,16 +407,23 @@ public class DijkstraShortestPath {
                 int weight = entry.getValue();
                 
                 if (!visited.contains(neighbor)) {
+                    relaxed++;
                     int newDistance = distances.get(current) + weight;
                     // if new distance is less than current distance, update it
                     // and set predecessor
                     if (newDistance < distances.get(neighbor)) {
                          distances.put( neighbor, newDistance);
                         predecessors.put(neighbor, current);
+                        improved++;
                     }
                 }
             }
         }
+        if (SearchMetrics.enabled()) {
+            // every vertex starts in the list, so each improvement is a decreaseKey
+            SearchMetrics.record(new SearchStats("arrayList", start, visited.size(), relaxed, improved,
+                    0, peak, improved, peak));
+        }
         // Return the result containing distances and predecessors
         return new DijkstraResult(distances, predecessors, source);
  }
@@ -214,4 +437,14 @@ public class DijkstraShortestPath {
             this.distance = distance;
         }
     }
+
+    static class IndexDistance {
+        int index;
+        int distance;
+
+        IndexDistance(int index, int distance) {
+            this.index = index;
+            this.distance = distance;
+        }
+    }
 }
@@ -0,0 +1,174 @@
+import java.util.*;
+
+/**
+ * Reusable per-thread search state for the indexed Dijkstra engines.
+ * <p>
+ * Distances, predecessors and the settled flags are primitive arrays indexed
+ * by vertex id. Each entry carries the epoch of the query that last wrote it,
+ * and an entry from an older epoch reads as "not reached", so starting a new
+ * query is O(1) instead of an O(V) fill. The vertices a query reached are
+ * also recorded, so results can be built in time proportional to the
+ * explored region rather than the graph.
+ * <p>
+ * A workspace is not thread-safe; use {@link #forThread(int)} to get the
+ * calling thread's own instance.
+ */
+public class DijkstraWorkspace {
+
+    private static final ThreadLocal<DijkstraWorkspace> WORKSPACES = new ThreadLocal<>();
+
+    private int[] distances;
+    private int[] predecessors;
+    private int[] reachedEpoch;
+    private int[] settledEpoch;
+    private int[] reached;
+    private int reachedCount;
+    private int epoch;
+    private IndexedDaryHeap heap;
+
+    /**
+     * Creates a workspace for graphs of up to capacity vertices
+     * @param capacity the number of vertices
+     */
+    public DijkstraWorkspace(int capacity) {
+        distances = new int[capacity];
+        predecessors = new int[capacity];
+        reachedEpoch = new int[capacity];
+        settledEpoch = new int[capacity];
+        reached = new int[capacity];
+    }
+
+    /**
+     * For subclasses that keep the search state somewhere else; they must
+     * override every public method that reads or writes it.
+     */
+    protected DijkstraWorkspace() {
+    }
+
+    /**
+     * Returns the calling thread's workspace, growing it if needed, and
+     * starts a new query on it.
+     * @param capacity the number of vertices of the graph to search
+     * @return the workspace, ready for a new query
+     */
+    public static DijkstraWorkspace forThread(int capacity) {
+        DijkstraWorkspace workspace = WORKSPACES.get();
+        if (workspace == null || workspace.capacity() < capacity) {
+            workspace = new DijkstraWorkspace(capacity);
+            WORKSPACES.set(workspace);
+        }
+        workspace.begin();
+        return workspace;
+    }
+
+    public int capacity() {
+        return distances.length;
+    }
+
+    /**
+     * Starts a new query, forgetting every vertex reached by the last one.
+     * <p>
+     * Time complexity: O(1), apart from a full reset every 2^31 queries
+     */
+    public void begin() {
+        epoch++;
+        if (epoch == Integer.MAX_VALUE) {
+            Arrays.fill(reachedEpoch, 0);
+            Arrays.fill(settledEpoch, 0);
+            epoch = 1;
+        }
+        reachedCount = 0;
+        if (heap != null) {
+            heap.clear();
+        }
+    }
+
+    /**
+     * Returns an empty heap of the given arity sized for this workspace
+     */
+    public IndexedDaryHeap heap(int arity) {
+        if (heap == null || heap.getArity() != arity) {
+            heap = new IndexedDaryHeap(capacity(), arity);
+        }
+        return heap;
+    }
+
+    /**
+     * Get the tentative distance of a vertex, Integer.MAX_VALUE if not reached
+     */
+    public int getDistance(int vertex) {
+        return reachedEpoch[vertex] == epoch ? distances[vertex] : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Get the predecessor of a vertex, -1 if it has none
+     */
+    public int getPredecessor(int vertex) {
+        return reachedEpoch[vertex] == epoch ? predecessors[vertex] : -1;
+    }
+
+    /**
+     * Record a new tentative distance and predecessor for a vertex
+     */
+    public void update(int vertex, int distance, int predecessor) {
+        if (reachedEpoch[vertex] != epoch) {
+            reachedEpoch[vertex] = epoch;
+            reached[reachedCount++] = vertex;
+        }
+        distances[vertex] = distance;
+        predecessors[vertex] = predecessor;
+    }
+
+    public boolean isSettled(int vertex) {
+        return settledEpoch[vertex] == epoch;
+    }
+
+    public void settle(int vertex) {
+        settledEpoch[vertex] = epoch;
+    }
+
+    /**
+     * Get the number of vertices reached by the current query
+     */
+    public int getReachedCount() {
+        return reachedCount;
+    }
+
+    /**
+     * Get the i-th vertex reached by the current query, in order of first reach
+     */
+    public int getReached(int i) {
+        return reached[i];
+    }
+
+    /**
+     * Converts the current query into a DijkstraResult.
+     * <p>
+     * Time complexity: O(V) for a full search, O(reached vertices) for a partial one
+     * @param graph the graph that was searched
+     * @param source the source vertex
+     * @param settledOnly whether to leave out vertices that were reached but not settled
+     * @return an array-backed result for a full search, or a map-based one
+     *         holding only the settled vertices of a partial search
+     */
+    public DijkstraShortestPath.DijkstraResult toResult(IndexedGraph graph, Vertex source, boolean settledOnly) {
+        if (!settledOnly) {
+            return IndexedDijkstraResult.fromWorkspace(graph, this, source);
+        }
+        int count = getReachedCount();
+        Map<Vertex, Integer> distanceMap = new HashMap<>(count * 2);
+        Map<Vertex, Vertex> predecessorMap = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            int v = getReached(i);
+            if (!isSettled(v)) {
+                continue;
+            }
+            distanceMap.put(graph.vertexAt(v), getDistance(v));
+            int predecessor = getPredecessor(v);
+            if (predecessor >= 0) {
+                predecessorMap.put(graph.vertexAt(v), graph.vertexAt(predecessor));
+            }
+        }
+        return new DijkstraShortestPath.DijkstraResult(distanceMap, predecessorMap, source);
+    }
+}
@@ -0,0 +1,372 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Precomputed all-pairs shortest distances and paths of a graph, kept in a
+ * file and memory-mapped, so queries are answered without any search.
+ * <p>
+ * All values are little-endian, laid out as:
+ * <pre>
+ * magic "DJKD", version, vertexCount, edgeCount, distanceBytes, predecessorBytes
+ * one record per source vertex id:
+ *   distances[vertexCount]      distanceBytes each, 0xFFFF or Integer.MAX_VALUE if unreachable
+ *   predecessors[vertexCount]   predecessorBytes each, all ones for none
+ * </pre>
+ * Distances take 2 bytes when every finite distance is below 0xFFFF, and 4
+ * otherwise. A predecessor is always one of the vertex's in-neighbours, so
+ * it is stored as the rank of its edge among the vertex's incoming edges in
+ * a {@link ReverseAdjacencyIndex}: 1 byte while every in-degree is below
+ * 0xFF, 2 bytes below 0xFFFF. For graph1000 that is 3 bytes per pair
+ * instead of 8.
+ * <p>
+ * The table has V^2 entries, so it suits graphs of up to tens of thousands of
+ * vertices: 30,000 vertices take about 2.7 GB.
+ */
+public class DistanceTable implements AutoCloseable {
+
+    /** "DJKD" read as a little-endian int */
+    static final int MAGIC = 0x444B4A44;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 6 * Integer.BYTES;
+
+    private final IndexedGraph graph;
+    private final ReverseAdjacencyIndex reverse;
+    private final int distanceBytes;
+    private final int predecessorBytes;
+    private final long recordBytes;
+    private final int recordsPerChunk;
+    private MappedByteBuffer[] chunks;
+
+    private DistanceTable(IndexedGraph graph, int distanceBytes, int predecessorBytes, MappedByteBuffer[] chunks,
+                          int recordsPerChunk) {
+        this.graph = graph;
+        this.reverse = new ReverseAdjacencyIndex(graph);
+        this.distanceBytes = distanceBytes;
+        this.predecessorBytes = predecessorBytes;
+        this.recordBytes = (long) graph.getVertexCount() * (distanceBytes + predecessorBytes);
+        this.recordsPerChunk = recordsPerChunk;
+        this.chunks = chunks;
+    }
+
+    /**
+     * Computes the shortest paths between every pair of vertices, one search
+     * per source on the common ForkJoinPool, and writes them to a table file.
+     * <p>
+     * Time complexity: O(V (V + E) log V) work, O(V^2) file size
+     * @param graph the graph to search
+     * @param file the path of the table to write, replacing any existing file
+     * @throws IOException if the file cannot be written
+     */
+    public static void build(IndexedGraph graph, String file) throws IOException {
+        int n = graph.getVertexCount();
+        ReverseAdjacencyIndex reverse = new ReverseAdjacencyIndex(graph);
+        int maxInDegree = 0;
+        for (int v = 0; v < n; v++) {
+            maxInDegree = Math.max(maxInDegree, reverse.edgeEnd(v) - reverse.edgeStart(v));
+        }
+        // distances are written 4 bytes wide and narrowed at the end if they all fit in 2
+        int predecessorBytes = maxInDegree < 0xFF ? 1 : maxInDegree < 0xFFFF ? 2 : 4;
+        int recordBytes = n * (Integer.BYTES + predecessorBytes);
+        AtomicInteger maxDistance = new AtomicInteger();
+
+        List<String> labels = new ArrayList<>(n);
+        for (int v = 0; v < n; v++) {
+            labels.add(graph.vertexAt(v).getLabel());
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ThreadLocal<ByteBuffer> records = ThreadLocal.withInitial(
+                    () -> ByteBuffer.allocateDirect(recordBytes).order(ByteOrder.LITTLE_ENDIAN));
+            ForkJoinPool pool = ForkJoinPool.commonPool();
+            BatchDijkstra.runTrees(graph, labels, pool, pool.getParallelism(), (row, source, distances, predecessors) -> {
+                ByteBuffer record = records.get();
+                record.clear();
+                int rowMax = 0;
+                for (int v = 0; v < n; v++) {
+                    record.putInt(distances[v]);
+                    if (distances[v] != Integer.MAX_VALUE) {
+                        rowMax = Math.max(rowMax, distances[v]);
+                    }
+                }
+                maxDistance.accumulateAndGet(rowMax, Math::max);
+                for (int v = 0; v < n; v++) {
+                    int rank = predecessors[v] < 0 ? -1 : rankOf(reverse, v, predecessors[v]);
+                    if (predecessorBytes == 1) {
+                        record.put((byte) rank);
+                    } else if (predecessorBytes == 2) {
+                        record.putShort((short) rank);
+                    } else {
+                        record.putInt(rank);
+                    }
+                }
+                record.flip();
+                try {
+                    writeFully(channel, record, HEADER_BYTES + (long) row * recordBytes);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            int distanceBytes = Integer.BYTES;
+            if (maxDistance.get() < 0xFFFF) {
+                distanceBytes = Short.BYTES;
+                narrowDistances(channel, n, predecessorBytes);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(graph.getEdgeCount())
+                  .putInt(distanceBytes).putInt(predecessorBytes).flip();
+            writeFully(channel, header, 0);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Rewrites every record with 2-byte distances, front to back, so each
+     * record moves down over space already read, and truncates the file.
+     * <p>
+     * Time complexity: O(V^2)
+     */
+    private static void narrowDistances(FileChannel channel, int n, int predecessorBytes) throws IOException {
+        long wideBytes = (long) n * (Integer.BYTES + predecessorBytes);
+        long narrowBytes = (long) n * (Short.BYTES + predecessorBytes);
+        ByteBuffer wide = ByteBuffer.allocateDirect((int) wideBytes).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer narrow = ByteBuffer.allocateDirect((int) narrowBytes).order(ByteOrder.LITTLE_ENDIAN);
+        for (int row = 0; row < n; row++) {
+            wide.clear();
+            long position = HEADER_BYTES + row * wideBytes;
+            while (wide.hasRemaining()) {
+                int read = channel.read(wide, position + wide.position());
+                if (read < 0) {
+                    throw new IOException("distance table ended early while narrowing row " + row);
+                }
+            }
+            wide.flip();
+            narrow.clear();
+            for (int v = 0; v < n; v++) {
+                int distance = wide.getInt();
+                narrow.putShort((short) (distance == Integer.MAX_VALUE ? 0xFFFF : distance));
+            }
+            narrow.put(wide);
+            narrow.flip();
+            writeFully(channel, narrow, HEADER_BYTES + row * narrowBytes);
+        }
+        channel.truncate(HEADER_BYTES + n * narrowBytes);
+    }
+
+    /**
+     * Finds the position of the edge from a predecessor among a vertex's incoming edges
+     */
+    private static int rankOf(ReverseAdjacencyIndex reverse, int vertex, int predecessor) {
+        for (int e = reverse.edgeStart(vertex), end = reverse.edgeEnd(vertex); e < end; e++) {
+            if (reverse.edgeSource(e) == predecessor) {
+                return e - reverse.edgeStart(vertex);
+            }
+        }
+        throw new IllegalStateException(predecessor + " is not an in-neighbour of " + vertex);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Memory-maps a table written by {@link #build(IndexedGraph, String)}
+     * @param file the path of the table file
+     * @param graph the graph the table was computed for
+     * @return the table, to be closed when no longer needed
+     * @throws IOException if the file cannot be read or belongs to a different graph
+     */
+    public static DistanceTable open(String file, IndexedGraph graph) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // read until the header is complete or the file ends
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+                throw new IOException(file + " is not a distance table");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException(file + " has distance table version " + version + ", expected " + VERSION);
+            }
+            int n = header.getInt();
+            int m = header.getInt();
+            if (n != graph.getVertexCount() || m != graph.getEdgeCount()) {
+                throw new IOException(file + " was built for a graph with " + n + " vertices and " + m
+                        + " edges, not " + graph.getVertexCount() + " and " + graph.getEdgeCount());
+            }
+            int distanceBytes = header.getInt();
+            int predecessorBytes = header.getInt();
+            long recordBytes = (long) n * (distanceBytes + predecessorBytes);
+            if (channel.size() != HEADER_BYTES + n * recordBytes) {
+                throw new IOException(file + " is truncated: " + channel.size() + " bytes, expected "
+                        + (HEADER_BYTES + n * recordBytes));
+            }
+
+            // whole records per mapping, since one buffer cannot pass 2 GiB
+            int recordsPerChunk = (int) Math.max(1, Integer.MAX_VALUE / Math.max(1, recordBytes));
+            MappedByteBuffer[] chunks = new MappedByteBuffer[(n + recordsPerChunk - 1) / recordsPerChunk];
+            for (int c = 0; c < chunks.length; c++) {
+                long first = (long) c * recordsPerChunk;
+                long size = Math.min(recordsPerChunk, n - first) * recordBytes;
+                chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + first * recordBytes, size);
+                chunks[c].order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return new DistanceTable(graph, distanceBytes, predecessorBytes, chunks, recordsPerChunk);
+        }
+    }
+
+    /**
+     * Returns the shortest distance from one vertex to another.
+     * <p>
+     * Time complexity: O(1)
+     * @param source the source vertex
+     * @param target the target vertex
+     * @return the distance, Integer.MAX_VALUE if there is no path
+     * @throws IllegalArgumentException if a vertex is not in the graph
+     */
+    public int getDistance(Vertex source, Vertex target) {
+        return distance(id(source), id(target));
+    }
+
+    /**
+     * Returns the shortest path from one vertex to another.
+     * <p>
+     * Time complexity: O(path length)
+     * @param source the source vertex
+     * @param target the target vertex
+     * @return the vertices of the path from source to target, empty if there is none
+     * @throws IllegalArgumentException if a vertex is not in the graph
+     */
+    public List<Vertex> getPath(Vertex source, Vertex target) {
+        int s = id(source);
+        int t = id(target);
+        List<Vertex> path = new ArrayList<>();
+        if (distance(s, t) == Integer.MAX_VALUE) {
+            return path;
+        }
+        for (int v = t; v >= 0; v = predecessor(s, v)) {
+            path.add(graph.vertexAt(v));
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Copies the shortest-path tree of one source out of the table.
+     * <p>
+     * Time complexity: O(V)
+     * @param source the source vertex
+     * @return the distances and predecessors of every vertex from the source
+     * @throws IllegalArgumentException if the source is not in the graph
+     */
+    public IndexedDijkstraResult getResult(Vertex source) {
+        int s = id(source);
+        int n = graph.getVertexCount();
+        int[] distances = new int[n];
+        int[] predecessors = new int[n];
+        for (int v = 0; v < n; v++) {
+            distances[v] = distance(s, v);
+            predecessors[v] = distances[v] == Integer.MAX_VALUE ? -1 : predecessor(s, v);
+        }
+        return new IndexedDijkstraResult(graph, distances, predecessors, source);
+    }
+
+    /**
+     * Get the size of the table file in bytes
+     */
+    public long sizeInBytes() {
+        return HEADER_BYTES + graph.getVertexCount() * recordBytes;
+    }
+
+    /**
+     * Unmaps the table. It must not be queried afterwards.
+     */
+    @Override
+    public void close() {
+        MappedByteBuffer[] held = chunks;
+        chunks = null;
+        if (held != null) {
+            OffHeapIntArray.release(held);
+        }
+    }
+
+    private int distance(int source, int target) {
+        ByteBuffer chunk = chunks[source / recordsPerChunk];
+        int position = (int) ((source % recordsPerChunk) * recordBytes) + target * distanceBytes;
+        if (distanceBytes == 2) {
+            int distance = chunk.getShort(position) & 0xFFFF;
+            return distance == 0xFFFF ? Integer.MAX_VALUE : distance;
+        }
+        return chunk.getInt(position);
+    }
+
+    private int predecessor(int source, int vertex) {
+        ByteBuffer chunk = chunks[source / recordsPerChunk];
+        int position = (int) ((source % recordsPerChunk) * recordBytes)
+                + graph.getVertexCount() * distanceBytes + vertex * predecessorBytes;
+        int rank;
+        if (predecessorBytes == 1) {
+            rank = chunk.get(position) & 0xFF;
+            rank = rank == 0xFF ? -1 : rank;
+        } else if (predecessorBytes == 2) {
+            rank = chunk.getShort(position) & 0xFFFF;
+            rank = rank == 0xFFFF ? -1 : rank;
+        } else {
+            rank = chunk.getInt(position);
+        }
+        return rank < 0 ? -1 : reverse.edgeSource(reverse.edgeStart(vertex) + rank);
+    }
+
+    private int id(Vertex vertex) {
+        int id = graph.indexOf(vertex);
+        if (id < 0) {
+            throw new IllegalArgumentException("vertex " + vertex + " not found in graph");
+        }
+        return id;
+    }
+
+    /**
+     * Builds a table for a graph, or, given a source, prints the paths from
+     * it in the driver's format, read from an existing table.
+     *
+     * @param args the command line arguments: &lt;graph file&gt; &lt;table file&gt; [source label]
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("usage: DistanceTable <graph file> <table file> [source label]");
+            System.exit(1);
+        }
+        IndexedGraph graph = GraphBuilder.load(args[0]);
+        if (args.length < 3) {
+            long start = System.nanoTime();
+            build(graph, args[1]);
+            System.out.printf("Computed %d x %d table in %d ms, wrote %s%n", graph.getVertexCount(),
+                    graph.getVertexCount(), (System.nanoTime() - start) / 1_000_000, args[1]);
+            return;
+        }
+        Vertex source = graph.getVertex(args[2]);
+        if (source == null) {
+            System.err.println("Source vertex " + args[2] + " not found in graph");
+            System.exit(1);
+        }
+        try (DistanceTable table = open(args[1], graph)) {
+            PathWriter writer = new PathWriter(System.out);
+            table.getResult(source).writeAll(writer);
+            writer.flush();
+        }
+    }
+}
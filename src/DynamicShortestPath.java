@@ -0,0 +1,273 @@
+import java.util.*;
+
+/**
+ * Single-source shortest paths that are kept up to date while edges are
+ * inserted or their weights change, in the style of Ramalingam and Reps.
+ * <p>
+ * A batch of updates is written to the graph and then only the part of the
+ * shortest-path tree it affects is repaired:
+ * <ul>
+ *   <li>an inserted or cheaper edge (u, v) that now gives v a shorter
+ *       distance seeds a Dijkstra search from v that only spreads to vertices
+ *       whose distance improves;</li>
+ *   <li>a tree edge that got more expensive invalidates the subtree below it;
+ *       each vertex of that subtree is re-seeded with its best distance over
+ *       incoming edges from outside the subtree, and the same search settles
+ *       the subtree again.</li>
+ * </ul>
+ * Increases on edges that are not in the tree change nothing. The cost of a
+ * batch is proportional to the vertices whose distance changes and their
+ * edges, rather than to the whole graph.
+ * <p>
+ * The graph must be mutable (a {@link MyGraph}); the indexed graphs are
+ * read-only. Updates must go through {@link #apply(List)} so that the
+ * reverse adjacency kept here stays in step with the graph.
+ */
+public class DynamicShortestPath {
+
+    /**
+     * A new weight for the edge from source to target, inserting it if absent
+     */
+    public static class EdgeUpdate {
+        final Vertex source;
+        final Vertex target;
+        final int weight;
+
+        public EdgeUpdate(Vertex source, Vertex target, int weight) {
+            if (weight < 0) {
+                throw new IllegalArgumentException("Edge weight must not be negative: " + weight);
+            }
+            this.source = source;
+            this.target = target;
+            this.weight = weight;
+        }
+
+        @Override
+        public String toString() {
+            return source + " -> " + target + " (" + weight + ")";
+        }
+    }
+
+    private final Graph graph;
+    private final Vertex source;
+    private final Map<Vertex, Integer> distances = new HashMap<>();
+    private final Map<Vertex, Vertex> predecessors = new HashMap<>();
+    private final Map<Vertex, Map<Vertex, Integer>> incoming = new HashMap<>();
+    private int lastChangedCount;
+
+    /**
+     * Computes the shortest paths from the source from scratch
+     * @param graph the graph to search and update
+     * @param source the source vertex
+     */
+    public DynamicShortestPath(Graph graph, Vertex source) {
+        this(graph, DijkstraShortestPath.dijkstraWithPriorityQueue(graph, source));
+    }
+
+    /**
+     * Starts from an existing result, which must be up to date for the graph.
+     * <p>
+     * Time complexity: O(V + E) to copy the result and index the incoming edges
+     * @param graph the graph the result was computed on
+     * @param result the shortest paths from one source
+     */
+    public DynamicShortestPath(Graph graph, DijkstraShortestPath.DijkstraResult result) {
+        this.graph = graph;
+        this.source = result.getSource();
+        for (Vertex v : graph.getVertices()) {
+            int d = result.getDistance(v);
+            if (d != Integer.MAX_VALUE) {
+                distances.put(v, d);
+                Vertex p = result.getPredecessor(v);
+                if (p != null) {
+                    predecessors.put(v, p);
+                }
+            }
+            for (Map.Entry<Vertex, Integer> edge : graph.getAdjacentVertices(v).entrySet()) {
+                incoming.computeIfAbsent(edge.getKey(), k -> new HashMap<>()).put(v, edge.getValue());
+            }
+        }
+    }
+
+    /**
+     * Applies one edge update
+     * @param source the source of the edge
+     * @param target the target of the edge
+     * @param weight the new weight of the edge
+     * @return the number of vertices whose distance changed
+     */
+    public int apply(Vertex source, Vertex target, int weight) {
+        return apply(Collections.singletonList(new EdgeUpdate(source, target, weight)));
+    }
+
+    /**
+     * Writes a batch of edge updates to the graph and repairs the shortest paths.
+     * When an edge appears more than once in the batch the last weight wins,
+     * as with repeated calls to addEdge.
+     *
+     * @param updates the edge insertions and weight changes
+     * @return the number of vertices whose distance changed
+     */
+    public int apply(List<EdgeUpdate> updates) {
+        // Tree edges whose weight went up; their subtrees need new distances
+        List<Vertex> invalidRoots = new ArrayList<>();
+        // Edges that got cheaper or are new; they may shorten their target
+        List<EdgeUpdate> improved = new ArrayList<>();
+
+        for (EdgeUpdate update : updates) {
+            Integer old = graph.getAdjacentVertices(update.source).get(update.target);
+            graph.addEdge(update.source, update.target, update.weight);
+            incoming.computeIfAbsent(update.target, k -> new HashMap<>()).put(update.source, update.weight);
+            if (old == null || update.weight < old) {
+                improved.add(update);
+            } else if (update.weight > old && update.source.equals(predecessors.get(update.target))) {
+                invalidRoots.add(update.target);
+            }
+        }
+
+        PriorityQueue<DijkstraShortestPath.VertexDistance> pq =
+                new PriorityQueue<>(Comparator.comparingInt(vd -> vd.distance));
+        Map<Vertex, Integer> before = new HashMap<>();
+
+        Set<Vertex> invalid = collectSubtrees(invalidRoots);
+        for (Vertex v : invalid) {
+            before.putIfAbsent(v, distances.remove(v));
+            predecessors.remove(v);
+        }
+        for (Vertex v : invalid) {
+            // Best way into the subtree from the part of the tree that is still valid
+            int best = Integer.MAX_VALUE;
+            Vertex bestPredecessor = null;
+            for (Map.Entry<Vertex, Integer> edge : incoming.getOrDefault(v, Collections.emptyMap()).entrySet()) {
+                Integer d = distances.get(edge.getKey());
+                if (d != null && d + edge.getValue() < best) {
+                    best = d + edge.getValue();
+                    bestPredecessor = edge.getKey();
+                }
+            }
+            if (bestPredecessor != null) {
+                distances.put(v, best);
+                predecessors.put(v, bestPredecessor);
+                pq.offer(new DijkstraShortestPath.VertexDistance(v, best));
+            }
+        }
+        for (EdgeUpdate update : improved) {
+            // The weight in the graph, in case the edge was updated again later in the batch
+            int weight = graph.getAdjacentVertices(update.source).get(update.target);
+            relax(update.source, update.target, weight, pq, before);
+        }
+
+        while (!pq.isEmpty()) {
+            DijkstraShortestPath.VertexDistance current = pq.poll();
+            if (current.distance != distances.getOrDefault(current.vertex, Integer.MAX_VALUE)) {
+                continue; // stale entry
+            }
+            for (Map.Entry<Vertex, Integer> edge : graph.getAdjacentVertices(current.vertex).entrySet()) {
+                relax(current.vertex, edge.getKey(), edge.getValue(), pq, before);
+            }
+        }
+
+        int changed = 0;
+        for (Map.Entry<Vertex, Integer> entry : before.entrySet()) {
+            if (!Objects.equals(entry.getValue(), distances.get(entry.getKey()))) {
+                changed++;
+            }
+        }
+        lastChangedCount = changed;
+        return changed;
+    }
+
+    private void relax(Vertex from, Vertex to, int weight, PriorityQueue<DijkstraShortestPath.VertexDistance> pq,
+                       Map<Vertex, Integer> before) {
+        Integer d = distances.get(from);
+        if (d == null) {
+            return;
+        }
+        int newDistance = d + weight;
+        if (newDistance < distances.getOrDefault(to, Integer.MAX_VALUE)) {
+            before.putIfAbsent(to, distances.get(to));
+            distances.put(to, newDistance);
+            predecessors.put(to, from);
+            pq.offer(new DijkstraShortestPath.VertexDistance(to, newDistance));
+        }
+    }
+
+    /**
+     * Finds every vertex whose tree path runs through one of the roots.
+     * The children of a vertex are the neighbours that have it as predecessor.
+     */
+    private Set<Vertex> collectSubtrees(List<Vertex> roots) {
+        Set<Vertex> subtree = new HashSet<>();
+        Deque<Vertex> stack = new ArrayDeque<>();
+        for (Vertex root : roots) {
+            if (subtree.add(root)) {
+                stack.push(root);
+            }
+        }
+        while (!stack.isEmpty()) {
+            Vertex v = stack.pop();
+            for (Vertex child : graph.getAdjacentVertices(v).keySet()) {
+                if (v.equals(predecessors.get(child)) && subtree.add(child)) {
+                    stack.push(child);
+                }
+            }
+        }
+        return subtree;
+    }
+
+    /**
+     * Returns the current shortest paths. The result is a live view and
+     * follows later updates.
+     * @return the distances and paths from the source
+     */
+    public DijkstraShortestPath.DijkstraResult getResult() {
+        return new DijkstraShortestPath.DijkstraResult(distances, predecessors, source);
+    }
+
+    public Vertex getSource() {
+        return source;
+    }
+
+    /**
+     * Returns the number of vertices whose distance the last batch changed
+     */
+    public int getLastChangedCount() {
+        return lastChangedCount;
+    }
+
+    /**
+     * Applies one batch of edge updates to a graph file and prints the
+     * repaired paths from the source in the driver's format
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("usage: DynamicShortestPath <graph file> <source> <from>,<to>,<weight> ...");
+            System.exit(1);
+        }
+        Graph graph = GraphBuilder.buildFromGraphMLStream(args[0]);
+        Vertex source = graph.getVertex(args[1]);
+        if (source == null) {
+            System.err.println("Source vertex " + args[1] + " not found in graph");
+            System.exit(1);
+        }
+        List<EdgeUpdate> updates = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+            String[] fields = args[i].split(",");
+            if (fields.length != 3) {
+                System.err.println("Bad update " + args[i] + ", expected <from>,<to>,<weight>");
+                System.exit(1);
+            }
+            updates.add(new EdgeUpdate(vertex(graph, fields[0]), vertex(graph, fields[1]),
+                    Integer.parseInt(fields[2])));
+        }
+        DynamicShortestPath paths = new DynamicShortestPath(graph, source);
+        int changed = paths.apply(updates);
+        System.err.println("Applied " + updates.size() + " updates, " + changed + " distances changed");
+        paths.getResult().printResults(graph);
+    }
+
+    private static Vertex vertex(Graph graph, String label) {
+        Vertex vertex = graph.getVertex(label);
+        return vertex != null ? vertex : new Vertex(label);
+    }
+}
@@ -52,4 +52,14 @@ public interface Graph {
      * @return number of vertices
      */
     int getVertexCount();
+
+    /**
+     * Get a number that changes whenever a vertex or edge is added or an
+     * edge weight changes, so results computed for an older version can be
+     * recognised as stale. Immutable graphs always return 0.
+     * @return the current version of the graph
+     */
+    default long getVersion() {
+        return 0;
+    }
 }
@@ -6,6 +6,7 @@ import org.jdom2.Element;
 import org.jdom2.JDOMException;
 import org.jdom2.Namespace;
 import org.jdom2.input.SAXBuilder;
+import javax.xml.stream.XMLStreamException;
 
 /**
  *
@@ -17,6 +18,7 @@ public class GraphBuilder {
 
     public static Graph buildFromGraphML(String file) throws JDOMException, IOException {
 
+        long start = SearchMetrics.start();
         // Create a new graph instance
         MyGraph graph = new MyGraph();
         
@@ -61,7 +63,76 @@ public class GraphBuilder {
             graph.addEdge(source, target, weight);
         }
 
+        SearchMetrics.phase("load", start);
         return graph;
     }
 
+    /**
+     * Builds a MyGraph by streaming the GraphML file instead of loading it
+     * into a JDOM document first.
+     * @param file the path of the GraphML file
+     * @return the graph described by the file
+     */
+    public static Graph buildFromGraphMLStream(String file) throws IOException, XMLStreamException {
+        long start = SearchMetrics.start();
+        MyGraph graph = new MyGraph();
+        GraphMLStreamReader.read(file, new GraphSink() {
+            @Override
+            public void addVertex(String label) {
+                graph.addVertex(new Vertex(label));
+            }
+
+            @Override
+            public void addEdge(String source, String target, int weight) {
+                Vertex s = graph.getVertex(source);
+                Vertex t = graph.getVertex(target);
+                graph.addEdge(s != null ? s : new Vertex(source), t != null ? t : new Vertex(target), weight);
+            }
+        });
+        SearchMetrics.phase("load", start);
+        return graph;
+    }
+
+    /**
+     * Streams a GraphML file straight into a CompactGraph. No map-backed
+     * graph or document tree is built, so peak heap stays close to the
+     * size of the final CSR arrays.
+     * @param file the path of the GraphML file
+     * @return the immutable graph described by the file
+     */
+    public static CompactGraph buildCompactFromGraphML(String file) throws IOException, XMLStreamException {
+        long start = SearchMetrics.start();
+        CompactGraph.Builder builder = new CompactGraph.Builder();
+        GraphMLStreamReader.read(file, builder);
+        CompactGraph graph = builder.build();
+        SearchMetrics.phase("load", start);
+        return graph;
+    }
+
+    /**
+     * GraphML files at least this big are read by the {@link ParallelGraphMLLoader}
+     */
+    static final long PARALLEL_LOAD_BYTES = 8 << 20;
+
+    /**
+     * Loads a graph from either a {@link GraphSnapshot} file, which is
+     * memory-mapped, or a GraphML file, which is streamed into a CompactGraph
+     * (scanned in parallel chunks if it is large). The format is detected
+     * from the start of the file, not its name.
+     * @param file the path of the snapshot or GraphML file
+     * @return the graph described by the file
+     */
+    public static IndexedGraph load(String file) throws IOException, XMLStreamException {
+        if (GraphSnapshot.isSnapshot(file)) {
+            long start = SearchMetrics.start();
+            MappedGraph graph = GraphSnapshot.open(file);
+            SearchMetrics.phase("load", start);
+            return graph;
+        }
+        if (new java.io.File(file).length() >= PARALLEL_LOAD_BYTES) {
+            return ParallelGraphMLLoader.load(file);
+        }
+        return buildCompactFromGraphML(file);
+    }
+
 }
@@ -0,0 +1,642 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Generates large synthetic graphs for load and scaling tests, written
+ * straight to GraphML and/or a {@link GraphSnapshot} file.
+ * <p>
+ * Three models are supported, all with vertex labels "0".."n-1":
+ * <ul>
+ *   <li>{@code uniform}: every vertex gets an equal share of the edges,
+ *       each to a uniformly random other vertex;</li>
+ *   <li>{@code grid}: a road-like lattice of about sqrt(n) columns where
+ *       each vertex links to its four neighbours by two-way streets of equal
+ *       weight. Streets are dropped at random so that about the requested
+ *       number of edges remain, which can never exceed the full lattice;</li>
+ *   <li>{@code rmat}: the R-MAT power-law model with the usual
+ *       (0.57, 0.19, 0.19, 0.05) quadrant probabilities. Out-degrees follow
+ *       the R-MAT source distribution, so low labels are hubs.</li>
+ * </ul>
+ * Self-loops are never generated, and a target drawn twice from the same
+ * vertex keeps its first position and its last weight, as the loaders do.
+ * <p>
+ * Edges are never held in memory. The out-edges of a vertex are drawn from
+ * a random stream seeded by the seed and the vertex alone, so they can be
+ * drawn again in any vertex order: GraphML is written in label number order
+ * and the snapshot in label string order, with only a few ints per vertex
+ * kept between passes. A run with the same arguments always produces the
+ * same graph.
+ */
+public class GraphGenerator {
+
+    public enum Model { UNIFORM, GRID, RMAT }
+
+    private static final double RMAT_A = 0.57;
+    private static final double RMAT_B = 0.19;
+    private static final double RMAT_C = 0.19;
+    /** Draws per edge before an R-MAT edge that keeps hitting a missing vertex is given up */
+    private static final int RMAT_ATTEMPTS = 64;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final byte[] NODE = ascii("    <node id=\"");
+    private static final byte[] NODE_END = ascii("\"/>\n");
+    private static final byte[] EDGE = ascii("    <edge id=\"");
+    private static final byte[] SOURCE = ascii("\" source=\"");
+    private static final byte[] TARGET = ascii("\" target=\"");
+    private static final byte[] DATA = ascii("\">\n      <data key=\"d1\">");
+    private static final byte[] EDGE_END = ascii("</data>\n    </edge>\n");
+
+    private final Model model;
+    private final int vertexCount;
+    private final long edgeCount;
+    private final int minWeight;
+    private final int maxWeight;
+    private final long seed;
+
+    /** Grid: columns of the lattice, and the chance that a street is kept */
+    private final int columns;
+    private final double keepStreet;
+    /** R-MAT: bits of a vertex id, and the number of edges drawn per vertex */
+    private final int scale;
+    private final int[] rmatDegrees;
+
+    /**
+     * @param model the kind of graph to generate
+     * @param vertexCount the number of vertices
+     * @param edgeCount the number of edges to aim for; duplicates drawn by
+     *        uniform and rmat graphs are dropped, so a few less may be written
+     * @param minWeight the smallest edge weight, at least 0
+     * @param maxWeight the largest edge weight
+     * @param seed the seed of every random choice
+     */
+    public GraphGenerator(Model model, int vertexCount, long edgeCount, int minWeight, int maxWeight, long seed) {
+        if (vertexCount < 1) {
+            throw new IllegalArgumentException("vertexCount must be positive: " + vertexCount);
+        }
+        if (edgeCount < 0 || edgeCount > Integer.MAX_VALUE - 1) {
+            throw new IllegalArgumentException("edgeCount out of range: " + edgeCount);
+        }
+        if (minWeight < 0 || maxWeight < minWeight || maxWeight == Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("invalid weight range " + minWeight + ":" + maxWeight);
+        }
+        this.model = model;
+        this.vertexCount = vertexCount;
+        this.edgeCount = edgeCount;
+        this.minWeight = minWeight;
+        this.maxWeight = maxWeight;
+        this.seed = seed;
+
+        this.columns = (int) Math.ceil(Math.sqrt(vertexCount));
+        long fullRows = vertexCount / columns;
+        long lastRow = vertexCount % columns;
+        long streets = 2 * (fullRows * (columns - 1) + Math.max(0, lastRow - 1) + (vertexCount - columns));
+        this.keepStreet = streets == 0 ? 0 : Math.min(1.0, (double) edgeCount / streets);
+
+        this.scale = Math.max(1, 32 - Integer.numberOfLeadingZeros(vertexCount - 1));
+        this.rmatDegrees = model == Model.RMAT ? rmatDegrees() : null;
+    }
+
+    /**
+     * Splits the edges between the vertices in proportion to the R-MAT
+     * chance of each being a source, rounding so that the shares add up to
+     * exactly edgeCount.
+     */
+    private int[] rmatDegrees() {
+        double[] mass = new double[vertexCount];
+        double total = 0;
+        for (int u = 0; u < vertexCount; u++) {
+            double p = 1;
+            for (int bit = 0; bit < scale; bit++) {
+                p *= ((u >>> bit) & 1) == 0 ? RMAT_A + RMAT_B : 1 - RMAT_A - RMAT_B;
+            }
+            mass[u] = p;
+            total += p;
+        }
+        int[] degrees = new int[vertexCount];
+        double cumulative = 0;
+        long previous = 0;
+        for (int u = 0; u < vertexCount; u++) {
+            cumulative += mass[u];
+            long upTo = u == vertexCount - 1 ? edgeCount : Math.min(edgeCount, (long) (edgeCount * (cumulative / total)));
+            degrees[u] = (int) (upTo - previous);
+            previous = upTo;
+        }
+        return degrees;
+    }
+
+    /**
+     * The out-edges of one vertex, redrawn on demand. Targets are vertex
+     * label numbers.
+     */
+    static final class Edges {
+        int count;
+        int[] targets = new int[16];
+        int[] weights = new int[16];
+        /** Open addressing table of slot + 1 per target, to find repeats */
+        private int[] table = new int[32];
+        private int tableMask;
+        private long state;
+
+        private long nextLong() {
+            return mix64(state += GOLDEN_GAMMA);
+        }
+
+        /** A uniform int in [0, bound) */
+        private int nextInt(int bound) {
+            return (int) (((nextLong() >>> 32) * bound) >>> 32);
+        }
+
+        private double nextDouble() {
+            return (nextLong() >>> 11) * 0x1.0p-53;
+        }
+
+        private void reset(long state, int expected) {
+            this.state = state;
+            count = 0;
+            if (targets.length < expected) {
+                int capacity = Integer.highestOneBit(expected - 1) << 1;
+                targets = new int[capacity];
+                weights = new int[capacity];
+            }
+            // Only the part of the table sized for this vertex is used and cleared
+            int tableSize = Math.max(32, Integer.highestOneBit(Math.max(1, expected)) << 2);
+            if (table.length < tableSize) {
+                table = new int[tableSize];
+            } else {
+                java.util.Arrays.fill(table, 0, tableSize, 0);
+            }
+            tableMask = tableSize - 1;
+        }
+
+        /** Adds an edge, or replaces the weight of an earlier edge to the same target */
+        private void add(int target, int weight) {
+            int mask = tableMask;
+            int i = (int) mix64(target) & mask;
+            while (table[i] != 0) {
+                int slot = table[i] - 1;
+                if (targets[slot] == target) {
+                    weights[slot] = weight;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            if (count == targets.length) {
+                targets = java.util.Arrays.copyOf(targets, count * 2);
+                weights = java.util.Arrays.copyOf(weights, count * 2);
+            }
+            targets[count] = target;
+            weights[count] = weight;
+            table[i] = ++count;
+        }
+    }
+
+    /**
+     * Draws the out-edges of a vertex. Always gives the same edges for the same vertex.
+     * <p>
+     * Time complexity: O(out-degree), O(out-degree * log V) for rmat
+     * @param u the label number of the vertex
+     * @param edges where the edges are put
+     */
+    void edgesOf(int u, Edges edges) {
+        switch (model) {
+            case UNIFORM: {
+                int degree = (int) (edgeCount * (u + 1L) / vertexCount - edgeCount * u / vertexCount);
+                edges.reset(mix64(seed ^ mix64(u)), degree);
+                if (vertexCount < 2) {
+                    return;
+                }
+                for (int i = 0; i < degree; i++) {
+                    int target = edges.nextInt(vertexCount - 1);
+                    edges.add(target >= u ? target + 1 : target, weight(edges.nextLong()));
+                }
+                break;
+            }
+            case GRID: {
+                edges.reset(0, 4);
+                int column = u % columns;
+                if (u >= columns) {
+                    street(u, u - columns, edges);
+                }
+                if (column > 0) {
+                    street(u, u - 1, edges);
+                }
+                if (column < columns - 1 && u + 1 < vertexCount) {
+                    street(u, u + 1, edges);
+                }
+                if (u + columns < vertexCount) {
+                    street(u, u + columns, edges);
+                }
+                break;
+            }
+            case RMAT: {
+                int degree = rmatDegrees[u];
+                edges.reset(mix64(seed ^ mix64(u)), degree);
+                for (int i = 0; i < degree; i++) {
+                    for (int attempt = 0; attempt < RMAT_ATTEMPTS; attempt++) {
+                        int target = 0;
+                        for (int bit = scale - 1; bit >= 0; bit--) {
+                            // Quadrant row is fixed by u, so pick the column given the row
+                            double left = ((u >>> bit) & 1) == 0
+                                    ? RMAT_A / (RMAT_A + RMAT_B)
+                                    : RMAT_C / (1 - RMAT_A - RMAT_B);
+                            if (edges.nextDouble() >= left) {
+                                target |= 1 << bit;
+                            }
+                        }
+                        if (target < vertexCount && target != u) {
+                            edges.add(target, weight(edges.nextLong()));
+                            break;
+                        }
+                    }
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Adds the street from u to v if it exists. Both directions of a street
+     * hash the same pair, so they exist together and have the same weight.
+     */
+    private void street(int u, int v, Edges edges) {
+        long pair = mix64(seed ^ mix64(((long) Math.min(u, v) << 32) | Math.max(u, v)));
+        if ((pair >>> 11) * 0x1.0p-53 < keepStreet) {
+            edges.add(v, weight(mix64(pair)));
+        }
+    }
+
+    private int weight(long random) {
+        long range = (long) maxWeight - minWeight + 1;
+        return minWeight + (int) (((random >>> 33) * range) >>> 31);
+    }
+
+    /** The SplitMix64 finaliser */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Writes the graph as GraphML in the layout of the bundled graphs.
+     * <p>
+     * Time complexity: O(V + E), memory O(max out-degree)
+     * @param file the path of the GraphML file to write
+     * @param graphId the id attribute of the graph element
+     * @return the number of edges written
+     */
+    public long writeGraphML(String file, String graphId) throws IOException {
+        try (FileChannel channel = create(file)) {
+            Output out = new Output(channel);
+            out.put("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n"
+                    + "  <key id=\"d1\" for=\"edge\" attr.name=\"weight\" attr.type=\"int\"/>\n"
+                    + "  <graph id=\"" + graphId + "\" edgedefault=\"directed\">\n");
+            for (int u = 0; u < vertexCount; u++) {
+                out.put(NODE);
+                out.putInt(u);
+                out.put(NODE_END);
+            }
+            Edges edges = new Edges();
+            long written = 0;
+            for (int u = 0; u < vertexCount; u++) {
+                edgesOf(u, edges);
+                for (int i = 0; i < edges.count; i++) {
+                    out.put(EDGE);
+                    out.putInt(written++);
+                    out.put(SOURCE);
+                    out.putInt(u);
+                    out.put(TARGET);
+                    out.putInt(edges.targets[i]);
+                    out.put(DATA);
+                    out.putInt(edges.weights[i]);
+                    out.put(EDGE_END);
+                }
+            }
+            out.put("  </graph>\n</graphml>\n");
+            out.flush();
+            return written;
+        }
+    }
+
+    /**
+     * Writes the graph as a {@link GraphSnapshot}, identical to the one
+     * converted from the GraphML file.
+     * <p>
+     * The edges are drawn twice: once to count them, and once to write the
+     * offsets, targets and weights sections side by side.
+     * <p>
+     * Time complexity: O(V + E), memory O(V + max out-degree)
+     * @param file the path of the snapshot to write
+     * @return the number of edges written
+     */
+    public long writeSnapshot(String file) throws IOException {
+        int n = vertexCount;
+        // Vertex ids follow the label strings: 0, 1, 10, 100, ..., 11, ...
+        int[] idOf = new int[n];
+        int labelByteCount = 0;
+        for (int id = 0, u = 0; id < n; id++, u = nextInLabelOrder(u)) {
+            idOf[u] = id;
+            labelByteCount += digits(u);
+        }
+
+        Edges edges = new Edges();
+        long m = 0;
+        int maxSeen = 0;
+        for (int u = 0; u < n; u++) {
+            edgesOf(u, edges);
+            m += edges.count;
+            for (int i = 0; i < edges.count; i++) {
+                maxSeen = Math.max(maxSeen, edges.weights[i]);
+            }
+        }
+        if (m > Integer.MAX_VALUE) {
+            throw new IllegalStateException("too many edges for a snapshot: " + m);
+        }
+
+        long labelsStart = GraphSnapshot.HEADER_BYTES + (n + 1L) * Integer.BYTES;
+        long offsetsStart = labelsStart + (labelByteCount + 3) / 4 * 4L;
+        long targetsStart = offsetsStart + (n + 1L) * Integer.BYTES;
+        long weightsStart = targetsStart + m * Integer.BYTES;
+
+        try (FileChannel channel = create(file)) {
+            Output head = new Output(channel, 0);
+            head.putLE(GraphSnapshot.MAGIC).putLE(GraphSnapshot.VERSION).putLE(n).putLE((int) m)
+                    .putLE(labelByteCount).putLE(maxSeen);
+            int labelOffset = 0;
+            for (int id = 0, u = 0; id <= n; id++, u = nextInLabelOrder(u)) {
+                head.putLE(labelOffset);
+                if (id < n) {
+                    labelOffset += digits(u);
+                }
+            }
+            for (int id = 0, u = 0; id < n; id++, u = nextInLabelOrder(u)) {
+                head.putInt(u);
+            }
+            for (int pad = labelByteCount; pad % Integer.BYTES != 0; pad++) {
+                head.put((byte) 0);
+            }
+            head.flush();
+
+            Output offsets = new Output(channel, offsetsStart);
+            Output targets = new Output(channel, targetsStart);
+            Output weights = new Output(channel, weightsStart);
+            int edgeOffset = 0;
+            for (int id = 0, u = 0; id < n; id++, u = nextInLabelOrder(u)) {
+                offsets.putLE(edgeOffset);
+                edgesOf(u, edges);
+                for (int i = 0; i < edges.count; i++) {
+                    targets.putLE(idOf[edges.targets[i]]);
+                    weights.putLE(edges.weights[i]);
+                }
+                edgeOffset += edges.count;
+            }
+            offsets.putLE(edgeOffset);
+            offsets.flush();
+            targets.flush();
+            weights.flush();
+        }
+        return m;
+    }
+
+    /**
+     * The label number that follows u when "0".."n-1" are sorted as strings
+     */
+    private int nextInLabelOrder(int u) {
+        if (u == 0) {
+            return 1;
+        }
+        if (u * 10L < vertexCount) {
+            return u * 10;
+        }
+        while (u % 10 == 9 || u + 1 >= vertexCount) {
+            u /= 10;
+            if (u == 0) {
+                return -1;
+            }
+        }
+        return u + 1;
+    }
+
+    private static int digits(int u) {
+        int digits = 1;
+        while (u >= 10) {
+            u /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static FileChannel create(String file) throws IOException {
+        return FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * A buffered writer of ASCII text and little-endian ints to a channel,
+     * either appending or from a fixed position onwards
+     */
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private final byte[] digits = new byte[20];
+        private long position;
+
+        Output(FileChannel channel) {
+            this(channel, -1);
+        }
+
+        Output(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        Output put(String text) throws IOException {
+            return put(text.getBytes(StandardCharsets.UTF_8));
+        }
+
+        Output put(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int count = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, count);
+                offset += count;
+            }
+            return this;
+        }
+
+        Output put(byte b) throws IOException {
+            ensure(1);
+            buffer.put(b);
+            return this;
+        }
+
+        /** Writes a non-negative number in decimal */
+        Output putInt(long value) throws IOException {
+            int i = digits.length;
+            do {
+                digits[--i] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            ensure(digits.length - i);
+            buffer.put(digits, i, digits.length - i);
+            return this;
+        }
+
+        Output putLE(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+            return this;
+        }
+
+        private void ensure(int needed) throws IOException {
+            if (buffer.remaining() < needed) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                if (position < 0) {
+                    channel.write(buffer);
+                } else {
+                    position += channel.write(buffer, position);
+                }
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Writes the reference output of a graph file: the driver's output for
+     * the given source, byte for byte.
+     * @param graphFile a GraphML or snapshot file
+     * @param sourceLabel the label of the source vertex
+     * @param outputFile the path of the reference output to write
+     */
+    public static void writeReference(String graphFile, String sourceLabel, String outputFile)
+            throws IOException, javax.xml.stream.XMLStreamException {
+        IndexedGraph graph = GraphBuilder.load(graphFile);
+        Vertex source = graph.getVertex(sourceLabel);
+        if (source == null) {
+            throw new IllegalArgumentException("Source vertex " + sourceLabel + " not found in graph");
+        }
+        // The driver's engine, so that ties between equal paths break the same way
+        IndexedDijkstraResult result = (IndexedDijkstraResult) DijkstraShortestPath.dijkstraWithPriorityQueue(graph, source);
+        try (FileChannel channel = create(outputFile)) {
+            PathWriter writer = new PathWriter(channel);
+            result.writeAll(writer);
+            writer.flush();
+        }
+    }
+
+    /**
+     * Generates a graph.
+     *
+     * @param args the command line arguments: [--model uniform|grid|rmat]
+     *        [--vertices N] [--edges M] [--weights MIN:MAX] [--seed S]
+     *        [--out BASE] [--formats graphml,snapshot] [--source LABEL|none]
+     */
+    public static void main(String[] args) throws Exception {
+        Model model = Model.UNIFORM;
+        int vertices = 1000;
+        long edges = -1;
+        int minWeight = 1;
+        int maxWeight = 50;
+        long seed = 1;
+        String base = null;
+        String formats = "graphml";
+        String source = "0";
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                String value = i + 1 < args.length ? args[++i] : null;
+                if (value == null) {
+                    throw new IllegalArgumentException("missing value for " + option);
+                }
+                switch (option) {
+                    case "--model":
+                        model = Model.valueOf(value.toUpperCase());
+                        break;
+                    case "--vertices":
+                        vertices = Integer.parseInt(value);
+                        break;
+                    case "--edges":
+                        edges = Long.parseLong(value);
+                        break;
+                    case "--weights": {
+                        String[] range = value.split(":");
+                        minWeight = Integer.parseInt(range[0]);
+                        maxWeight = Integer.parseInt(range[range.length - 1]);
+                        break;
+                    }
+                    case "--seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "--out":
+                        base = value;
+                        break;
+                    case "--formats":
+                        formats = value;
+                        break;
+                    case "--source":
+                        source = value;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown option " + option);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("usage: GraphGenerator [--model uniform|grid|rmat] [--vertices N] [--edges M]"
+                    + " [--weights MIN:MAX] [--seed S] [--out BASE] [--formats graphml,snapshot] [--source LABEL|none]");
+            System.exit(1);
+        }
+        if (edges < 0) {
+            edges = model == Model.GRID ? 4L * vertices : 10L * vertices;
+        }
+        if (base == null) {
+            base = "data/graphs/" + model.name().toLowerCase() + "_v" + vertices + "_e" + edges + "_w" + maxWeight;
+        }
+
+        GraphGenerator generator = new GraphGenerator(model, vertices, edges, minWeight, maxWeight, seed);
+        String graphFile = null;
+        String snapshotFile = null;
+        for (String format : formats.split(",")) {
+            long start = System.nanoTime();
+            long written;
+            if (format.equals("graphml")) {
+                graphFile = base + ".graphml";
+                String name = Paths.get(base).getFileName().toString();
+                written = generator.writeGraphML(graphFile, name);
+            } else if (format.equals("snapshot")) {
+                graphFile = base + ".graph.bin";
+                snapshotFile = graphFile;
+                written = generator.writeSnapshot(graphFile);
+            } else {
+                System.err.println("unknown format " + format);
+                System.exit(1);
+                return;
+            }
+            System.out.printf("Wrote %d vertices and %d edges to %s in %.1f s%n",
+                    vertices, written, graphFile, (System.nanoTime() - start) / 1e9);
+        }
+        if (graphFile != null && !source.equals("none")) {
+            // A snapshot, if there is one, loads without parsing
+            String outputFile = base + "_output.txt";
+            writeReference(snapshotFile != null ? snapshotFile : graphFile, source, outputFile);
+            System.out.println("Wrote reference output from " + source + " to " + outputFile);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Single pass StAX reader for GraphML files.
+ * <p>
+ * Unlike {@link GraphBuilder#buildFromGraphML(String)} no document tree is
+ * built: every {@code <node>} and {@code <edge>} is handed to a
+ * {@link GraphSink} as soon as it has been read, so peak memory is the size
+ * of the graph being built rather than a multiple of the file size.
+ * The weight of an edge is the text of its first {@code <data>} child.
+ */
+public class GraphMLStreamReader {
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    /**
+     * Reads a GraphML file into a sink
+     * @param file the path of the GraphML file
+     * @param sink receives the vertices and edges in file order
+     */
+    public static void read(String file, GraphSink sink) throws IOException, XMLStreamException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16)) {
+            read(in, sink);
+        }
+    }
+
+    /**
+     * Reads a GraphML document from a stream into a sink
+     * @param in the stream to read, which is not closed
+     * @param sink receives the vertices and edges in document order
+     */
+    public static void read(InputStream in, GraphSink sink) throws XMLStreamException {
+        XMLStreamReader reader = FACTORY.createXMLStreamReader(in);
+        try {
+            String edgeSource = null;
+            String edgeTarget = null;
+            String edgeId = null;
+            String weightText = null;
+
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (name.equals("node")) {
+                        sink.addVertex(reader.getAttributeValue(null, "id"));
+                    } else if (name.equals("edge")) {
+                        edgeId = reader.getAttributeValue(null, "id");
+                        edgeSource = reader.getAttributeValue(null, "source");
+                        edgeTarget = reader.getAttributeValue(null, "target");
+                        weightText = null;
+                    } else if (name.equals("data") && edgeSource != null && weightText == null) {
+                        weightText = reader.getElementText();
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("edge")) {
+                    if (weightText == null) {
+                        throw new XMLStreamException("Edge " + edgeId + " has no weight", reader.getLocation());
+                    }
+                    sink.addEdge(edgeSource, edgeTarget, Integer.parseInt(weightText.trim()));
+                    edgeSource = null;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+import java.util.Arrays;
+
+/**
+ * Splits the vertices of an {@link IndexedGraph} into shards for
+ * {@link ShardedShortestPath}. A partition is an array giving the shard of
+ * every vertex id.
+ * <p>
+ * Every edge between two shards becomes a distance update that has to cross
+ * the transport, so the fewer cut edges the better, as long as the shards
+ * stay about the same size.
+ */
+public class GraphPartitioner {
+
+    /** How much bigger than the average a shard may grow during refinement */
+    private static final double IMBALANCE = 1.05;
+    private static final int REFINE_PASSES = 4;
+
+    /**
+     * Cuts the vertex ids into contiguous ranges of about the same number of
+     * vertices plus edges.
+     * <p>
+     * Time complexity: O(V)
+     * @param graph the graph to split
+     * @param shards the number of shards
+     * @return the shard of every vertex id
+     */
+    public static int[] byVertexRange(IndexedGraph graph, int shards) {
+        checkShards(shards);
+        int n = graph.getVertexCount();
+        long total = (long) n + graph.getEdgeCount();
+        int[] shardOf = new int[n];
+        long work = 0;
+        for (int v = 0; v < n; v++) {
+            shardOf[v] = (int) Math.min(shards - 1, work * shards / Math.max(1, total));
+            work += 1 + graph.edgeEnd(v) - graph.edgeStart(v);
+        }
+        return shardOf;
+    }
+
+    /**
+     * Heuristic minimum edge-cut partition, in the style of graph growing
+     * plus Kernighan-Lin refinement.
+     * <p>
+     * Shards are grown one after the other by breadth-first search over the
+     * edges in both directions, each up to an equal share of the vertices,
+     * so each shard is a connected region where the graph allows it. Then a
+     * few passes move every boundary vertex to the neighbouring shard it has
+     * the most edges to, when that cuts fewer edges and keeps the shard
+     * within {@value #IMBALANCE} of the average size. The result is a good
+     * cut, not necessarily the minimum one, which is NP-hard to find.
+     * <p>
+     * Time complexity: O(V + E) per pass
+     * @param graph the graph to split
+     * @param shards the number of shards
+     * @return the shard of every vertex id
+     */
+    public static int[] byMinCut(IndexedGraph graph, int shards) {
+        checkShards(shards);
+        int n = graph.getVertexCount();
+        ReverseAdjacencyIndex reverse = new ReverseAdjacencyIndex(graph);
+        int[] shardOf = new int[n];
+        Arrays.fill(shardOf, -1);
+
+        // Graph growing: breadth-first regions of about n / shards vertices
+        int[] queue = new int[n];
+        int[] sizes = new int[shards];
+        int next = 0;
+        int assigned = 0;
+        for (int s = 0; s < shards; s++) {
+            int quota = (int) ((long) n * (s + 1) / shards) - assigned;
+            int head = 0, tail = 0;
+            while (sizes[s] < quota) {
+                if (head == tail) {
+                    // region exhausted: seed again from the next free vertex
+                    while (shardOf[next] >= 0) {
+                        next++;
+                    }
+                    shardOf[next] = s;
+                    sizes[s]++;
+                    queue[tail++] = next;
+                    continue;
+                }
+                int v = queue[head++];
+                for (int e = graph.edgeStart(v), end = graph.edgeEnd(v); e < end && sizes[s] < quota; e++) {
+                    int w = graph.edgeTarget(e);
+                    if (shardOf[w] < 0) {
+                        shardOf[w] = s;
+                        sizes[s]++;
+                        queue[tail++] = w;
+                    }
+                }
+                for (int e = reverse.edgeStart(v), end = reverse.edgeEnd(v); e < end && sizes[s] < quota; e++) {
+                    int w = reverse.edgeSource(e);
+                    if (shardOf[w] < 0) {
+                        shardOf[w] = s;
+                        sizes[s]++;
+                        queue[tail++] = w;
+                    }
+                }
+            }
+            assigned += sizes[s];
+        }
+
+        // Refinement: greedy moves of boundary vertices that cut fewer edges
+        int limit = (int) Math.ceil(IMBALANCE * n / shards);
+        int[] links = new int[shards];
+        for (int pass = 0; pass < REFINE_PASSES; pass++) {
+            int moved = 0;
+            for (int v = 0; v < n; v++) {
+                int home = shardOf[v];
+                for (int e = graph.edgeStart(v), end = graph.edgeEnd(v); e < end; e++) {
+                    links[shardOf[graph.edgeTarget(e)]]++;
+                }
+                for (int e = reverse.edgeStart(v), end = reverse.edgeEnd(v); e < end; e++) {
+                    links[shardOf[reverse.edgeSource(e)]]++;
+                }
+                int best = home;
+                for (int s = 0; s < shards; s++) {
+                    if (links[s] > links[best] && sizes[s] < limit) {
+                        best = s;
+                    }
+                }
+                Arrays.fill(links, 0);
+                if (best != home) {
+                    shardOf[v] = best;
+                    sizes[home]--;
+                    sizes[best]++;
+                    moved++;
+                }
+            }
+            if (moved == 0) {
+                break;
+            }
+        }
+        return shardOf;
+    }
+
+    /**
+     * Counts the edges whose ends are in different shards
+     * @param graph the graph
+     * @param shardOf the shard of every vertex id
+     * @return the number of cut edges
+     */
+    public static long cutEdges(IndexedGraph graph, int[] shardOf) {
+        long cut = 0;
+        for (int v = 0; v < graph.getVertexCount(); v++) {
+            for (int e = graph.edgeStart(v), end = graph.edgeEnd(v); e < end; e++) {
+                if (shardOf[graph.edgeTarget(e)] != shardOf[v]) {
+                    cut++;
+                }
+            }
+        }
+        return cut;
+    }
+
+    private static void checkShards(int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("shards must be positive: " + shards);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * The part of a partitioned graph that one shard worker holds: the vertices
+ * it owns and their outgoing edges.
+ * <p>
+ * Owned vertices get local ids 0..size-1 in global id order. An edge names
+ * its target by shard and local id, so a worker can tell local edges from
+ * boundary edges, and address the update for a boundary edge, without
+ * knowing the rest of the graph.
+ */
+public class GraphShard {
+
+    final int shard;
+    /** the global vertex id of every local id; null in a worker, which does not need it */
+    final int[] globalIds;
+    final int[] offsets;
+    final int[] targetShards;
+    final int[] targetLocals;
+    final int[] weights;
+
+    GraphShard(int shard, int[] globalIds, int[] offsets, int[] targetShards, int[] targetLocals, int[] weights) {
+        this.shard = shard;
+        this.globalIds = globalIds;
+        this.offsets = offsets;
+        this.targetShards = targetShards;
+        this.targetLocals = targetLocals;
+        this.weights = weights;
+    }
+
+    /**
+     * Cuts a graph into shards.
+     * <p>
+     * Time complexity: O(V + E)
+     * @param graph the graph to split
+     * @param shardOf the shard of every vertex id, from a {@link GraphPartitioner}
+     * @param shards the number of shards
+     * @return one shard per shard number, some possibly empty
+     */
+    public static GraphShard[] split(IndexedGraph graph, int[] shardOf, int shards) {
+        int n = graph.getVertexCount();
+        int[] sizes = new int[shards];
+        int[] edgeCounts = new int[shards];
+        int[] localOf = new int[n];
+        for (int v = 0; v < n; v++) {
+            int s = shardOf[v];
+            localOf[v] = sizes[s]++;
+            edgeCounts[s] += graph.edgeEnd(v) - graph.edgeStart(v);
+        }
+
+        GraphShard[] result = new GraphShard[shards];
+        for (int s = 0; s < shards; s++) {
+            result[s] = new GraphShard(s, new int[sizes[s]], new int[sizes[s] + 1],
+                    new int[edgeCounts[s]], new int[edgeCounts[s]], new int[edgeCounts[s]]);
+        }
+        int[] edgeFill = new int[shards];
+        for (int v = 0; v < n; v++) {
+            GraphShard shard = result[shardOf[v]];
+            int local = localOf[v];
+            shard.globalIds[local] = v;
+            int f = edgeFill[shard.shard];
+            shard.offsets[local] = f;
+            for (int e = graph.edgeStart(v), end = graph.edgeEnd(v); e < end; e++) {
+                int w = graph.edgeTarget(e);
+                shard.targetShards[f] = shardOf[w];
+                shard.targetLocals[f] = localOf[w];
+                shard.weights[f] = graph.edgeWeight(e);
+                f++;
+            }
+            edgeFill[shard.shard] = f;
+            shard.offsets[local + 1] = f;
+        }
+        return result;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    /**
+     * Get the number of vertices the shard owns
+     */
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Get the number of edges leaving the shard's vertices
+     */
+    public int getEdgeCount() {
+        return weights.length;
+    }
+
+    /**
+     * Get the number of edges that lead to another shard
+     */
+    public int getBoundaryEdgeCount() {
+        int count = 0;
+        for (int targetShard : targetShards) {
+            if (targetShard != shard) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -1,29 +1,42 @@
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
-import org.jdom2.JDOMException;
+import javax.xml.stream.XMLStreamException;
 
 /**
  *
  * @author lewi0146
  * @author gammaploid
+ */
 public class GraphShortestPathDriver {
 
     /**
      *
      * The program must accept one line of input on the standard input
-     * that contains the name of the file to load in graphml format, a space,
+     * that contains the name of the file to load in graphml format (or a
+     * binary snapshot written by {@link GraphSnapshot}), a space,
      * and then the index of the starting vertex (starting from 0). For example
      *
      * data/graphs/random_v10_e10_w50.graphml 0
      *
+     * The starting vertex may also be a comma separated list of indices, or
+     * "all", in which case the distance matrix from those sources is printed.
+     *
+     * Optional further fields are printInfo (true/false), printNoPath
+     * (true/false) and the index of a target vertex, in which case only the
+     * path to that vertex is printed.
+     *
      * @param args the command line arguments: <filename> <starting vertex>
      */
-    public static void main(String[] args) throws FileNotFoundException, IOException, JDOMException {
+    public static void main(String[] args) throws FileNotFoundException, IOException, XMLStreamException {
 
         //String filename = "data/graphs/graphSpecExample.graphml";
         //String filename = "data/graphs/graphTutorialExample.graphml";
@@ -32,6 +45,8 @@ public class GraphShortestPathDriver {
         int sourceVertex = 0;
         boolean printInfo = false;
         boolean printNoPath = true;
+        int targetVertex = -1;
+        List<String> matrixSources = null;
 
         Scanner s = new Scanner(System.in);
         String line = s.nextLine();
@@ -42,7 +57,16 @@ public class GraphShortestPathDriver {
                 filename = params[0];
             }
             if (params.length > 1) {
-                sourceVertex = Integer.parseInt(params[1]);
+                if (params[1].equals("all") || params[1].contains(",")) {
+                    matrixSources = new ArrayList<>();
+                    if (!params[1].equals("all")) {
+                        for (String index : params[1].split(",")) {
+                            matrixSources.add(String.valueOf(Integer.parseInt(index)));
+                        }
+                    }
+                } else {
+                    sourceVertex = Integer.parseInt(params[1]);
+                }
             }
             if (params.length > 2) {
                 printInfo = params[2].equals("true");
@@ -50,16 +74,30 @@ public class GraphShortestPathDriver {
             if (params.length > 3) {
                 printNoPath = params[3].equals("true");
             }
+            if (params.length > 4) {
+                targetVertex = Integer.parseInt(params[4]);
+            }
         } 
 
        //System.out.print("Building graph from file: " +filename +"...");
-        Graph g = GraphBuilder.buildFromGraphML(filename);
+        IndexedGraph g = GraphBuilder.load(filename);
         //System.out.println("done.");
 
         if (printInfo) {
             System.out.println(g);
         }
 
+        // Several sources (or "all") ask for a distance matrix instead of paths
+        if (matrixSources != null) {
+            if (matrixSources.isEmpty()) {
+                for (Vertex v : g.getVertices()) {
+                    matrixSources.add(v.getLabel());
+                }
+            }
+            printMatrix(g, matrixSources);
+            return;
+        }
+
         // Perform Dijkstra's shortest path from sourceVertex
         Vertex source = g.getVertex(String.valueOf(sourceVertex));
         if (source == null) {
@@ -67,14 +105,65 @@ public class GraphShortestPathDriver {
             return;
         }
 
+        // A target vertex asks for a single route, answered by a bidirectional search
+        if (targetVertex >= 0) {
+            Vertex target = g.getVertex(String.valueOf(targetVertex));
+            if (target == null) {
+                System.err.println("Target vertex " + targetVertex + " not found in graph");
+                return;
+            }
+            BidirectionalDijkstra.shortestPath(g, source, target).printResult(target);
+            return;
+        }
+
         // Use PriorityQueue by default
+        long start = SearchMetrics.start();
         DijkstraShortestPath.DijkstraResult result = 
             DijkstraShortestPath.dijkstraWithPriorityQueue(g, source);
+        SearchMetrics.phase("search", start);
         
         // Print results
+        start = SearchMetrics.start();
         result.printResults(g);
+        SearchMetrics.phase("output", start);
 
+        // -Ddijkstra.metrics=true reports the counters and phase timings on stderr
+        if (SearchMetrics.enabled()) {
+            System.err.println(SearchMetrics.get());
+        }
+
+
+    }
+
+    /**
+     * Prints the distances from each source to every vertex, one row per
+     * source. The first line lists the vertices in column order and
+     * unreachable vertices are shown as "-".
+     */
+    private static void printMatrix(IndexedGraph g, List<String> sources) {
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16));
+        out.print("from\\to");
+        for (int v = 0; v < g.getVertexCount(); v++) {
+            out.print(' ');
+            out.print(g.vertexAt(v).getLabel());
+        }
+        out.println();
 
+        int[][] matrix = BatchDijkstra.distanceMatrix(g, sources);
+        for (int row = 0; row < matrix.length; row++) {
+            out.print(sources.get(row));
+            out.print(':');
+            for (int distance : matrix[row]) {
+                out.print(' ');
+                if (distance == Integer.MAX_VALUE) {
+                    out.print('-');
+                } else {
+                    out.print(distance);
+                }
+            }
+            out.println();
+        }
+        out.flush();
     }
 
 }
@@ -0,0 +1,21 @@
+/**
+ * Receiver for vertices and edges as a graph file is read, so loaders can
+ * fill a graph without holding the whole document in memory.
+ */
+public interface GraphSink {
+
+    /**
+     * Called for every node in the file
+     * @param label the label of the vertex
+     */
+    void addVertex(String label);
+
+    /**
+     * Called for every edge in the file. Either endpoint may not have been
+     * reported through addVertex yet.
+     * @param source the label of the source vertex
+     * @param target the label of the target vertex
+     * @param weight the weight of the edge
+     */
+    void addEdge(String source, String target, int weight);
+}
@@ -0,0 +1,222 @@
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Versioned binary snapshot of an {@link IndexedGraph}.
+ * <p>
+ * All values are little-endian ints, laid out as:
+ * <pre>
+ * magic "DJKG", version, vertexCount, edgeCount, labelByteCount, maxWeight
+ * labelOffsets[vertexCount + 1]   byte offset of each label
+ * labelBytes[labelByteCount]      UTF-8 labels in vertex id order, padded to 4 bytes
+ * offsets[vertexCount + 1]        CSR edge offsets
+ * targets[edgeCount]
+ * weights[edgeCount]
+ * </pre>
+ * {@link #open(String)} memory-maps the file, so no edge data is copied onto
+ * the heap and a large graph is ready for queries in milliseconds.
+ */
+public class GraphSnapshot {
+
+    /** "DJKG" read as a little-endian int */
+    static final int MAGIC = 0x474B4A44;
+    static final int VERSION = 2;
+    /** Header size of version 1 snapshots, which lack maxWeight */
+    static final int HEADER_BYTES_V1 = 5 * Integer.BYTES;
+    static final int HEADER_BYTES = 6 * Integer.BYTES;
+
+    /**
+     * Writes a graph to a snapshot file, replacing any existing file
+     * @param graph the graph to write, with vertex ids in label order
+     * @param file the path of the snapshot to write
+     */
+    public static void write(IndexedGraph graph, String file) throws IOException {
+        int n = graph.getVertexCount();
+        int m = graph.getEdgeCount();
+        byte[][] labels = new byte[n][];
+        int labelByteCount = 0;
+        for (int v = 0; v < n; v++) {
+            labels[v] = graph.vertexAt(v).getLabel().getBytes(StandardCharsets.UTF_8);
+            labelByteCount += labels[v].length;
+        }
+
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(m).putInt(labelByteCount).putInt(graph.getMaxWeight());
+
+            int labelOffset = 0;
+            for (int v = 0; v <= n; v++) {
+                flushIfFull(channel, buffer, Integer.BYTES);
+                buffer.putInt(labelOffset);
+                if (v < n) {
+                    labelOffset += labels[v].length;
+                }
+            }
+            for (int v = 0; v < n; v++) {
+                flushIfFull(channel, buffer, labels[v].length);
+                buffer.put(labels[v]);
+            }
+            for (int pad = labelByteCount; pad % Integer.BYTES != 0; pad++) {
+                flushIfFull(channel, buffer, 1);
+                buffer.put((byte) 0);
+            }
+
+            for (int v = 0; v < n; v++) {
+                flushIfFull(channel, buffer, Integer.BYTES);
+                buffer.putInt(graph.edgeStart(v));
+            }
+            flushIfFull(channel, buffer, Integer.BYTES);
+            buffer.putInt(m);
+            for (int v = 0; v < n; v++) {
+                for (int e = graph.edgeStart(v), end = graph.edgeEnd(v); e < end; e++) {
+                    flushIfFull(channel, buffer, Integer.BYTES);
+                    buffer.putInt(graph.edgeTarget(e));
+                }
+            }
+            for (int v = 0; v < n; v++) {
+                for (int e = graph.edgeStart(v), end = graph.edgeEnd(v); e < end; e++) {
+                    flushIfFull(channel, buffer, Integer.BYTES);
+                    buffer.putInt(graph.edgeWeight(e));
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private static void flushIfFull(FileChannel channel, ByteBuffer buffer, int needed) throws IOException {
+        if (buffer.remaining() < needed) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Memory-maps a snapshot file
+     * @param file the path of the snapshot
+     * @return a read-only graph backed by the mapped file
+     * @throws IOException if the file cannot be read or is not a snapshot of a supported version
+     */
+    public static MappedGraph open(String file) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            Layout layout = readLayout(channel, file);
+            ByteBuffer labels = map(channel, layout.labelsPosition, layout.offsetsPosition - layout.labelsPosition);
+            ByteBuffer offsets = map(channel, layout.offsetsPosition, layout.targetsPosition - layout.offsetsPosition);
+            ByteBuffer targets = map(channel, layout.targetsPosition, (long) layout.edgeCount * Integer.BYTES);
+            ByteBuffer weights = map(channel, layout.weightsPosition, (long) layout.edgeCount * Integer.BYTES);
+
+            return new MappedGraph(layout.vertexCount, labels, offsets.asIntBuffer(), targets.asIntBuffer(),
+                    weights.asIntBuffer(), layout.maxWeight);
+        }
+    }
+
+    /**
+     * Where the sections of a snapshot file start, read from its header
+     */
+    static class Layout {
+        int vertexCount;
+        int edgeCount;
+        int labelByteCount;
+        /** the largest weight, or -1 for version 1 snapshots that do not record it */
+        int maxWeight;
+        /** the label offsets, followed by the label bytes */
+        long labelsPosition;
+        long labelBytesPosition;
+        long offsetsPosition;
+        long targetsPosition;
+        long weightsPosition;
+    }
+
+    /**
+     * Reads and checks the header of a snapshot
+     * @param channel the open snapshot file
+     * @param file the path of the file, for error messages
+     * @return the positions of the sections
+     * @throws IOException if the file is not a snapshot of a supported version, or is truncated
+     */
+    static Layout readLayout(FileChannel channel, String file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IOException(file + " is too short to be a graph snapshot");
+            }
+        }
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException(file + " is not a graph snapshot");
+        }
+        int version = header.getInt();
+        if (version != 1 && version != VERSION) {
+            throw new IOException(file + " has snapshot version " + version + ", expected 1 to " + VERSION);
+        }
+        Layout layout = new Layout();
+        layout.vertexCount = header.getInt();
+        layout.edgeCount = header.getInt();
+        layout.labelByteCount = header.getInt();
+        layout.maxWeight = version >= 2 ? header.getInt() : -1;
+
+        long n = layout.vertexCount;
+        layout.labelsPosition = version >= 2 ? HEADER_BYTES : HEADER_BYTES_V1;
+        layout.labelBytesPosition = layout.labelsPosition + (n + 1) * Integer.BYTES;
+        layout.offsetsPosition = layout.labelBytesPosition + align(layout.labelByteCount);
+        layout.targetsPosition = layout.offsetsPosition + (n + 1) * Integer.BYTES;
+        layout.weightsPosition = layout.targetsPosition + (long) layout.edgeCount * Integer.BYTES;
+        if (channel.size() < layout.weightsPosition + (long) layout.edgeCount * Integer.BYTES) {
+            throw new IOException(file + " is truncated");
+        }
+        return layout;
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static long align(int bytes) {
+        return (bytes + Integer.BYTES - 1) / Integer.BYTES * Integer.BYTES;
+    }
+
+    /**
+     * Does the file start with the snapshot magic number?
+     * @param file the path of the file to check
+     * @return true if the file looks like a snapshot
+     */
+    public static boolean isSnapshot(String file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return Integer.reverseBytes(in.readInt()) == MAGIC;
+        } catch (java.io.EOFException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Converts a GraphML file to a snapshot.
+     *
+     * @param args the command line arguments: &lt;graphml file&gt; [snapshot file]
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("usage: GraphSnapshot <graphml file> [snapshot file]");
+            System.exit(1);
+        }
+        String in = args[0];
+        String out = args.length > 1 ? args[1] : in.replaceFirst("\\.graphml$", "") + ".graph.bin";
+
+        CompactGraph graph = GraphBuilder.buildCompactFromGraphML(in);
+        write(graph, out);
+        System.out.println("Wrote " + graph.getVertexCount() + " vertices and "
+                + graph.getEdgeCount() + " edges to " + out);
+    }
+}
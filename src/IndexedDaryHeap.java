@@ -0,0 +1,181 @@
+import java.util.Arrays;
+
+/**
+ * Indexed d-ary min-heap over vertex ids 0..capacity-1, keyed by int distance.
+ * <p>
+ * Keys, heap slots and heap positions are all plain int arrays sized once at
+ * construction, so insert, extractMin and decreaseKey never allocate or hash.
+ * A wider arity makes the heap shallower, which pays off when there are many
+ * more decreaseKey calls than extractMin calls.
+ */
+public class IndexedDaryHeap {
+
+    private final int arity;
+    private final int[] keys;
+    private final int[] heap;
+    private final int[] position;
+    private int size;
+
+    /**
+     * Creates an empty heap.
+     * @param capacity the number of vertex ids the heap can hold
+     * @param arity the number of children per node, one of 2, 4 or 8
+     */
+    public IndexedDaryHeap(int capacity, int arity) {
+        if (arity != 2 && arity != 4 && arity != 8) {
+            throw new IllegalArgumentException("Heap arity must be 2, 4 or 8, got " + arity);
+        }
+        this.arity = arity;
+        this.keys = new int[capacity];
+        this.heap = new int[capacity];
+        this.position = new int[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    /**
+     * For subclasses that keep the heap somewhere else; they must override
+     * every public method.
+     * @param arity the number of children per node, one of 2, 4 or 8
+     */
+    protected IndexedDaryHeap(int arity) {
+        if (arity != 2 && arity != 4 && arity != 8) {
+            throw new IllegalArgumentException("Heap arity must be 2, 4 or 8, got " + arity);
+        }
+        this.arity = arity;
+        this.keys = null;
+        this.heap = null;
+        this.position = null;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getArity() {
+        return arity;
+    }
+
+    /**
+     * Check if a vertex id is in the heap
+     */
+    public boolean contains(int vertex) {
+        return position[vertex] >= 0;
+    }
+
+    /**
+     * Get the key of a vertex id in the heap, or Integer.MAX_VALUE if absent
+     */
+    public int getKey(int vertex) {
+        return position[vertex] >= 0 ? keys[vertex] : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Insert a vertex id that is not yet in the heap
+     */
+    public void insert(int vertex, int key) {
+        keys[vertex] = key;
+        heap[size] = vertex;
+        position[vertex] = size;
+        siftUp(size++);
+    }
+
+    /**
+     * Lower the key of a vertex id, inserting it if it is not in the heap.
+     * Keys that are not smaller than the current key are ignored.
+     */
+    public void decreaseKey(int vertex, int key) {
+        int index = position[vertex];
+        if (index < 0) {
+            insert(vertex, key);
+        } else if (key < keys[vertex]) {
+            keys[vertex] = key;
+            siftUp(index);
+        }
+    }
+
+    /**
+     * Get the vertex id with the minimum key without removing it
+     */
+    public int peek() {
+        return heap[0];
+    }
+
+    /**
+     * Remove and return the vertex id with the minimum key.
+     * The heap must not be empty.
+     */
+    public int extractMin() {
+        int min = heap[0];
+        position[min] = -1;
+        int last = heap[--size];
+        if (size > 0) {
+            heap[0] = last;
+            position[last] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    /**
+     * Remove every vertex id from the heap.
+     * <p>
+     * Time complexity: O(size)
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int index) {
+        int vertex = heap[index];
+        int key = keys[vertex];
+        // move the hole up instead of swapping at every level
+        while (index > 0) {
+            int parentIndex = (index - 1) / arity;
+            int parent = heap[parentIndex];
+            if (key >= keys[parent]) {
+                break;
+            }
+            heap[index] = parent;
+            position[parent] = index;
+            index = parentIndex;
+        }
+        heap[index] = vertex;
+        position[vertex] = index;
+    }
+
+    private void siftDown(int index) {
+        int vertex = heap[index];
+        int key = keys[vertex];
+        while (true) {
+            int firstChild = index * arity + 1;
+            if (firstChild >= size) {
+                break;
+            }
+            int lastChild = Math.min(firstChild + arity, size);
+            int smallest = firstChild;
+            int smallestKey = keys[heap[firstChild]];
+            for (int c = firstChild + 1; c < lastChild; c++) {
+                int childKey = keys[heap[c]];
+                if (childKey < smallestKey) {
+                    smallest = c;
+                    smallestKey = childKey;
+                }
+            }
+            if (smallestKey >= key) {
+                break;
+            }
+            heap[index] = heap[smallest];
+            position[heap[index]] = index;
+            index = smallest;
+        }
+        heap[index] = vertex;
+        position[vertex] = index;
+    }
+}
@@ -0,0 +1,170 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * DijkstraResult backed by int arrays indexed by the vertex ids of an
+ * {@link IndexedGraph}: two ints per vertex instead of two HashMap entries.
+ * A search that reached only a small part of the graph is kept sparse
+ * instead, as its sorted vertex ids with one distance and predecessor each,
+ * so copying it costs time proportional to the vertices reached.
+ */
+public class IndexedDijkstraResult extends DijkstraShortestPath.DijkstraResult {
+
+    /** Searches reaching fewer than one in this many vertices are kept sparse */
+    private static final int SPARSE_RATIO = 4;
+
+    private final IndexedGraph graph;
+    /** Sorted ids of the reached vertices, or null when the arrays are indexed by vertex id */
+    private final int[] ids;
+    private final int[] distances;
+    private final int[] predecessors;
+
+    /**
+     * @param graph the graph that was searched
+     * @param distances distance per vertex id, Integer.MAX_VALUE if unreachable
+     * @param predecessors predecessor id per vertex id, -1 if none
+     * @param source the source vertex
+     */
+    public IndexedDijkstraResult(IndexedGraph graph, int[] distances, int[] predecessors, Vertex source) {
+        this(graph, null, distances, predecessors, source);
+    }
+
+    private IndexedDijkstraResult(IndexedGraph graph, int[] ids, int[] distances, int[] predecessors,
+                                  Vertex source) {
+        super(source);
+        this.graph = graph;
+        this.ids = ids;
+        this.distances = distances;
+        this.predecessors = predecessors;
+    }
+
+    /**
+     * Copies the reached vertices of a finished search out of a workspace.
+     * <p>
+     * Time complexity: O(V) when the search reached a large part of the
+     * graph, O(R log R) for the R vertices reached otherwise
+     * @param graph the graph that was searched
+     * @param workspace the workspace holding the search
+     * @param source the source vertex
+     * @return a result that stays valid after the workspace is reused
+     */
+    public static IndexedDijkstraResult fromWorkspace(IndexedGraph graph, DijkstraWorkspace workspace, Vertex source) {
+        int n = graph.getVertexCount();
+        int reached = workspace.getReachedCount();
+        if (reached < n / SPARSE_RATIO) {
+            int[] ids = new int[reached];
+            for (int r = 0; r < reached; r++) {
+                ids[r] = workspace.getReached(r);
+            }
+            Arrays.sort(ids);
+            int[] distances = new int[reached];
+            int[] predecessors = new int[reached];
+            for (int i = 0; i < reached; i++) {
+                distances[i] = workspace.getDistance(ids[i]);
+                predecessors[i] = workspace.getPredecessor(ids[i]);
+            }
+            return new IndexedDijkstraResult(graph, ids, distances, predecessors, source);
+        }
+        int[] distances = new int[n];
+        int[] predecessors = new int[n];
+        Arrays.fill(distances, Integer.MAX_VALUE);
+        Arrays.fill(predecessors, -1);
+        for (int r = 0; r < reached; r++) {
+            int v = workspace.getReached(r);
+            distances[v] = workspace.getDistance(v);
+            predecessors[v] = workspace.getPredecessor(v);
+        }
+        return new IndexedDijkstraResult(graph, distances, predecessors, source);
+    }
+
+    /**
+     * Get the array slot of a vertex id, negative if the search did not reach it
+     */
+    private int slot(int v) {
+        if (v < 0 || ids == null) {
+            return v;
+        }
+        return Arrays.binarySearch(ids, v);
+    }
+
+    @Override
+    public int getDistance(Vertex vertex) {
+        int i = slot(graph.indexOf(vertex));
+        return i < 0 ? Integer.MAX_VALUE : distances[i];
+    }
+
+    @Override
+    public Vertex getPredecessor(Vertex vertex) {
+        int i = slot(graph.indexOf(vertex));
+        return i < 0 || predecessors[i] < 0 ? null : graph.vertexAt(predecessors[i]);
+    }
+
+    @Override
+    public List<Vertex> getPath(Vertex target) {
+        List<Vertex> path = new ArrayList<>();
+        int v = graph.indexOf(target);
+        int i = slot(v);
+        if (i < 0 || distances[i] == Integer.MAX_VALUE) {
+            return path;
+        }
+        while (v >= 0) {
+            path.add(graph.vertexAt(v));
+            v = predecessors[slot(v)];
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Prints every path with a {@link PathWriter}, producing the same bytes
+     * as the map-based printResults in time proportional to the output.
+     *
+     * @param graph the graph containing vertices
+     */
+    @Override
+    public void printResults(Graph graph) {
+        if (graph != this.graph) {
+            super.printResults(graph);
+            return;
+        }
+        System.out.flush();
+        try {
+            PathWriter writer = new PathWriter(System.out);
+            writeAll(writer);
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the path to every vertex of the graph, in label order
+     * @param writer where the paths go
+     * @throws IOException if the writer cannot write
+     */
+    public void writeAll(PathWriter writer) throws IOException {
+        if (ids == null) {
+            writer.writeAll(graph, distances, predecessors);
+            return;
+        }
+        // every vertex is written anyway, so expanding to full arrays keeps the cost at O(V)
+        int n = graph.getVertexCount();
+        int[] fullDistances = new int[n];
+        int[] fullPredecessors = new int[n];
+        Arrays.fill(fullDistances, Integer.MAX_VALUE);
+        Arrays.fill(fullPredecessors, -1);
+        for (int i = 0; i < ids.length; i++) {
+            fullDistances[ids[i]] = distances[i];
+            fullPredecessors[ids[i]] = predecessors[i];
+        }
+        writer.writeAll(graph, fullDistances, fullPredecessors);
+    }
+
+    /**
+     * Get the approximate heap footprint of the arrays, in bytes
+     */
+    long sizeInBytes() {
+        return (2L * distances.length + (ids == null ? 0 : ids.length)) * Integer.BYTES + 64;
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * A graph whose vertices are numbered densely from 0 to n-1 and whose
+ * outgoing edges can be walked with primitive ints.
+ * <p>
+ * The edges of vertex {@code v} are the edge ids in the half-open range
+ * {@code [edgeStart(v), edgeEnd(v))}, so a relaxation loop looks like:
+ * <pre>
+ * for (int e = g.edgeStart(v); e &lt; g.edgeEnd(v); e++) {
+ *     int w = g.edgeTarget(e);
+ *     int weight = g.edgeWeight(e);
+ * }
+ * </pre>
+ * Vertex ids follow the label order of {@link Graph#getVertices()}.
+ */
+public interface IndexedGraph extends Graph {
+
+    /**
+     * Get the dense id of a vertex
+     * @param vertex the vertex to look up
+     * @return the id of the vertex, or -1 if it is not in the graph
+     */
+    int indexOf(Vertex vertex);
+
+    /**
+     * Get the vertex with the given dense id
+     * @param index the id of the vertex, between 0 and getVertexCount() - 1
+     * @return the vertex with that id
+     */
+    Vertex vertexAt(int index);
+
+    /**
+     * Get the number of edges in the graph
+     * @return number of edges
+     */
+    int getEdgeCount();
+
+    /**
+     * Get the largest edge weight, recorded when the graph was loaded
+     * @return the largest weight, or 0 if the graph has no edges
+     */
+    int getMaxWeight();
+
+    /**
+     * Get the first edge id of a vertex
+     * @param index the id of the vertex
+     * @return the first edge id leaving the vertex
+     */
+    int edgeStart(int index);
+
+    /**
+     * Get the edge id one past the last edge of a vertex
+     * @param index the id of the vertex
+     * @return the exclusive end of the edge ids leaving the vertex
+     */
+    int edgeEnd(int index);
+
+    /**
+     * Get the id of the vertex an edge points to
+     * @param edge the edge id
+     * @return the id of the target vertex
+     */
+    int edgeTarget(int edge);
+
+    /**
+     * Get the weight of an edge
+     * @param edge the edge id
+     * @return the weight of the edge
+     */
+    int edgeWeight(int edge);
+}
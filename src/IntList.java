@@ -0,0 +1,42 @@
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints, for search frontiers and bucket contents
+ * where a {@code List<Integer>} would box every element.
+ */
+class IntList {
+
+    int[] data;
+    int size;
+
+    IntList() {
+        this(8);
+    }
+
+    IntList(int capacity) {
+        data = new int[Math.max(1, capacity)];
+    }
+
+    void add(int value) {
+        if (size == data.length) {
+            data = Arrays.copyOf(data, size * 2);
+        }
+        data[size++] = value;
+    }
+
+    int get(int index) {
+        return data[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+}
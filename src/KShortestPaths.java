@@ -0,0 +1,496 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The k shortest loopless paths between two vertices, by Yen's algorithm.
+ * <p>
+ * Each path after the first deviates from the one before it. For every
+ * vertex of that path, the spur vertex, Yen's algorithm searches for the
+ * shortest path to the target that keeps the prefix up to the spur vertex
+ * (the root path), avoids the other vertices of the root path, and leaves
+ * the spur vertex by an edge that no path found so far with the same root
+ * path took. The cheapest candidate not taken yet is the next path.
+ * <p>
+ * Most of the usual cost of the spur searches is avoided:
+ * <ul>
+ *   <li>one backward search from the target, once per query, gives every
+ *       vertex's distance to the target and a shortest-path tree towards it.
+ *       Removing vertices and edges only makes paths longer, so these
+ *       distances are exact lower bounds in every spur search: a spur search
+ *       is an A* search that heads almost straight for the target, and is
+ *       not run at all when the tree path from the spur vertex is not
+ *       blocked;</li>
+ *   <li>removed vertices and edges are per-thread stamped masks, not copies
+ *       of the graph;</li>
+ *   <li>a spur search stops at the target, or as soon as it could only find
+ *       paths costlier than enough candidates already in hand;</li>
+ *   <li>the spur searches from one path are independent, so they can run in
+ *       parallel.</li>
+ * </ul>
+ * Paths are ranked by cost. Candidates of equal cost are taken in order of
+ * vertex count, then vertex ids, so the result does not depend on the
+ * parallelism.
+ */
+public class KShortestPaths {
+
+    private static final ThreadLocal<Masks> MASKS = new ThreadLocal<>();
+
+    /**
+     * Ranked paths from a source to a target, cheapest first
+     */
+    public static class Result {
+
+        private final List<List<Vertex>> paths;
+        private final int[] costs;
+
+        Result(List<List<Vertex>> paths, int[] costs) {
+            this.paths = Collections.unmodifiableList(paths);
+            this.costs = costs;
+        }
+
+        /**
+         * Get the paths, cheapest first, each from the source to the target
+         */
+        public List<List<Vertex>> getPaths() {
+            return paths;
+        }
+
+        /**
+         * Get the cost of the path at a rank
+         * @param rank the position of the path in {@link #getPaths()}
+         */
+        public int getCost(int rank) {
+            return costs[rank];
+        }
+
+        /**
+         * Get the number of paths found, at most k
+         */
+        public int size() {
+            return paths.size();
+        }
+    }
+
+    /**
+     * Finds the k shortest loopless paths, running the spur searches on the calling thread
+     * @param graph the graph containing vertices
+     * @param source the source vertex
+     * @param target the target vertex
+     * @param k the number of paths wanted
+     * @return up to k paths, fewer if the graph has fewer loopless paths
+     * @throws IllegalArgumentException if a vertex is not in the graph or k is negative
+     */
+    public static Result shortestPaths(Graph graph, Vertex source, Vertex target, int k) {
+        return shortestPaths(graph, source, target, k, null, 1);
+    }
+
+    /**
+     * Finds the k shortest loopless paths.
+     * <p>
+     * Time complexity: O(k V) spur searches in the worst case, each at most
+     * O((V + E) log V) but usually only as long as its path
+     * @param graph the graph containing vertices; other graphs than an
+     *              {@link IndexedGraph} are copied into one first
+     * @param source the source vertex
+     * @param target the target vertex
+     * @param k the number of paths wanted
+     * @param executor the executor to run the spur searches on, or null for the calling thread
+     * @param parallelism the number of spur searches to run at once
+     * @return up to k paths, fewer if the graph has fewer loopless paths
+     * @throws IllegalArgumentException if a vertex is not in the graph or k is negative
+     */
+    public static Result shortestPaths(Graph graph, Vertex source, Vertex target, int k,
+                                       ExecutorService executor, int parallelism) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative: " + k);
+        }
+        IndexedGraph indexed = graph instanceof IndexedGraph ? (IndexedGraph) graph : CompactGraph.fromGraph(graph);
+        int s = indexed.indexOf(source);
+        int t = indexed.indexOf(target);
+        if (s < 0) {
+            throw new IllegalArgumentException("Source vertex " + source + " not found in graph");
+        }
+        if (t < 0) {
+            throw new IllegalArgumentException("Target vertex " + target + " not found in graph");
+        }
+
+        List<Path> accepted = new ArrayList<>();
+        TargetTree tree = new TargetTree(indexed, t);
+        if (k > 0 && tree.distances[s] != Integer.MAX_VALUE) {
+            accepted.add(tree.pathFrom(s, new int[0], new int[0], 0));
+        }
+        // only the k - accepted cheapest candidates can still be taken, so no more are kept
+        TreeSet<Path> candidates = new TreeSet<>();
+        while (!accepted.isEmpty() && accepted.size() < k) {
+            Path last = accepted.get(accepted.size() - 1);
+            int wanted = k - accepted.size();
+            int spurs = last.vertices.length - 1;
+            if (executor == null || parallelism <= 1 || spurs <= 1) {
+                for (int i = 0; i < spurs; i++) {
+                    offer(candidates, spur(indexed, tree, accepted, last, i, bound(candidates, wanted)), wanted);
+                }
+            } else {
+                for (Path path : spurAll(indexed, tree, accepted, last, bound(candidates, wanted),
+                        executor, parallelism)) {
+                    offer(candidates, path, wanted);
+                }
+            }
+            if (candidates.isEmpty()) {
+                break;
+            }
+            accepted.add(candidates.pollFirst());
+        }
+
+        List<List<Vertex>> paths = new ArrayList<>(accepted.size());
+        int[] costs = new int[accepted.size()];
+        for (int rank = 0; rank < accepted.size(); rank++) {
+            Path path = accepted.get(rank);
+            List<Vertex> vertices = new ArrayList<>(path.vertices.length);
+            for (int v : path.vertices) {
+                vertices.add(indexed.vertexAt(v));
+            }
+            paths.add(vertices);
+            costs[rank] = path.cost;
+        }
+        return new Result(paths, costs);
+    }
+
+    private static void offer(TreeSet<Path> candidates, Path path, int wanted) {
+        if (path != null) {
+            candidates.add(path);
+            while (candidates.size() > wanted) {
+                candidates.pollLast();
+            }
+        }
+    }
+
+    /**
+     * The cost a new candidate has to stay within to be worth finding
+     */
+    private static int bound(TreeSet<Path> candidates, int wanted) {
+        return candidates.size() < wanted ? Integer.MAX_VALUE : candidates.last().cost;
+    }
+
+    /**
+     * Runs the spur searches of every vertex of a path, spread over the executor
+     */
+    private static List<Path> spurAll(IndexedGraph graph, TargetTree tree, List<Path> accepted, Path last,
+                                      int bound, ExecutorService executor, int parallelism) {
+        int spurs = last.vertices.length - 1;
+        Path[] found = new Path[spurs];
+        AtomicInteger next = new AtomicInteger();
+        int workers = Math.min(parallelism, spurs);
+        List<Future<?>> futures = new ArrayList<>(workers);
+        for (int w = 0; w < workers; w++) {
+            futures.add(executor.submit(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < spurs) {
+                    found[i] = spur(graph, tree, accepted, last, i, bound);
+                }
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(f -> f.cancel(true));
+            throw new CancellationException("Spur searches interrupted");
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        return Arrays.asList(found);
+    }
+
+    /**
+     * Finds the shortest deviation from a path at one of its vertices.
+     * <p>
+     * Time complexity: O(path length) when the tree path from the spur
+     * vertex is usable, otherwise an A* search that stops at the target
+     * @param i the position of the spur vertex in the last path
+     * @param bound the cost above which the candidate would not be kept
+     * @return the candidate path, or null if there is none within the bound
+     */
+    private static Path spur(IndexedGraph graph, TargetTree tree, List<Path> accepted, Path last, int i, int bound) {
+        int[] root = last.vertices;
+        int spur = root[i];
+        int rootCost = last.prefixCosts[i];
+        int toTarget = tree.distances[spur];
+        if (toTarget == Integer.MAX_VALUE || (long) rootCost + toTarget > bound) {
+            return null;
+        }
+
+        Masks masks = Masks.forThread(graph.getVertexCount());
+        for (int j = 0; j < i; j++) {
+            masks.block(root[j]);
+        }
+        // edges out of the spur vertex already taken by a path with the same root path
+        IntList takenNext = new IntList();
+        for (Path path : accepted) {
+            if (path.vertices.length > i + 1 && path.sharesRoot(root, i)) {
+                takenNext.add(path.vertices[i + 1]);
+            }
+        }
+
+        if (!contains(takenNext, tree.next[spur]) && !masks.blocksTreePath(tree, spur)) {
+            return tree.pathFrom(spur, root, last.prefixCosts, i);
+        }
+
+        DijkstraWorkspace workspace = DijkstraWorkspace.forThread(graph.getVertexCount());
+        IndexedDaryHeap heap = workspace.heap(DijkstraHeap.DEFAULT_ARITY);
+        long limit = bound == Integer.MAX_VALUE ? Long.MAX_VALUE : (long) bound - rootCost;
+        workspace.update(spur, 0, -1);
+        heap.insert(spur, toTarget);
+        while (!heap.isEmpty()) {
+            int current = heap.extractMin();
+            int currentDistance = workspace.getDistance(current);
+            // the distances to the target are consistent bounds, so no later vertex leads to a cheaper path
+            if ((long) currentDistance + tree.distances[current] > limit) {
+                return null;
+            }
+            if (current == tree.target) {
+                return Path.join(root, last.prefixCosts, i, workspace, tree.target);
+            }
+            workspace.settle(current);
+            for (int e = graph.edgeStart(current), end = graph.edgeEnd(current); e < end; e++) {
+                int neighbor = graph.edgeTarget(e);
+                if (workspace.isSettled(neighbor) || masks.isBlocked(neighbor)
+                        || tree.distances[neighbor] == Integer.MAX_VALUE
+                        || (current == spur && contains(takenNext, neighbor))) {
+                    continue;
+                }
+                int newDistance = currentDistance + graph.edgeWeight(e);
+                if (newDistance < workspace.getDistance(neighbor)) {
+                    workspace.update(neighbor, newDistance, current);
+                    heap.decreaseKey(neighbor, newDistance + tree.distances[neighbor]);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean contains(IntList list, int value) {
+        for (int i = 0; i < list.size; i++) {
+            if (list.data[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A path by vertex id, with the cost up to each of its vertices
+     */
+    private static final class Path implements Comparable<Path> {
+
+        final int[] vertices;
+        final int[] prefixCosts;
+        final int cost;
+
+        Path(int[] vertices, int[] prefixCosts) {
+            this.vertices = vertices;
+            this.prefixCosts = prefixCosts;
+            this.cost = prefixCosts[prefixCosts.length - 1];
+        }
+
+        /**
+         * Joins the first i vertices of a root path to the spur path from
+         * its i-th vertex in a workspace
+         */
+        static Path join(int[] root, int[] rootCosts, int i, DijkstraWorkspace workspace, int target) {
+            int spurLength = 0;
+            for (int v = target; v >= 0; v = workspace.getPredecessor(v)) {
+                spurLength++;
+            }
+            int[] vertices = Arrays.copyOf(root, i + spurLength);
+            int[] prefixCosts = Arrays.copyOf(rootCosts, vertices.length);
+            int position = vertices.length - 1;
+            for (int v = target; v >= 0; v = workspace.getPredecessor(v)) {
+                vertices[position] = v;
+                prefixCosts[position] = rootCosts[i] + workspace.getDistance(v);
+                position--;
+            }
+            return new Path(vertices, prefixCosts);
+        }
+
+        /**
+         * Whether this path starts with the first i + 1 vertices of another
+         */
+        boolean sharesRoot(int[] root, int i) {
+            for (int j = i; j >= 0; j--) {
+                if (vertices[j] != root[j]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int compareTo(Path other) {
+            if (cost != other.cost) {
+                return Integer.compare(cost, other.cost);
+            }
+            if (vertices.length != other.vertices.length) {
+                return Integer.compare(vertices.length, other.vertices.length);
+            }
+            return Arrays.compare(vertices, other.vertices);
+        }
+    }
+
+    /**
+     * Distances to the target from every vertex, and the next vertex on a
+     * shortest path to it, from one Dijkstra search over the reversed edges.
+     * <p>
+     * Time complexity: O((V + E) log V)
+     */
+    private static final class TargetTree {
+
+        final int target;
+        final int[] distances;
+        final int[] next;
+
+        TargetTree(IndexedGraph graph, int target) {
+            int n = graph.getVertexCount();
+            ReverseAdjacencyIndex reverse = new ReverseAdjacencyIndex(graph);
+            this.target = target;
+            this.distances = new int[n];
+            this.next = new int[n];
+            Arrays.fill(distances, Integer.MAX_VALUE);
+            Arrays.fill(next, -1);
+            IndexedDaryHeap heap = new IndexedDaryHeap(n, DijkstraHeap.DEFAULT_ARITY);
+            distances[target] = 0;
+            heap.insert(target, 0);
+            while (!heap.isEmpty()) {
+                int current = heap.extractMin();
+                for (int e = reverse.edgeStart(current), end = reverse.edgeEnd(current); e < end; e++) {
+                    int v = reverse.edgeSource(e);
+                    int newDistance = distances[current] + reverse.edgeWeight(e);
+                    if (newDistance < distances[v]) {
+                        distances[v] = newDistance;
+                        next[v] = current;
+                        heap.decreaseKey(v, newDistance);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Joins the first i vertices of a root path to the tree path from
+         * its i-th vertex, or from the source when the root path is empty
+         */
+        Path pathFrom(int from, int[] root, int[] rootCosts, int i) {
+            int treeLength = 0;
+            for (int v = from; v >= 0; v = next[v]) {
+                treeLength++;
+            }
+            int[] vertices = Arrays.copyOf(root, i + treeLength);
+            int[] prefixCosts = Arrays.copyOf(rootCosts, vertices.length);
+            int fromCost = rootCosts.length == 0 ? 0 : rootCosts[i];
+            int position = i;
+            for (int v = from; v >= 0; v = next[v]) {
+                vertices[position] = v;
+                prefixCosts[position] = fromCost + distances[from] - distances[v];
+                position++;
+            }
+            return new Path(vertices, prefixCosts);
+        }
+    }
+
+    /**
+     * Per-thread vertex mask. A vertex is blocked while its stamp equals the
+     * current one, so clearing the mask for the next spur search is O(1).
+     */
+    private static final class Masks {
+
+        private final int[] stamps;
+        private int stamp;
+
+        private Masks(int capacity) {
+            stamps = new int[capacity];
+        }
+
+        static Masks forThread(int capacity) {
+            Masks masks = MASKS.get();
+            if (masks == null || masks.stamps.length < capacity) {
+                masks = new Masks(capacity);
+                MASKS.set(masks);
+            }
+            masks.stamp++;
+            if (masks.stamp == Integer.MAX_VALUE) {
+                Arrays.fill(masks.stamps, 0);
+                masks.stamp = 1;
+            }
+            return masks;
+        }
+
+        void block(int vertex) {
+            stamps[vertex] = stamp;
+        }
+
+        boolean isBlocked(int vertex) {
+            return stamps[vertex] == stamp;
+        }
+
+        /**
+         * Whether the tree path from a vertex to the target passes a blocked vertex
+         */
+        boolean blocksTreePath(TargetTree tree, int from) {
+            for (int v = tree.next[from]; v >= 0; v = tree.next[v]) {
+                if (isBlocked(v)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Prints the k shortest paths between two vertices.
+     *
+     * @param args the command line arguments: &lt;graph file&gt; &lt;source label&gt;
+     *        &lt;target label&gt; &lt;k&gt; [threads]
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4) {
+            System.err.println("usage: KShortestPaths <graph file> <source label> <target label> <k> [threads]");
+            System.exit(1);
+        }
+        IndexedGraph graph = GraphBuilder.load(args[0]);
+        Vertex source = graph.getVertex(args[1]);
+        Vertex target = graph.getVertex(args[2]);
+        if (source == null || target == null) {
+            System.err.println("Vertex " + (source == null ? args[1] : args[2]) + " not found in graph");
+            System.exit(1);
+        }
+        int k = Integer.parseInt(args[3]);
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+        ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        try {
+            long start = System.nanoTime();
+            Result result = shortestPaths(graph, source, target, k, pool, threads);
+            long nanos = System.nanoTime() - start;
+            for (int rank = 0; rank < result.size(); rank++) {
+                StringBuilder sb = new StringBuilder("path ").append(rank + 1).append(':');
+                for (Vertex v : result.getPaths().get(rank)) {
+                    sb.append(' ').append(v.getLabel());
+                }
+                System.out.println(sb.append(": cost = ").append(result.getCost(rank)));
+            }
+            System.err.printf("%d paths in %.1f ms%n", result.size(), nanos / 1e6);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+}
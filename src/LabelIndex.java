@@ -0,0 +1,79 @@
+import java.util.*;
+
+/**
+ * Maps vertex labels to dense vertex ids.
+ * <p>
+ * Labels that are plain decimal numbers, as in the bundled GraphML files,
+ * are looked up in an int array indexed by their value, parsed straight from
+ * the characters without hashing or allocating. Other labels, and numbers
+ * too large for the array, go to a HashMap.
+ */
+final class LabelIndex {
+
+    private final int[] byNumber;
+    private final Map<String, Integer> byLabel;
+
+    /**
+     * @param vertices the vertices, in id order
+     */
+    LabelIndex(Vertex[] vertices) {
+        int n = vertices.length;
+        // a table of up to 4 slots per vertex covers labels like "0".."n-1" with room for gaps
+        int limit = 4 * n + 16;
+        int max = -1;
+        for (Vertex v : vertices) {
+            int number = parse(v.getLabel());
+            if (number >= 0 && number < limit) {
+                max = Math.max(max, number);
+            }
+        }
+        byNumber = new int[max + 1];
+        Arrays.fill(byNumber, -1);
+        Map<String, Integer> others = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            String label = vertices[i].getLabel();
+            int number = parse(label);
+            if (number >= 0 && number <= max) {
+                byNumber[number] = i;
+            } else {
+                others.put(label, i);
+            }
+        }
+        byLabel = others;
+    }
+
+    /**
+     * Get the id of the vertex with the given label
+     * @param label the label to look up
+     * @return the id, or -1 if no vertex has that label
+     */
+    int indexOf(String label) {
+        int number = parse(label);
+        if (number >= 0 && number < byNumber.length) {
+            return byNumber[number];
+        }
+        Integer index = byLabel.get(label);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Parses a label written as a canonical decimal number: digits only,
+     * no sign and no leading zeros, at most nine digits.
+     * @return the value, or -1 if the label is not such a number
+     */
+    static int parse(String label) {
+        int length = label.length();
+        if (length == 0 || length > 9 || (length > 1 && label.charAt(0) == '0')) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < length; i++) {
+            int digit = label.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,415 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Goal-directed point-to-point search with A*, landmarks and the triangle
+ * inequality (ALT, Goldberg and Harrelson).
+ * <p>
+ * For a few landmark vertices L the distances d(L, v) and d(v, L) to and
+ * from every vertex are precomputed. By the triangle inequality
+ * <pre>
+ * d(v, t) &gt;= d(L, t) - d(L, v)   and   d(v, t) &gt;= d(v, L) - d(t, L)
+ * </pre>
+ * so the largest of these bounds is an admissible and consistent A*
+ * heuristic. The search then settles mostly vertices that lie towards the
+ * target instead of a ball around the source.
+ * <p>
+ * Distances are kept in two flat int arrays indexed by
+ * {@code vertex * landmarkCount + landmark}, so the bounds of one vertex are
+ * adjacent in memory. Tables can be saved next to the graph with
+ * {@link #write(String)}.
+ */
+public class LandmarkIndex {
+
+    /** "DJLM" */
+    static final int MAGIC = 0x444A4C4D;
+    static final int VERSION = 1;
+
+    /**
+     * How landmarks are chosen
+     */
+    public enum Selection {
+        /** Each landmark is the vertex farthest from the landmarks chosen so far */
+        FARTHEST,
+        /**
+         * Each landmark is the leaf of the shortest path tree from a random
+         * root whose subtree has the worst bounds so far (Goldberg and Werneck)
+         */
+        AVOID
+    }
+
+    private static final int INFINITY = Integer.MAX_VALUE;
+
+    private final IndexedGraph graph;
+    private final int[] landmarks;
+    private final int[] fromLandmark;
+    private final int[] toLandmark;
+    private int lastSettledCount;
+
+    LandmarkIndex(IndexedGraph graph, int[] landmarks, int[] fromLandmark, int[] toLandmark) {
+        this.graph = graph;
+        this.landmarks = landmarks;
+        this.fromLandmark = fromLandmark;
+        this.toLandmark = toLandmark;
+    }
+
+    /**
+     * Selects landmarks and precomputes their distance tables
+     * @param graph the graph to index
+     * @param landmarkCount the number of landmarks, usually 8 to 16
+     * @param selection how to choose the landmarks
+     * @param seed seed for the random first vertex or roots
+     * @return the landmark index
+     */
+    public static LandmarkIndex build(IndexedGraph graph, int landmarkCount, Selection selection, long seed) {
+        int n = graph.getVertexCount();
+        int k = Math.min(landmarkCount, n);
+        CompactGraph reverse = CompactGraph.reverse(graph);
+        Random random = new Random(seed);
+
+        int[] landmarks = new int[k];
+        int[] fromLandmark = new int[n * k];
+        int[] toLandmark = new int[n * k];
+        LandmarkIndex index = new LandmarkIndex(graph, landmarks, fromLandmark, toLandmark);
+
+        for (int i = 0; i < k; i++) {
+            landmarks[i] = selection == Selection.AVOID
+                    ? index.avoidCandidate(i, random.nextInt(n))
+                    : index.farthestCandidate(i, random.nextInt(n));
+            fillColumn(graph, landmarks[i], fromLandmark, i, k);
+            fillColumn(reverse, landmarks[i], toLandmark, i, k);
+        }
+        return index;
+    }
+
+    /**
+     * Writes the distances from one landmark (or to it, on the reverse graph)
+     * into column i of a table
+     */
+    private static void fillColumn(IndexedGraph graph, int landmark, int[] table, int column, int k) {
+        int n = graph.getVertexCount();
+        DijkstraWorkspace workspace = DijkstraWorkspace.forThread(n);
+        DijkstraHeap.search(graph, landmark, workspace, DijkstraHeap.DEFAULT_ARITY);
+        for (int v = 0; v < n; v++) {
+            table[v * k + column] = workspace.getDistance(v);
+        }
+    }
+
+    /**
+     * The vertex whose distance from the nearest of the first count
+     * landmarks is largest; unreachable vertices count as farthest.
+     */
+    private int farthestCandidate(int count, int start) {
+        int n = graph.getVertexCount();
+        int k = landmarks.length;
+        if (count == 0) {
+            // farthest vertex from a random start
+            DijkstraWorkspace workspace = DijkstraWorkspace.forThread(n);
+            DijkstraHeap.search(graph, start, workspace, DijkstraHeap.DEFAULT_ARITY);
+            int best = start;
+            for (int v = 0; v < n; v++) {
+                if (workspace.getDistance(v) != INFINITY && workspace.getDistance(v) > workspace.getDistance(best)) {
+                    best = v;
+                }
+            }
+            return best;
+        }
+        int best = -1;
+        long bestDistance = -1;
+        for (int v = 0; v < n; v++) {
+            long nearest = Long.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                int d = fromLandmark[v * k + i];
+                nearest = Math.min(nearest, d == INFINITY ? Long.MAX_VALUE - 1 : d);
+                if (landmarks[i] == v) {
+                    nearest = -1;
+                }
+            }
+            if (nearest > bestDistance) {
+                bestDistance = nearest;
+                best = v;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Avoid selection: builds the shortest path tree from root, weights each
+     * vertex by how far its current lower bound from the root falls short of
+     * the true distance, and walks from the root into the heaviest subtree
+     * that holds no landmark until it reaches a leaf.
+     */
+    private int avoidCandidate(int count, int root) {
+        int n = graph.getVertexCount();
+        int k = landmarks.length;
+        DijkstraWorkspace workspace = DijkstraWorkspace.forThread(n);
+        DijkstraHeap.search(graph, root, workspace, DijkstraHeap.DEFAULT_ARITY);
+
+        // children of each vertex in the shortest path tree, as CSR
+        int reached = workspace.getReachedCount();
+        int[] childStart = new int[n + 1];
+        for (int r = 0; r < reached; r++) {
+            int parent = workspace.getPredecessor(workspace.getReached(r));
+            if (parent >= 0) {
+                childStart[parent + 1]++;
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            childStart[v + 1] += childStart[v];
+        }
+        int[] children = new int[Math.max(0, reached - 1)];
+        int[] next = Arrays.copyOf(childStart, n);
+        for (int r = 0; r < reached; r++) {
+            int v = workspace.getReached(r);
+            int parent = workspace.getPredecessor(v);
+            if (parent >= 0) {
+                children[next[parent]++] = v;
+            }
+        }
+
+        boolean[] isLandmark = new boolean[n];
+        for (int i = 0; i < count; i++) {
+            isLandmark[landmarks[i]] = true;
+        }
+
+        // subtree sizes in post-order; a subtree holding a landmark gets size 0
+        long[] size = new long[n];
+        boolean[] hasLandmark = new boolean[n];
+        IntList stack = new IntList();
+        IntList order = new IntList(reached);
+        stack.add(root);
+        while (!stack.isEmpty()) {
+            int v = stack.data[--stack.size];
+            order.add(v);
+            for (int c = childStart[v]; c < childStart[v + 1]; c++) {
+                stack.add(children[c]);
+            }
+        }
+        for (int i = order.size - 1; i >= 0; i--) {
+            int v = order.data[i];
+            long weight = workspace.getDistance(v) - lowerBound(root, v, count);
+            long total = weight;
+            boolean landmarkBelow = isLandmark[v];
+            for (int c = childStart[v]; c < childStart[v + 1]; c++) {
+                total += size[children[c]];
+                landmarkBelow |= hasLandmark[children[c]];
+            }
+            hasLandmark[v] = landmarkBelow;
+            size[v] = landmarkBelow ? 0 : total;
+        }
+
+        int v = root;
+        while (true) {
+            int heaviest = -1;
+            for (int c = childStart[v]; c < childStart[v + 1]; c++) {
+                int child = children[c];
+                if (size[child] > 0 && (heaviest < 0 || size[child] > size[heaviest])) {
+                    heaviest = child;
+                }
+            }
+            if (heaviest < 0) {
+                break;
+            }
+            v = heaviest;
+        }
+        if (isLandmark[v]) {
+            // every subtree is covered; fall back to the farthest vertex
+            return farthestCandidate(count, root);
+        }
+        return v;
+    }
+
+    /**
+     * Lower bound on d(v, t) from the first count landmarks, or -1 if some
+     * landmark proves that t cannot be reached from v
+     */
+    private long lowerBound(int v, int t, int count) {
+        int k = landmarks.length;
+        long bound = 0;
+        for (int i = 0; i < count; i++) {
+            int fromV = fromLandmark[v * k + i];
+            int fromT = fromLandmark[t * k + i];
+            int toV = toLandmark[v * k + i];
+            int toT = toLandmark[t * k + i];
+            if (fromT != INFINITY) {
+                if (fromV == INFINITY) {
+                    continue;
+                }
+                bound = Math.max(bound, (long) fromT - fromV);
+            } else if (fromV != INFINITY) {
+                // L reaches v but not t, so v cannot reach t
+                return -1;
+            }
+            if (toT != INFINITY) {
+                if (toV == INFINITY) {
+                    // t reaches L but v does not, so v cannot reach t
+                    return -1;
+                }
+                bound = Math.max(bound, (long) toV - toT);
+            }
+        }
+        return bound;
+    }
+
+    public int getLandmarkCount() {
+        return landmarks.length;
+    }
+
+    /**
+     * Get the landmark vertices
+     */
+    public List<Vertex> getLandmarks() {
+        List<Vertex> result = new ArrayList<>(landmarks.length);
+        for (int landmark : landmarks) {
+            result.add(graph.vertexAt(landmark));
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of vertices settled by the most recent query, for
+     * measuring how well the landmarks guide the search. Not meaningful
+     * while queries run on several threads.
+     */
+    public int getLastSettledCount() {
+        return lastSettledCount;
+    }
+
+    /**
+     * A* shortest path from source to target using the landmark bounds.
+     * <p>
+     * As with {@link DijkstraShortestPath#dijkstraToTarget}, only settled
+     * vertices are recorded; their distances and paths are exact.
+     *
+     * @param source the source vertex
+     * @param target the target vertex
+     * @return a DijkstraResult, containing the settled distances and predecessors
+     * @throws IllegalArgumentException if the source or target is not in the graph
+     */
+    public DijkstraShortestPath.DijkstraResult shortestPath(Vertex source, Vertex target) {
+        int n = graph.getVertexCount();
+        int s = graph.indexOf(source);
+        int t = graph.indexOf(target);
+        if (s < 0) {
+            throw new IllegalArgumentException("Source vertex " + source + " not found in graph");
+        }
+        if (t < 0) {
+            throw new IllegalArgumentException("Target vertex " + target + " not found in graph");
+        }
+        DijkstraWorkspace workspace = DijkstraWorkspace.forThread(n);
+        IndexedDaryHeap heap = workspace.heap(DijkstraHeap.DEFAULT_ARITY);
+        int k = landmarks.length;
+        int settled = 0;
+
+        long sourceBound = lowerBound(s, t, k);
+        if (sourceBound >= 0) {
+            workspace.update(s, 0, -1);
+            heap.insert(s, (int) Math.min(sourceBound, INFINITY - 1));
+        }
+        while (!heap.isEmpty()) {
+            int current = heap.extractMin();
+            workspace.settle(current);
+            settled++;
+            if (current == t) {
+                break;
+            }
+            int currentDistance = workspace.getDistance(current);
+            for (int e = graph.edgeStart(current), end = graph.edgeEnd(current); e < end; e++) {
+                int neighbor = graph.edgeTarget(e);
+                int newDistance = currentDistance + graph.edgeWeight(e);
+                if (newDistance < workspace.getDistance(neighbor)) {
+                    long bound = lowerBound(neighbor, t, k);
+                    if (bound < 0) {
+                        continue; // the target is unreachable from there
+                    }
+                    workspace.update(neighbor, newDistance, current);
+                    heap.decreaseKey(neighbor, (int) Math.min(newDistance + bound, INFINITY - 1));
+                }
+            }
+        }
+        lastSettledCount = settled;
+        return workspace.toResult(graph, source, true);
+    }
+
+    /**
+     * Writes the landmark tables to a file, to be stored next to the graph
+     * @param file the path of the file to write
+     */
+    public void write(String file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(graph.getVertexCount());
+            out.writeInt(graph.getEdgeCount());
+            out.writeInt(landmarks.length);
+            for (int landmark : landmarks) {
+                out.writeInt(landmark);
+            }
+            for (int d : fromLandmark) {
+                out.writeInt(d);
+            }
+            for (int d : toLandmark) {
+                out.writeInt(d);
+            }
+        }
+    }
+
+    /**
+     * Reads landmark tables written by {@link #write(String)}
+     * @param file the path of the landmark file
+     * @param graph the graph the landmarks were computed for
+     * @return the landmark index
+     * @throws IOException if the file cannot be read or belongs to a different graph
+     */
+    public static LandmarkIndex read(String file, IndexedGraph graph) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a landmark file");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException(file + " has landmark version " + version + ", expected " + VERSION);
+            }
+            int n = in.readInt();
+            int m = in.readInt();
+            if (n != graph.getVertexCount() || m != graph.getEdgeCount()) {
+                throw new IOException(file + " was built for a graph with " + n + " vertices and " + m
+                        + " edges, not " + graph.getVertexCount() + " and " + graph.getEdgeCount());
+            }
+            int k = in.readInt();
+            int[] landmarks = new int[k];
+            for (int i = 0; i < k; i++) {
+                landmarks[i] = in.readInt();
+            }
+            int[] fromLandmark = new int[n * k];
+            int[] toLandmark = new int[n * k];
+            for (int i = 0; i < fromLandmark.length; i++) {
+                fromLandmark[i] = in.readInt();
+            }
+            for (int i = 0; i < toLandmark.length; i++) {
+                toLandmark[i] = in.readInt();
+            }
+            return new LandmarkIndex(graph, landmarks, fromLandmark, toLandmark);
+        }
+    }
+
+    /**
+     * Selects landmarks for a graph and writes their tables to a file.
+     *
+     * @param args the command line arguments: &lt;graph file&gt; &lt;landmark file&gt; [count] [farthest|avoid]
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("usage: LandmarkIndex <graph file> <landmark file> [count] [farthest|avoid]");
+            System.exit(1);
+        }
+        IndexedGraph graph = GraphBuilder.load(args[0]);
+        int count = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        Selection selection = args.length > 3 ? Selection.valueOf(args[3].toUpperCase()) : Selection.AVOID;
+        long start = System.nanoTime();
+        LandmarkIndex index = build(graph, count, selection, 42);
+        index.write(args[1]);
+        System.out.printf("Selected %d landmarks in %d ms, wrote %s%n",
+                index.getLandmarkCount(), (System.nanoTime() - start) / 1_000_000, args[1]);
+    }
+}
@@ -0,0 +1,206 @@
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only CSR graph whose labels and edge arrays live in a memory-mapped
+ * {@link GraphSnapshot} file.
+ * <p>
+ * Nothing proportional to the edge count is copied onto the heap. Vertex
+ * objects are created on first use, and labels are looked up by binary
+ * search over the label-ordered dictionary in the file.
+ */
+public class MappedGraph implements IndexedGraph {
+
+    private final int vertexCount;
+    private final ByteBuffer labels;
+    private final int labelBytesStart;
+    private final IntBuffer offsets;
+    private final IntBuffer targets;
+    private final IntBuffer weights;
+    private final Vertex[] vertexCache;
+    private int maxWeight;
+
+    /**
+     * @param maxWeight the largest edge weight, or -1 if the snapshot does not
+     *                  record it and it must be found by scanning the weights
+     */
+    MappedGraph(int vertexCount, ByteBuffer labels, IntBuffer offsets, IntBuffer targets, IntBuffer weights,
+                int maxWeight) {
+        this.vertexCount = vertexCount;
+        this.labels = labels;
+        this.labelBytesStart = (vertexCount + 1) * Integer.BYTES;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.vertexCache = new Vertex[vertexCount];
+        this.maxWeight = maxWeight;
+    }
+
+    private String labelAt(int index) {
+        int start = labels.getInt(index * Integer.BYTES);
+        int end = labels.getInt((index + 1) * Integer.BYTES);
+        byte[] bytes = new byte[end - start];
+        labels.get(labelBytesStart + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Not supported, the graph is read-only.
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void addVertex(Vertex vertex) {
+        throw new UnsupportedOperationException("MappedGraph is read-only");
+    }
+
+    /**
+     * Not supported, the graph is read-only.
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void addEdge(Vertex source, Vertex target, int weight) {
+        throw new UnsupportedOperationException("MappedGraph is read-only");
+    }
+
+    /**
+     * Returns a list view of all vertices in the graph, sorted by label.
+     * @return a list of all vertices in the graph
+     */
+    @Override
+    public List<Vertex> getVertices() {
+        return new AbstractList<Vertex>() {
+            @Override
+            public Vertex get(int index) {
+                return vertexAt(index);
+            }
+
+            @Override
+            public int size() {
+                return vertexCount;
+            }
+        };
+    }
+
+    /**
+     * Returns a map of adjacent vertices and edge weights, built on every call.
+     * @param vertex the vertex for which to return the adjacent vertices
+     * @return a map of adjacent vertices and weights
+     */
+    @Override
+    public Map<Vertex, Integer> getAdjacentVertices(Vertex vertex) {
+        int v = indexOf(vertex);
+        if (v < 0) {
+            return new HashMap<>();
+        }
+        Map<Vertex, Integer> adj = new LinkedHashMap<>();
+        for (int e = edgeStart(v), end = edgeEnd(v); e < end; e++) {
+            adj.put(vertexAt(targets.get(e)), weights.get(e));
+        }
+        return adj;
+    }
+
+    @Override
+    public boolean hasVertex(Vertex vertex) {
+        return indexOf(vertex) >= 0;
+    }
+
+    @Override
+    public Vertex getVertex(String label) {
+        int index = indexOf(label);
+        return index < 0 ? null : vertexAt(index);
+    }
+
+    @Override
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    @Override
+    public int indexOf(Vertex vertex) {
+        int index = vertex.ordinalIn(this);
+        return index >= 0 ? index : indexOf(vertex.getLabel());
+    }
+
+    /**
+     * Binary search for a label in the label-ordered dictionary.
+     * <p>
+     * Time complexity: O(log V)
+     */
+    private int indexOf(String label) {
+        int low = 0;
+        int high = vertexCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = labelAt(mid).compareTo(label);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public Vertex vertexAt(int index) {
+        Vertex vertex = vertexCache[index];
+        if (vertex == null) {
+            vertex = new Vertex(labelAt(index));
+            vertex.bindOrdinal(this, index);
+            vertexCache[index] = vertex;
+        }
+        return vertex;
+    }
+
+    @Override
+    public int getEdgeCount() {
+        return targets.capacity();
+    }
+
+    @Override
+    public int getMaxWeight() {
+        int max = maxWeight;
+        if (max < 0) {
+            // version 1 snapshots do not store it, so scan once
+            max = 0;
+            for (int e = 0, m = weights.capacity(); e < m; e++) {
+                max = Math.max(max, weights.get(e));
+            }
+            maxWeight = max;
+        }
+        return max;
+    }
+
+    @Override
+    public int edgeStart(int index) {
+        return offsets.get(index);
+    }
+
+    @Override
+    public int edgeEnd(int index) {
+        return offsets.get(index + 1);
+    }
+
+    @Override
+    public int edgeTarget(int edge) {
+        return targets.get(edge);
+    }
+
+    @Override
+    public int edgeWeight(int edge) {
+        return weights.get(edge);
+    }
+
+    @Override
+    public String toString() {
+        return CompactGraph.describe(this);
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ * Dijkstra for small non-negative integer weights using a monotone integer
+ * priority queue instead of a comparison heap.
+ * <p>
+ * Dijkstra only ever extracts keys in non-decreasing order, and every key in
+ * the queue is at most the largest edge weight above the last one extracted.
+ * That allows two queues with amortised O(1) operations:
+ * <ul>
+ * <li>Dial's circular bucket queue, one bucket per distance modulo
+ *     maxWeight + 1, used when the largest weight is small;</li>
+ * <li>a radix heap, with 33 buckets by the highest bit in which a key differs
+ *     from the last key extracted, used otherwise.</li>
+ * </ul>
+ * The queue is chosen from {@link IndexedGraph#getMaxWeight()}, which is
+ * recorded when the graph is loaded. Neither queue supports decreaseKey;
+ * improved vertices are inserted again and stale entries are skipped.
+ */
+public class MonotoneQueueShortestPath {
+
+    /** Largest edge weight for which Dial's bucket queue is chosen */
+    public static final int DIAL_MAX_WEIGHT = 1024;
+
+    /**
+     * A monotone priority queue of vertex ids
+     */
+    interface MonotoneQueue {
+        void insert(int vertex, int key);
+
+        boolean isEmpty();
+
+        /** Remove and return a vertex with the minimum key */
+        int extractMin();
+    }
+
+    /**
+     * Single-source search with the queue chosen from the graph's largest weight
+     * @param graph the graph containing vertices
+     * @param source the source vertex
+     * @return a DijkstraResult, containing a map of distances and a map of predecessors
+     */
+    public static DijkstraShortestPath.DijkstraResult shortestPaths(IndexedGraph graph, Vertex source) {
+        return shortestPaths(graph, source, createQueue(graph.getMaxWeight()));
+    }
+
+    /**
+     * Single-source search with Dial's bucket queue
+     */
+    public static DijkstraShortestPath.DijkstraResult dijkstraWithDial(IndexedGraph graph, Vertex source) {
+        return shortestPaths(graph, source, new DialQueue(graph.getMaxWeight()));
+    }
+
+    /**
+     * Single-source search with a radix heap
+     */
+    public static DijkstraShortestPath.DijkstraResult dijkstraWithRadixHeap(IndexedGraph graph, Vertex source) {
+        return shortestPaths(graph, source, new RadixHeap());
+    }
+
+    static MonotoneQueue createQueue(int maxWeight) {
+        return maxWeight <= DIAL_MAX_WEIGHT ? new DialQueue(maxWeight) : new RadixHeap();
+    }
+
+    private static DijkstraShortestPath.DijkstraResult shortestPaths(IndexedGraph graph, Vertex source,
+                                                                     MonotoneQueue queue) {
+        int s = graph.indexOf(source);
+        if (s < 0) {
+            return DijkstraShortestPath.sourceOnly(source);
+        }
+        DijkstraWorkspace workspace = DijkstraWorkspace.forThread(graph.getVertexCount());
+        workspace.update(s, 0, -1);
+        queue.insert(s, 0);
+
+        while (!queue.isEmpty()) {
+            int current = queue.extractMin();
+            if (workspace.isSettled(current)) {
+                continue;
+            }
+            workspace.settle(current);
+            int currentDistance = workspace.getDistance(current);
+
+            for (int e = graph.edgeStart(current), end = graph.edgeEnd(current); e < end; e++) {
+                int neighbor = graph.edgeTarget(e);
+                if (!workspace.isSettled(neighbor)) {
+                    int newDistance = currentDistance + graph.edgeWeight(e);
+                    if (newDistance < workspace.getDistance(neighbor)) {
+                        workspace.update(neighbor, newDistance, current);
+                        queue.insert(neighbor, newDistance);
+                    }
+                }
+            }
+        }
+        return workspace.toResult(graph, source, false);
+    }
+
+    /**
+     * Dial's circular bucket queue. Keys in the queue always lie within
+     * maxWeight of the cursor, so maxWeight + 1 buckets never collide.
+     */
+    static class DialQueue implements MonotoneQueue {
+        private final IntList[] buckets;
+        private int cursor;
+        private int size;
+
+        DialQueue(int maxWeight) {
+            buckets = new IntList[maxWeight + 1];
+        }
+
+        @Override
+        public void insert(int vertex, int key) {
+            int slot = key % buckets.length;
+            if (buckets[slot] == null) {
+                buckets[slot] = new IntList();
+            }
+            buckets[slot].add(vertex);
+            size++;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override
+        public int extractMin() {
+            while (buckets[cursor] == null || buckets[cursor].isEmpty()) {
+                cursor = cursor + 1 == buckets.length ? 0 : cursor + 1;
+            }
+            IntList bucket = buckets[cursor];
+            size--;
+            return bucket.data[--bucket.size];
+        }
+    }
+
+    /**
+     * Radix heap over non-negative int keys. Bucket i holds keys whose highest
+     * bit differing from the last extracted key is bit i - 1; bucket 0 holds
+     * keys equal to it. Each key moves down at most 32 times in total.
+     */
+    static class RadixHeap implements MonotoneQueue {
+        private final IntList[] vertices = new IntList[33];
+        private final IntList[] keys = new IntList[33];
+        private int last;
+        private int size;
+
+        RadixHeap() {
+            for (int i = 0; i < vertices.length; i++) {
+                vertices[i] = new IntList();
+                keys[i] = new IntList();
+            }
+        }
+
+        private int bucketOf(int key) {
+            return key == last ? 0 : 32 - Integer.numberOfLeadingZeros(key ^ last);
+        }
+
+        @Override
+        public void insert(int vertex, int key) {
+            int b = bucketOf(key);
+            vertices[b].add(vertex);
+            keys[b].add(key);
+            size++;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override
+        public int extractMin() {
+            if (vertices[0].isEmpty()) {
+                int b = 1;
+                while (vertices[b].isEmpty()) {
+                    b++;
+                }
+                // the new minimum is the smallest key in the first non-empty bucket
+                IntList bucketKeys = keys[b];
+                IntList bucketVertices = vertices[b];
+                int min = Integer.MAX_VALUE;
+                for (int i = 0; i < bucketKeys.size; i++) {
+                    min = Math.min(min, bucketKeys.data[i]);
+                }
+                last = min;
+                // every key in bucket b now falls into a lower bucket
+                for (int i = 0; i < bucketKeys.size; i++) {
+                    int nb = bucketOf(bucketKeys.data[i]);
+                    vertices[nb].add(bucketVertices.data[i]);
+                    keys[nb].add(bucketKeys.data[i]);
+                }
+                bucketKeys.clear();
+                bucketVertices.clear();
+            }
+            size--;
+            keys[0].size--;
+            return vertices[0].data[--vertices[0].size];
+        }
+    }
+}
@@ -7,6 +7,7 @@ public class MyGraph implements Graph {
     
     private Map<String, Vertex> vertices;
     private Map<Vertex, Map<Vertex, Integer>> adjacencyList;
+    private volatile long version;
 
     
     public MyGraph() {
@@ -30,6 +31,7 @@ public class MyGraph implements Graph {
         if (!vertices.containsKey(vertex.getLabel())) {
             vertices.put(vertex.getLabel(), vertex);
             adjacencyList.put(vertex, new HashMap<>());
+            version++;
         }
     }
     
@@ -50,19 +52,46 @@ public class MyGraph implements Graph {
         // if (!adjacencyList.containsKey(source)) {
         //     adjacencyList.put(source, new HashMap<>());
         // }
-        adjacencyList.get(source).put(target, weight);
+        Integer previous = adjacencyList.get(source).put(target, weight);
+        if (previous == null || previous != weight) {
+            version++;
+        }
     }
     
+    /**
+     * Returns the version of the graph, which is bumped by every addVertex
+     * that adds a vertex and every addEdge that adds an edge or changes its weight.
+     * @return the current version of the graph
+     */
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
     /**
      * Returns a list of all vertices in the graph, sorted by label.
      * @return a list of all vertices in the graph
      */
     @Override
     public List<Vertex> getVertices() {
-        List<Vertex> vertexList = new ArrayList<>(vertices.values());
-        Collections.sort(vertexList);
-    
-        return vertexList;
+        // the TreeMap is keyed by label, so its values are already in label order
+        return new ArrayList<>(vertices.values());
+    }
+
+    /**
+     * Returns an immutable snapshot of the graph for querying.
+     * <p>
+     * The snapshot keeps the vertices in a label-ordered array with a dense id
+     * per vertex, its edges in primitive CSR arrays and a label dictionary
+     * with a fast path for numeric labels. All engines take the indexed path
+     * for it, so build the graph here, freeze it once and run every query on
+     * the snapshot. Later changes to this graph do not affect the snapshot.
+     * <p>
+     * Time complexity: O(V + E)
+     * @return the immutable snapshot
+     */
+    public CompactGraph freeze() {
+        return CompactGraph.fromGraph(this);
     }
     
     /**
@@ -0,0 +1,366 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only CSR graph kept entirely outside the Java heap, for graphs too
+ * big to hold comfortably in it.
+ * <p>
+ * Edge offsets, targets, weights and the label dictionary live in
+ * {@link OffHeapIntArray}s, either mapped from a {@link GraphSnapshot} file
+ * or copied into native memory. Unlike {@link MappedGraph} no Vertex is
+ * cached, so the heap footprint does not grow with the graph at all, and the
+ * edge arrays are split into chunks, so graphs of more than 512M edges can
+ * be opened. {@link #close()} releases the memory or mapping at once; the
+ * graph must not be used after that.
+ * <p>
+ * Search it with an {@link OffHeapWorkspace} to keep the per-query
+ * distances, predecessors and heap off the heap as well. Native memory from
+ * {@link #copyOf} and the workspace counts against
+ * {@code -XX:MaxDirectMemorySize}, which defaults to the maximum heap size,
+ * so raise it when running with a small heap; mapped files do not count.
+ */
+public class OffHeapGraph implements IndexedGraph, AutoCloseable {
+
+    private final int vertexCount;
+    private final int edgeCount;
+    private final int maxWeight;
+    private final OffHeapIntArray labelOffsets;
+    private ByteBuffer labelBytes;
+    private final OffHeapIntArray offsets;
+    private final OffHeapIntArray targets;
+    private final OffHeapIntArray weights;
+
+    private OffHeapGraph(int vertexCount, int edgeCount, int maxWeight, OffHeapIntArray labelOffsets,
+                         ByteBuffer labelBytes, OffHeapIntArray offsets, OffHeapIntArray targets,
+                         OffHeapIntArray weights) {
+        this.vertexCount = vertexCount;
+        this.edgeCount = edgeCount;
+        this.maxWeight = maxWeight;
+        this.labelOffsets = labelOffsets;
+        this.labelBytes = labelBytes;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    /**
+     * Memory-maps a snapshot file. The mapping is released by {@link #close()}.
+     * @param file the path of the snapshot
+     * @return a read-only graph backed by the mapped file
+     * @throws IOException if the file cannot be read or is not a snapshot of a supported version
+     */
+    public static OffHeapGraph open(String file) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            GraphSnapshot.Layout layout = GraphSnapshot.readLayout(channel, file);
+            int n = layout.vertexCount;
+            int m = layout.edgeCount;
+            OffHeapIntArray labelOffsets = null, offsets = null, targets = null, weights = null;
+            ByteBuffer labelBytes = null;
+            try {
+                labelOffsets = OffHeapIntArray.map(channel, layout.labelsPosition, n + 1L);
+                labelBytes = channel.map(FileChannel.MapMode.READ_ONLY, layout.labelBytesPosition,
+                        layout.labelByteCount);
+                offsets = OffHeapIntArray.map(channel, layout.offsetsPosition, n + 1L);
+                targets = OffHeapIntArray.map(channel, layout.targetsPosition, m);
+                weights = OffHeapIntArray.map(channel, layout.weightsPosition, m);
+            } catch (IOException | RuntimeException e) {
+                closeAll(labelOffsets, offsets, targets, weights);
+                if (labelBytes != null) {
+                    OffHeapIntArray.release(labelBytes);
+                }
+                throw e;
+            }
+            int max = layout.maxWeight;
+            if (max < 0) {
+                // version 1 snapshots do not store it, so scan once
+                max = 0;
+                for (long e = 0; e < m; e++) {
+                    max = Math.max(max, weights.get(e));
+                }
+            }
+            return new OffHeapGraph(n, m, max, labelOffsets, labelBytes, offsets, targets, weights);
+        }
+    }
+
+    /**
+     * Copies any indexed graph into native memory, keeping its vertex ids.
+     * <p>
+     * Time complexity: O(V + E)
+     * @param graph the graph to copy
+     * @return an off-heap copy of the graph
+     */
+    public static OffHeapGraph copyOf(IndexedGraph graph) {
+        int n = graph.getVertexCount();
+        int m = graph.getEdgeCount();
+        byte[][] labels = new byte[n][];
+        long labelByteCount = 0;
+        for (int v = 0; v < n; v++) {
+            labels[v] = graph.vertexAt(v).getLabel().getBytes(StandardCharsets.UTF_8);
+            labelByteCount += labels[v].length;
+        }
+        if (labelByteCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("labels take more than 2 GiB: " + labelByteCount);
+        }
+
+        OffHeapIntArray labelOffsets = null, offsets = null, targets = null, weights = null;
+        ByteBuffer labelBytes = null;
+        try {
+            labelOffsets = OffHeapIntArray.allocate(n + 1L);
+            labelBytes = ByteBuffer.allocateDirect((int) labelByteCount);
+            for (int v = 0; v < n; v++) {
+                labelOffsets.set(v, labelBytes.position());
+                labelBytes.put(labels[v]);
+                labels[v] = null;
+            }
+            labelOffsets.set(n, labelBytes.position());
+
+            offsets = OffHeapIntArray.allocate(n + 1L);
+            targets = OffHeapIntArray.allocate(m);
+            weights = OffHeapIntArray.allocate(m);
+            for (int v = 0; v < n; v++) {
+                offsets.set(v, graph.edgeStart(v));
+                for (int e = graph.edgeStart(v), end = graph.edgeEnd(v); e < end; e++) {
+                    targets.set(e, graph.edgeTarget(e));
+                    weights.set(e, graph.edgeWeight(e));
+                }
+            }
+            offsets.set(n, m);
+        } catch (RuntimeException | OutOfMemoryError e) {
+            closeAll(labelOffsets, offsets, targets, weights);
+            if (labelBytes != null) {
+                OffHeapIntArray.release(labelBytes);
+            }
+            throw e;
+        }
+        return new OffHeapGraph(n, m, graph.getMaxWeight(), labelOffsets, labelBytes, offsets, targets, weights);
+    }
+
+    private static void closeAll(OffHeapIntArray... arrays) {
+        for (OffHeapIntArray array : arrays) {
+            if (array != null) {
+                array.close();
+            }
+        }
+    }
+
+    private String labelAt(int index) {
+        ByteBuffer bytes = labelBytes;
+        if (bytes == null) {
+            throw new IllegalStateException("OffHeapGraph is closed");
+        }
+        int start = labelOffsets.get(index);
+        byte[] label = new byte[labelOffsets.get(index + 1L) - start];
+        bytes.get(start, label);
+        return new String(label, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Not supported, the graph is read-only.
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void addVertex(Vertex vertex) {
+        throw new UnsupportedOperationException("OffHeapGraph is read-only");
+    }
+
+    /**
+     * Not supported, the graph is read-only.
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void addEdge(Vertex source, Vertex target, int weight) {
+        throw new UnsupportedOperationException("OffHeapGraph is read-only");
+    }
+
+    /**
+     * Returns a list view of all vertices in the graph, sorted by label.
+     * Each call to get creates a new Vertex.
+     * @return a list of all vertices in the graph
+     */
+    @Override
+    public List<Vertex> getVertices() {
+        return new AbstractList<Vertex>() {
+            @Override
+            public Vertex get(int index) {
+                return vertexAt(index);
+            }
+
+            @Override
+            public int size() {
+                return vertexCount;
+            }
+        };
+    }
+
+    /**
+     * Returns a map of adjacent vertices and edge weights, built on every call.
+     * @param vertex the vertex for which to return the adjacent vertices
+     * @return a map of adjacent vertices and weights
+     */
+    @Override
+    public Map<Vertex, Integer> getAdjacentVertices(Vertex vertex) {
+        int v = indexOf(vertex);
+        if (v < 0) {
+            return new HashMap<>();
+        }
+        Map<Vertex, Integer> adj = new LinkedHashMap<>();
+        for (int e = edgeStart(v), end = edgeEnd(v); e < end; e++) {
+            adj.put(vertexAt(targets.get(e)), weights.get(e));
+        }
+        return adj;
+    }
+
+    @Override
+    public boolean hasVertex(Vertex vertex) {
+        return indexOf(vertex) >= 0;
+    }
+
+    @Override
+    public Vertex getVertex(String label) {
+        int index = indexOf(label);
+        return index < 0 ? null : vertexAt(index);
+    }
+
+    @Override
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    @Override
+    public int indexOf(Vertex vertex) {
+        int index = vertex.ordinalIn(this);
+        return index >= 0 ? index : indexOf(vertex.getLabel());
+    }
+
+    /**
+     * Binary search for a label in the label-ordered dictionary.
+     * <p>
+     * Time complexity: O(log V)
+     */
+    private int indexOf(String label) {
+        int low = 0;
+        int high = vertexCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = labelAt(mid).compareTo(label);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public Vertex vertexAt(int index) {
+        Vertex vertex = new Vertex(labelAt(index));
+        vertex.bindOrdinal(this, index);
+        return vertex;
+    }
+
+    @Override
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    @Override
+    public int getMaxWeight() {
+        return maxWeight;
+    }
+
+    @Override
+    public int edgeStart(int index) {
+        return offsets.get(index);
+    }
+
+    @Override
+    public int edgeEnd(int index) {
+        return offsets.get(index + 1L);
+    }
+
+    @Override
+    public int edgeTarget(int edge) {
+        return targets.get(edge);
+    }
+
+    @Override
+    public int edgeWeight(int edge) {
+        return weights.get(edge);
+    }
+
+    /**
+     * Number of bytes of native memory or file mapping held by the graph
+     */
+    public long sizeInBytes() {
+        ByteBuffer bytes = labelBytes;
+        return labelOffsets.sizeInBytes() + (bytes == null ? 0 : bytes.capacity())
+                + offsets.sizeInBytes() + targets.sizeInBytes() + weights.sizeInBytes();
+    }
+
+    /**
+     * Releases the memory or mapping of the graph. No search may be running
+     * on it, and it must not be used afterwards. Calling it again does nothing.
+     */
+    @Override
+    public synchronized void close() {
+        ByteBuffer bytes = labelBytes;
+        if (bytes == null) {
+            return;
+        }
+        labelBytes = null;
+        closeAll(labelOffsets, offsets, targets, weights);
+        OffHeapIntArray.release(bytes);
+    }
+
+    @Override
+    public String toString() {
+        return CompactGraph.describe(this);
+    }
+
+    /**
+     * Opens a snapshot off the heap and times one search on it.
+     *
+     * @param args the command line arguments: &lt;snapshot file&gt; [source label]
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("usage: OffHeapGraph <snapshot file> [source label]");
+            System.exit(1);
+        }
+        Runtime runtime = Runtime.getRuntime();
+        long start = System.nanoTime();
+        try (OffHeapGraph graph = open(args[0]);
+             OffHeapWorkspace workspace = new OffHeapWorkspace(graph.getVertexCount())) {
+            System.out.printf("Opened %d vertices and %d edges in %.1f ms%n",
+                    graph.getVertexCount(), graph.getEdgeCount(), (System.nanoTime() - start) / 1e6);
+            Vertex source = graph.getVertex(args.length > 1 ? args[1] : "0");
+            if (source == null) {
+                System.err.println("Source vertex not found in graph");
+                System.exit(1);
+            }
+            start = System.nanoTime();
+            workspace.search(graph, graph.indexOf(source));
+            long farthest = 0;
+            for (int i = 0, n = workspace.getReachedCount(); i < n; i++) {
+                farthest = Math.max(farthest, workspace.getDistance(workspace.getReached(i)));
+            }
+            System.out.printf("Reached %d vertices, farthest at %d, in %.1f ms%n",
+                    workspace.getReachedCount(), farthest, (System.nanoTime() - start) / 1e6);
+            System.out.printf("Off-heap: graph %.1f MiB, workspace %.1f MiB; Java heap in use %.1f MiB%n",
+                    graph.sizeInBytes() / 1048576.0, workspace.sizeInBytes() / 1048576.0,
+                    (runtime.totalMemory() - runtime.freeMemory()) / 1048576.0);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Fixed-length array of ints outside the Java heap, indexed by long.
+ * <p>
+ * The ints live in direct or memory-mapped buffers of at most
+ * {@value #CHUNK_INTS} ints each, so an array is not limited to the 2 GiB of
+ * a single buffer. {@link #close()} frees the native memory, or unmaps the
+ * file, at once rather than when the garbage collector gets round to the
+ * buffers. Any access after that throws instead of reading freed memory, but
+ * the caller must make sure no other thread is still using the array.
+ */
+final class OffHeapIntArray implements AutoCloseable {
+
+    private static final int CHUNK_SHIFT = 28;
+    static final int CHUNK_INTS = 1 << CHUNK_SHIFT;
+    private static final long CHUNK_MASK = CHUNK_INTS - 1;
+    private static final IntBuffer[] CLOSED = new IntBuffer[0];
+    /** sun.misc.Unsafe.invokeCleaner, bound to the Unsafe instance; null if unavailable */
+    private static final MethodHandle INVOKE_CLEANER = findCleaner();
+
+    private final long length;
+    private ByteBuffer[] buffers;
+    private IntBuffer[] chunks;
+    /** The only chunk, when there is just one, to skip the chunk lookup */
+    private IntBuffer single;
+
+    private OffHeapIntArray(long length, ByteBuffer[] buffers) {
+        this.length = length;
+        this.buffers = buffers;
+        this.chunks = new IntBuffer[buffers.length];
+        for (int i = 0; i < buffers.length; i++) {
+            chunks[i] = buffers[i].asIntBuffer();
+        }
+        this.single = chunks.length == 1 ? chunks[0] : null;
+    }
+
+    /**
+     * Allocates a zero-filled array in native memory
+     * @param length the number of ints
+     * @return the new array
+     */
+    static OffHeapIntArray allocate(long length) {
+        ByteBuffer[] buffers = new ByteBuffer[chunkCount(length)];
+        try {
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = ByteBuffer.allocateDirect(chunkBytes(length, i)).order(ByteOrder.nativeOrder());
+            }
+        } catch (OutOfMemoryError e) {
+            release(buffers);
+            throw e;
+        }
+        return new OffHeapIntArray(length, buffers);
+    }
+
+    /**
+     * Maps a run of little-endian ints from a file, read-only
+     * @param channel the file
+     * @param position the byte offset of the first int
+     * @param length the number of ints
+     * @return an array backed by the file
+     */
+    static OffHeapIntArray map(FileChannel channel, long position, long length) throws IOException {
+        ByteBuffer[] buffers = new ByteBuffer[chunkCount(length)];
+        try {
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        position + ((long) i << CHUNK_SHIFT) * Integer.BYTES, chunkBytes(length, i))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } catch (IOException | RuntimeException e) {
+            release(buffers);
+            throw e;
+        }
+        return new OffHeapIntArray(length, buffers);
+    }
+
+    private static int chunkCount(long length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("negative length " + length);
+        }
+        return (int) ((length + CHUNK_INTS - 1) >>> CHUNK_SHIFT);
+    }
+
+    private static int chunkBytes(long length, int chunk) {
+        return (int) Math.min(CHUNK_INTS, length - ((long) chunk << CHUNK_SHIFT)) * Integer.BYTES;
+    }
+
+    long length() {
+        return length;
+    }
+
+    int get(long index) {
+        IntBuffer chunk = single;
+        if (chunk != null) {
+            return chunk.get((int) index);
+        }
+        return chunks[(int) (index >>> CHUNK_SHIFT)].get((int) (index & CHUNK_MASK));
+    }
+
+    void set(long index, int value) {
+        IntBuffer chunk = single;
+        if (chunk != null) {
+            chunk.put((int) index, value);
+            return;
+        }
+        chunks[(int) (index >>> CHUNK_SHIFT)].put((int) (index & CHUNK_MASK), value);
+    }
+
+    /**
+     * Sets every element to the same value.
+     * <p>
+     * Time complexity: O(length)
+     */
+    void fill(int value) {
+        for (IntBuffer chunk : chunks) {
+            for (int i = 0, n = chunk.capacity(); i < n; i++) {
+                chunk.put(i, value);
+            }
+        }
+    }
+
+    /**
+     * Number of bytes of native memory or file mapping held
+     */
+    long sizeInBytes() {
+        return buffers == null ? 0 : length * Integer.BYTES;
+    }
+
+    /**
+     * Frees the memory. Calling it again does nothing.
+     */
+    @Override
+    public void close() {
+        ByteBuffer[] held = buffers;
+        if (held == null) {
+            return;
+        }
+        single = null;
+        chunks = CLOSED;
+        buffers = null;
+        release(held);
+    }
+
+    /**
+     * Frees direct or mapped buffers now, if the JDK allows it, instead of
+     * when they are garbage collected. The buffers must not be used again.
+     * @param buffers buffers returned by allocateDirect or map, not views of them
+     */
+    static void release(ByteBuffer... buffers) {
+        if (INVOKE_CLEANER == null) {
+            return; // left to the garbage collector
+        }
+        for (ByteBuffer buffer : buffers) {
+            if (buffer != null) {
+                try {
+                    INVOKE_CLEANER.invokeExact(buffer);
+                } catch (Throwable e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static MethodHandle findCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/**
+ * A {@link DijkstraWorkspace} whose distances, predecessors, epochs and heap
+ * live outside the Java heap, in {@link OffHeapIntArray}s.
+ * <p>
+ * It works with every engine that takes a workspace, such as
+ * {@link DijkstraHeap#search}, and behaves exactly like the on-heap one. A
+ * search of a huge {@link OffHeapGraph} then allocates nothing on the heap,
+ * and {@link #close()} gives the memory back as soon as the caller is done.
+ * Read the results straight from {@link #getDistance(int)} and
+ * {@link #getPredecessor(int)}: {@link #toResult} copies them onto the heap.
+ * <p>
+ * Like the on-heap workspace it is not thread-safe, and it is never handed
+ * out by {@link DijkstraWorkspace#forThread(int)}.
+ */
+public class OffHeapWorkspace extends DijkstraWorkspace implements AutoCloseable {
+
+    private final int capacity;
+    private final OffHeapIntArray distances;
+    private final OffHeapIntArray predecessors;
+    private final OffHeapIntArray reachedEpoch;
+    private final OffHeapIntArray settledEpoch;
+    private final OffHeapIntArray reached;
+    private int reachedCount;
+    private int epoch;
+    private Heap heap;
+
+    /**
+     * Creates a workspace for graphs of up to capacity vertices
+     * @param capacity the number of vertices
+     */
+    public OffHeapWorkspace(int capacity) {
+        this.capacity = capacity;
+        this.distances = OffHeapIntArray.allocate(capacity);
+        this.predecessors = OffHeapIntArray.allocate(capacity);
+        this.reachedEpoch = OffHeapIntArray.allocate(capacity);
+        this.settledEpoch = OffHeapIntArray.allocate(capacity);
+        this.reached = OffHeapIntArray.allocate(capacity);
+        begin();
+    }
+
+    /**
+     * Runs a full single-source search, leaving its distances and
+     * predecessors in this workspace.
+     * <p>
+     * Time complexity: O((V + E) log V)
+     * @param graph the graph to search, of at most capacity() vertices
+     * @param source the id of the source vertex
+     */
+    public void search(IndexedGraph graph, int source) {
+        begin();
+        DijkstraHeap.search(graph, source, this, DijkstraHeap.DEFAULT_ARITY);
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public void begin() {
+        epoch++;
+        if (epoch == Integer.MAX_VALUE) {
+            reachedEpoch.fill(0);
+            settledEpoch.fill(0);
+            epoch = 1;
+        }
+        reachedCount = 0;
+        if (heap != null) {
+            heap.clear();
+        }
+    }
+
+    /**
+     * Returns an empty off-heap heap of the given arity sized for this workspace
+     */
+    @Override
+    public IndexedDaryHeap heap(int arity) {
+        if (heap == null || heap.getArity() != arity) {
+            if (heap != null) {
+                heap.close();
+            }
+            heap = new Heap(capacity, arity);
+        }
+        return heap;
+    }
+
+    @Override
+    public int getDistance(int vertex) {
+        return reachedEpoch.get(vertex) == epoch ? distances.get(vertex) : Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int getPredecessor(int vertex) {
+        return reachedEpoch.get(vertex) == epoch ? predecessors.get(vertex) : -1;
+    }
+
+    @Override
+    public void update(int vertex, int distance, int predecessor) {
+        if (reachedEpoch.get(vertex) != epoch) {
+            reachedEpoch.set(vertex, epoch);
+            reached.set(reachedCount++, vertex);
+        }
+        distances.set(vertex, distance);
+        predecessors.set(vertex, predecessor);
+    }
+
+    @Override
+    public boolean isSettled(int vertex) {
+        return settledEpoch.get(vertex) == epoch;
+    }
+
+    @Override
+    public void settle(int vertex) {
+        settledEpoch.set(vertex, epoch);
+    }
+
+    @Override
+    public int getReachedCount() {
+        return reachedCount;
+    }
+
+    @Override
+    public int getReached(int i) {
+        return reached.get(i);
+    }
+
+    /**
+     * Number of bytes of native memory held, including the heap if one was made
+     */
+    public long sizeInBytes() {
+        long bytes = distances.sizeInBytes() + predecessors.sizeInBytes() + reachedEpoch.sizeInBytes()
+                + settledEpoch.sizeInBytes() + reached.sizeInBytes();
+        return heap == null ? bytes : bytes + heap.sizeInBytes();
+    }
+
+    /**
+     * Frees the memory of the workspace and its heap. The workspace must not
+     * be used afterwards. Calling it again does nothing.
+     */
+    @Override
+    public void close() {
+        distances.close();
+        predecessors.close();
+        reachedEpoch.close();
+        settledEpoch.close();
+        reached.close();
+        if (heap != null) {
+            heap.close();
+        }
+    }
+
+    /**
+     * The {@link IndexedDaryHeap} algorithm over off-heap arrays. Positions
+     * are stored plus one, so that the zero-filled memory reads as "not in
+     * the heap" without an O(V) fill.
+     */
+    static final class Heap extends IndexedDaryHeap implements AutoCloseable {
+
+        private final int arity;
+        private final OffHeapIntArray keys;
+        private final OffHeapIntArray heap;
+        private final OffHeapIntArray position;
+        private int size;
+
+        Heap(int capacity, int arity) {
+            super(arity);
+            this.arity = arity;
+            this.keys = OffHeapIntArray.allocate(capacity);
+            this.heap = OffHeapIntArray.allocate(capacity);
+            this.position = OffHeapIntArray.allocate(capacity);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(int vertex) {
+            return position.get(vertex) > 0;
+        }
+
+        @Override
+        public int getKey(int vertex) {
+            return position.get(vertex) > 0 ? keys.get(vertex) : Integer.MAX_VALUE;
+        }
+
+        @Override
+        public void insert(int vertex, int key) {
+            keys.set(vertex, key);
+            heap.set(size, vertex);
+            position.set(vertex, size + 1);
+            siftUp(size++);
+        }
+
+        @Override
+        public void decreaseKey(int vertex, int key) {
+            int index = position.get(vertex) - 1;
+            if (index < 0) {
+                insert(vertex, key);
+            } else if (key < keys.get(vertex)) {
+                keys.set(vertex, key);
+                siftUp(index);
+            }
+        }
+
+        @Override
+        public int peek() {
+            return heap.get(0);
+        }
+
+        @Override
+        public int extractMin() {
+            int min = heap.get(0);
+            position.set(min, 0);
+            int last = heap.get(--size);
+            if (size > 0) {
+                heap.set(0, last);
+                position.set(last, 1);
+                siftDown(0);
+            }
+            return min;
+        }
+
+        @Override
+        public void clear() {
+            for (int i = 0; i < size; i++) {
+                position.set(heap.get(i), 0);
+            }
+            size = 0;
+        }
+
+        private void siftUp(int index) {
+            int vertex = heap.get(index);
+            int key = keys.get(vertex);
+            while (index > 0) {
+                int parentIndex = (index - 1) / arity;
+                int parent = heap.get(parentIndex);
+                if (key >= keys.get(parent)) {
+                    break;
+                }
+                heap.set(index, parent);
+                position.set(parent, index + 1);
+                index = parentIndex;
+            }
+            heap.set(index, vertex);
+            position.set(vertex, index + 1);
+        }
+
+        private void siftDown(int index) {
+            int vertex = heap.get(index);
+            int key = keys.get(vertex);
+            while (true) {
+                int firstChild = index * arity + 1;
+                if (firstChild >= size) {
+                    break;
+                }
+                int lastChild = Math.min(firstChild + arity, size);
+                int smallest = firstChild;
+                int smallestKey = keys.get(heap.get(firstChild));
+                for (int c = firstChild + 1; c < lastChild; c++) {
+                    int childKey = keys.get(heap.get(c));
+                    if (childKey < smallestKey) {
+                        smallest = c;
+                        smallestKey = childKey;
+                    }
+                }
+                if (smallestKey >= key) {
+                    break;
+                }
+                int child = heap.get(smallest);
+                heap.set(index, child);
+                position.set(child, index + 1);
+                index = smallest;
+            }
+            heap.set(index, vertex);
+            position.set(vertex, index + 1);
+        }
+
+        long sizeInBytes() {
+            return keys.sizeInBytes() + heap.sizeInBytes() + position.sizeInBytes();
+        }
+
+        @Override
+        public void close() {
+            keys.close();
+            heap.close();
+            position.close();
+        }
+    }
+}
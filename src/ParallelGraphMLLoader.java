@@ -0,0 +1,590 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Multi-core loader for large GraphML files with the flat
+ * {@code <node>}/{@code <edge>} layout that {@link GraphBuilder} assumes.
+ * <p>
+ * The file is memory-mapped and cut into chunks. Each chunk is scanned on
+ * its own core by a byte-level tag scanner that keeps the rules of
+ * {@link GraphMLStreamReader}: every {@code node} gives a vertex, every
+ * {@code edge} an edge whose weight is the text of its first {@code data}
+ * child. A chunk owns the elements whose {@code <} lies inside it and reads
+ * past its end to finish the last one, so chunks can be cut anywhere. Labels
+ * are interned per chunk straight from the mapped bytes, and only distinct
+ * labels become Strings. The chunks are then merged in file order into a
+ * {@link CompactGraph}, identical to the one
+ * {@link GraphBuilder#buildCompactFromGraphML(String)} builds.
+ * <p>
+ * The scanner only understands plain markup. Comments, CDATA sections,
+ * processing instructions, DOCTYPEs, entity references in labels or
+ * weights, non UTF-8 encodings and malformed edges make it give up, and the
+ * file is then read with the regular StAX parser instead.
+ */
+public class ParallelGraphMLLoader {
+
+    /** Chunks are at least this big, so small files are read by one task */
+    private static final int MIN_CHUNK = 1 << 20;
+    /** Chunks are at most this big, so every mapping stays well under 2 GiB */
+    private static final int MAX_CHUNK = 1 << 28;
+    /** How far a chunk's mapping extends past its end, to finish its last element */
+    private static final int OVERRUN = 1 << 20;
+
+    /**
+     * Thrown inside the scanner when the file uses GraphML it does not handle
+     */
+    static class UnsupportedMarkup extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedMarkup(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    /**
+     * Loads a GraphML file on the common ForkJoinPool
+     * @param file the path of the GraphML file
+     * @return the immutable graph described by the file
+     */
+    public static CompactGraph load(String file) throws IOException, XMLStreamException {
+        return load(file, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Loads a GraphML file, scanning chunks in parallel on the given pool and
+     * falling back to {@link GraphBuilder#buildCompactFromGraphML(String)} if
+     * the file uses markup the scanner does not handle.
+     *
+     * @param file the path of the GraphML file
+     * @param pool the pool to scan on; its parallelism sets the number of chunks
+     * @return the immutable graph described by the file
+     */
+    public static CompactGraph load(String file, ForkJoinPool pool) throws IOException, XMLStreamException {
+        long start = SearchMetrics.start();
+        CompactGraph graph;
+        try {
+            graph = loadChunked(file, pool);
+        } catch (UnsupportedMarkup e) {
+            return GraphBuilder.buildCompactFromGraphML(file);
+        }
+        SearchMetrics.phase("load", start);
+        return graph;
+    }
+
+    private static CompactGraph loadChunked(String file, ForkJoinPool pool) throws IOException, UnsupportedMarkup {
+        Chunk[] chunks;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            long size = channel.size();
+            long chunkSize = Math.max(MIN_CHUNK, Math.min(MAX_CHUNK, size / (pool.getParallelism() * 4L) + 1));
+            int count = (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+            chunks = new Chunk[count];
+            for (int i = 0; i < count; i++) {
+                long from = i * chunkSize;
+                long to = Math.min(size, from + chunkSize);
+                long mapEnd = Math.min(size, to + OVERRUN);
+                MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, from, mapEnd - from);
+                chunks[i] = new Chunk(bytes, (int) (to - from), mapEnd == size, i == 0);
+            }
+        }
+
+        AtomicReference<UnsupportedMarkup> failure = new AtomicReference<>();
+        parallelFor(pool, chunks.length, i -> {
+            try {
+                if (failure.get() == null) {
+                    chunks[i].scan();
+                }
+            } catch (UnsupportedMarkup e) {
+                failure.compareAndSet(null, e);
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, new UnsupportedMarkup(e.toString()));
+            }
+        });
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return merge(chunks, pool);
+    }
+
+    /**
+     * Numbers the labels of all chunks in label order and packs the edges,
+     * in file order, into CSR arrays.
+     */
+    private static CompactGraph merge(Chunk[] chunks, ForkJoinPool pool) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> labels = new ArrayList<>();
+        for (Chunk chunk : chunks) {
+            for (int i = 0; i < chunk.labels.count; i++) {
+                String label = chunk.labels.labelAt(i);
+                if (!ids.containsKey(label)) {
+                    ids.put(label, labels.size());
+                    labels.add(label);
+                }
+            }
+        }
+        String[] sorted = labels.toArray(new String[0]);
+        Arrays.parallelSort(sorted);
+        Vertex[] vertices = new Vertex[sorted.length];
+        for (int v = 0; v < sorted.length; v++) {
+            vertices[v] = new Vertex(sorted[v]);
+            ids.put(sorted[v], v);
+        }
+
+        int[] firstEdge = new int[chunks.length + 1];
+        for (int i = 0; i < chunks.length; i++) {
+            firstEdge[i + 1] = firstEdge[i] + chunks[i].edgeCount;
+        }
+        int edgeCount = firstEdge[chunks.length];
+        int[] sources = new int[edgeCount];
+        int[] targets = new int[edgeCount];
+        int[] weights = new int[edgeCount];
+        parallelFor(pool, chunks.length, i -> {
+            Chunk chunk = chunks[i];
+            int[] global = new int[chunk.labels.count];
+            for (int l = 0; l < global.length; l++) {
+                global[l] = ids.get(chunk.labels.labelAt(l));
+            }
+            for (int e = 0, at = firstEdge[i]; e < chunk.edgeCount; e++, at++) {
+                sources[at] = global[chunk.edges[3 * e]];
+                targets[at] = global[chunk.edges[3 * e + 1]];
+                weights[at] = chunk.edges[3 * e + 2];
+            }
+            chunk.edges = null;
+        });
+        return CompactGraph.pack(vertices, null, sources, targets, weights, edgeCount);
+    }
+
+    interface IndexTask {
+        void run(int index);
+    }
+
+    private static void parallelFor(ForkJoinPool pool, int count, IndexTask task) {
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                List<RecursiveAction> tasks = new ArrayList<>();
+                for (int i = 0; i < count; i++) {
+                    int index = i;
+                    tasks.add(new RecursiveAction() {
+                        @Override
+                        protected void compute() {
+                            task.run(index);
+                        }
+                    });
+                }
+                invokeAll(tasks);
+            }
+        });
+    }
+
+    /**
+     * One mapped slice of the file and what was found in it
+     */
+    static class Chunk {
+        private final MappedByteBuffer bytes;
+        private final int end;
+        private final boolean last;
+        private final boolean first;
+
+        final ByteLabels labels;
+        int[] edges = new int[3 * 1024];
+        int edgeCount;
+
+        Chunk(MappedByteBuffer bytes, int end, boolean last, boolean first) {
+            this.bytes = bytes;
+            this.end = end;
+            this.last = last;
+            this.first = first;
+            this.labels = new ByteLabels(bytes);
+        }
+
+        /**
+         * Scans the elements starting in [0, end) of the mapping, the same
+         * way GraphMLStreamReader reads them.
+         */
+        void scan() throws UnsupportedMarkup {
+            int limit = bytes.limit();
+            if (first && limit >= 2 && ((bytes.get(0) & 0xff) == 0xfe || (bytes.get(0) & 0xff) == 0xff)) {
+                throw new UnsupportedMarkup("UTF-16 byte order mark"); // 0xfe and 0xff never start UTF-8
+            }
+            int pos = next(0, limit);
+            boolean inEdge = false;
+            int source = -1;
+            int target = -1;
+            boolean hasWeight = false;
+            int weight = 0;
+
+            while (pos < limit && (pos < end || inEdge)) {
+                // pos is at '<'
+                int p = pos + 1;
+                if (p >= limit) {
+                    break;
+                }
+                byte b = bytes.get(p);
+                if (b == '!') {
+                    throw new UnsupportedMarkup("comment, CDATA or DOCTYPE at " + pos);
+                }
+                if (b == '?') {
+                    if (!first || pos > 3 || !startsWith(p + 1, "xml")) {
+                        throw new UnsupportedMarkup("processing instruction at " + pos);
+                    }
+                    int close = indexOf(p, limit, (byte) '>');
+                    checkEncoding(p, close);
+                    pos = next(close + 1, limit);
+                    continue;
+                }
+                boolean endTag = b == '/';
+                if (endTag) {
+                    p++;
+                }
+                int nameStart = p;
+                while (p < limit && !isNameEnd(bytes.get(p))) {
+                    p++;
+                }
+                int localStart = nameStart;
+                for (int i = nameStart; i < p; i++) {
+                    if (bytes.get(i) == ':') {
+                        localStart = i + 1;
+                    }
+                }
+                int close = indexOf(p, limit, (byte) '>');
+                boolean selfClosing = bytes.get(close - 1) == '/';
+
+                if (endTag) {
+                    if (inEdge && nameIs(localStart, p, "edge")) {
+                        if (!hasWeight) {
+                            throw new UnsupportedMarkup("edge without weight at " + pos);
+                        }
+                        addEdge(source, target, weight);
+                        inEdge = false;
+                    }
+                } else if (nameIs(localStart, p, "node")) {
+                    int[] id = attribute(p, close, "id");
+                    if (id == null) {
+                        throw new UnsupportedMarkup("node without id at " + pos);
+                    }
+                    labels.idOf(id[0], id[1]);
+                } else if (nameIs(localStart, p, "edge")) {
+                    int[] s = attribute(p, close, "source");
+                    int[] t = attribute(p, close, "target");
+                    if (s == null || t == null || selfClosing) {
+                        throw new UnsupportedMarkup("edge without source, target or weight at " + pos);
+                    }
+                    source = labels.idOf(s[0], s[1]);
+                    target = labels.idOf(t[0], t[1]);
+                    hasWeight = false;
+                    inEdge = true;
+                } else if (nameIs(localStart, p, "data") && inEdge && !hasWeight) {
+                    if (selfClosing) {
+                        throw new UnsupportedMarkup("empty weight at " + pos);
+                    }
+                    int textEnd = indexOf(close + 1, limit, (byte) '<');
+                    weight = parseWeight(close + 1, textEnd);
+                    hasWeight = true;
+                    close = closeOfEndTag(textEnd, limit, "data");
+                }
+                pos = next(close + 1, limit);
+            }
+            if (inEdge) {
+                throw new UnsupportedMarkup("edge crosses the end of the mapped chunk");
+            }
+        }
+
+        private void addEdge(int source, int target, int weight) {
+            if (3 * edgeCount == edges.length) {
+                edges = Arrays.copyOf(edges, edges.length * 2);
+            }
+            edges[3 * edgeCount] = source;
+            edges[3 * edgeCount + 1] = target;
+            edges[3 * edgeCount + 2] = weight;
+            edgeCount++;
+        }
+
+        /** Position of the next '<' at or after from, or limit */
+        private int next(int from, int limit) {
+            for (int i = from; i < limit; i++) {
+                if (bytes.get(i) == '<') {
+                    return i;
+                }
+            }
+            return limit;
+        }
+
+        private int indexOf(int from, int limit, byte target) throws UnsupportedMarkup {
+            for (int i = from; i < limit; i++) {
+                if (bytes.get(i) == target) {
+                    return i;
+                }
+            }
+            throw new UnsupportedMarkup(last ? "unexpected end of file" : "element longer than the chunk overrun");
+        }
+
+        private static boolean isNameEnd(byte b) {
+            return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '/' || b == '>';
+        }
+
+        private boolean nameIs(int from, int to, String name) {
+            if (to - from != name.length()) {
+                return false;
+            }
+            return startsWith(from, name);
+        }
+
+        private boolean startsWith(int from, String text) {
+            if (from + text.length() > bytes.limit()) {
+                return false;
+            }
+            for (int i = 0; i < text.length(); i++) {
+                if (bytes.get(from + i) != text.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Finds an attribute inside a start tag
+         * @return the start and end of its value, or null if absent
+         */
+        private int[] attribute(int from, int close, String name) throws UnsupportedMarkup {
+            int p = from;
+            while (p < close) {
+                byte b = bytes.get(p);
+                if (b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '/') {
+                    p++;
+                    continue;
+                }
+                int nameStart = p;
+                while (p < close && bytes.get(p) != '=' && !isNameEnd(bytes.get(p))) {
+                    p++;
+                }
+                int nameEnd = p;
+                while (p < close && bytes.get(p) != '=') {
+                    p++;
+                }
+                p++;
+                while (p < close && bytes.get(p) != '"' && bytes.get(p) != '\'') {
+                    p++;
+                }
+                if (p >= close) {
+                    throw new UnsupportedMarkup("malformed attribute at " + nameStart);
+                }
+                byte quote = bytes.get(p);
+                int valueStart = ++p;
+                while (p < close && bytes.get(p) != quote) {
+                    p++;
+                }
+                if (p >= close) {
+                    // a '>' inside a quoted value; the tag end was found too early
+                    throw new UnsupportedMarkup("'>' in attribute value at " + valueStart);
+                }
+                int valueEnd = p++;
+                if (nameIs(nameStart, nameEnd, name)) {
+                    for (int i = valueStart; i < valueEnd; i++) {
+                        byte c = bytes.get(i);
+                        // entities and whitespace would need the XML parser's normalisation
+                        if (c == '&' || c == '\t' || c == '\n' || c == '\r') {
+                            throw new UnsupportedMarkup("attribute needs normalisation at " + valueStart);
+                        }
+                    }
+                    return new int[] {valueStart, valueEnd};
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Parses the text of a data element like Integer.parseInt(text.trim())
+         */
+        private int parseWeight(int from, int to) throws UnsupportedMarkup {
+            while (from < to && (bytes.get(from) & 0xff) <= ' ') {
+                from++;
+            }
+            while (to > from && (bytes.get(to - 1) & 0xff) <= ' ') {
+                to--;
+            }
+            boolean negative = false;
+            if (from < to && (bytes.get(from) == '-' || bytes.get(from) == '+')) {
+                negative = bytes.get(from) == '-';
+                from++;
+            }
+            if (from == to || to - from > 9) {
+                throw new UnsupportedMarkup("weight is not a small integer at " + from);
+            }
+            int value = 0;
+            for (int i = from; i < to; i++) {
+                int digit = bytes.get(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new UnsupportedMarkup("weight is not a plain integer at " + from);
+                }
+                value = value * 10 + digit;
+            }
+            return negative ? -value : value;
+        }
+
+        /**
+         * Checks that the tag at textEnd closes the named element, and returns its '>'
+         */
+        private int closeOfEndTag(int textEnd, int limit, String name) throws UnsupportedMarkup {
+            int p = textEnd + 1;
+            if (p >= limit || bytes.get(p) != '/') {
+                throw new UnsupportedMarkup("element inside " + name + " at " + textEnd);
+            }
+            int close = indexOf(p, limit, (byte) '>');
+            int nameEnd = close;
+            while (nameEnd > p && isNameEnd(bytes.get(nameEnd - 1))) {
+                nameEnd--;
+            }
+            int localStart = p + 1;
+            for (int i = p + 1; i < nameEnd; i++) {
+                if (bytes.get(i) == ':') {
+                    localStart = i + 1;
+                }
+            }
+            if (!nameIs(localStart, nameEnd, name)) {
+                throw new UnsupportedMarkup("mismatched end tag at " + textEnd);
+            }
+            return close;
+        }
+
+        /**
+         * Only UTF-8, or its ASCII subset, can be scanned byte by byte
+         */
+        private void checkEncoding(int from, int close) throws UnsupportedMarkup {
+            byte[] declaration = new byte[close - from];
+            bytes.get(from, declaration);
+            String text = new String(declaration, StandardCharsets.US_ASCII).toLowerCase(Locale.ROOT);
+            int at = text.indexOf("encoding");
+            if (at >= 0) {
+                String rest = text.substring(at);
+                if (!rest.matches("encoding\\s*=\\s*[\"'](utf-8|us-ascii|ascii)[\"'][\\s\\S]*")) {
+                    throw new UnsupportedMarkup("encoding is not UTF-8");
+                }
+            }
+        }
+    }
+
+    /**
+     * Open-addressing table interning labels by their bytes in the mapping,
+     * so a label becomes a String only the first time a chunk sees it
+     */
+    static class ByteLabels {
+        private final MappedByteBuffer bytes;
+        private int[] slots = new int[1024]; // local id + 1, 0 if empty
+        private int[] hashes = new int[512];
+        private int[] starts = new int[512];
+        private int[] lengths = new int[512];
+        private String[] strings = new String[512];
+        int count;
+
+        ByteLabels(MappedByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        int idOf(int from, int to) {
+            int hash = 0;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + bytes.get(i);
+            }
+            int mask = slots.length - 1;
+            for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+                int id = slots[slot] - 1;
+                if (id < 0) {
+                    return add(slot, hash, from, to);
+                }
+                if (hashes[id] == hash && equal(id, from, to)) {
+                    return id;
+                }
+            }
+        }
+
+        private boolean equal(int id, int from, int to) {
+            if (lengths[id] != to - from) {
+                return false;
+            }
+            for (int i = 0, start = starts[id]; i < lengths[id]; i++) {
+                if (bytes.get(start + i) != bytes.get(from + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int add(int slot, int hash, int from, int to) {
+            int id = count++;
+            if (id == hashes.length) {
+                int capacity = id * 2;
+                hashes = Arrays.copyOf(hashes, capacity);
+                starts = Arrays.copyOf(starts, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                strings = Arrays.copyOf(strings, capacity);
+            }
+            hashes[id] = hash;
+            starts[id] = from;
+            lengths[id] = to - from;
+            byte[] label = new byte[to - from];
+            bytes.get(from, label);
+            strings[id] = new String(label, StandardCharsets.UTF_8);
+            slots[slot] = id + 1;
+            if (2 * count > slots.length) {
+                rehash();
+            }
+            return id;
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            int mask = slots.length - 1;
+            for (int id = 0; id < count; id++) {
+                int slot = mix(hashes[id]) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = id + 1;
+            }
+        }
+
+        private static int mix(int hash) {
+            return hash ^ (hash >>> 16) * 0x45d9f3b;
+        }
+
+        String labelAt(int id) {
+            return strings[id];
+        }
+    }
+
+    /**
+     * Loads a GraphML file with the parallel loader and with the regular
+     * parser and reports the time each took.
+     * <pre>
+     * java ParallelGraphMLLoader graph.graphml
+     * </pre>
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: java ParallelGraphMLLoader <graphml file>");
+            System.exit(1);
+        }
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            CompactGraph parallel = load(args[0]);
+            long middle = System.nanoTime();
+            CompactGraph sequential = GraphBuilder.buildCompactFromGraphML(args[0]);
+            long end = System.nanoTime();
+            System.out.printf("parallel %.1f ms, streaming %.1f ms: %d vertices, %d edges%n",
+                    (middle - start) / 1e6, (end - middle) / 1e6, parallel.getVertexCount(), parallel.getEdgeCount());
+            if (parallel.getEdgeCount() != sequential.getEdgeCount()
+                    || parallel.getVertexCount() != sequential.getVertexCount()) {
+                System.err.println("the loaders disagree");
+                System.exit(2);
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes every shortest path of a search in the format of
+ * {@link DijkstraShortestPath.DijkstraResult#printResults(Graph)}, byte for byte:
+ * <pre>
+ * shortest path to 3: 0 1 3: cost = 7
+ * shortest path to 4: NO PATH
+ * </pre>
+ * Paths are read straight out of the predecessor array into a reusable
+ * stack of vertex ids and written as bytes into one large buffer that is
+ * flushed to a channel when full. No path lists, strings or per-token print
+ * calls are made, so the cost is the size of the output.
+ */
+public class PathWriter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte[] PREFIX = "shortest path to ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NO_PATH = ": NO PATH".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] COST = ": cost = ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private final WritableByteChannel channel;
+    private final OutputStream out;
+    private final ByteBuffer buffer;
+    private final byte[] digits = new byte[11];
+
+    /**
+     * @param channel where the output goes; it is not closed by the writer
+     */
+    public PathWriter(WritableByteChannel channel) {
+        this(channel, null);
+    }
+
+    /**
+     * @param out where the output goes; it is flushed, but not closed, by {@link #flush()}
+     */
+    public PathWriter(OutputStream out) {
+        this(Channels.newChannel(out), out);
+    }
+
+    private PathWriter(WritableByteChannel channel, OutputStream out) {
+        this.channel = channel;
+        this.out = out;
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    }
+
+    /**
+     * Writes the path to every vertex, in vertex id (and so label) order.
+     * <p>
+     * Time complexity: O(V + total path length)
+     * @param graph the graph that was searched
+     * @param distances distance per vertex id, Integer.MAX_VALUE if unreachable
+     * @param predecessors predecessor id per vertex id, -1 if none
+     * @throws IOException if the channel cannot be written
+     */
+    public void writeAll(IndexedGraph graph, int[] distances, int[] predecessors) throws IOException {
+        int n = graph.getVertexCount();
+        byte[][] labels = new byte[n][];
+        int[] stack = new int[n];
+        for (int v = 0; v < n; v++) {
+            put(PREFIX);
+            put(label(graph, labels, v));
+            if (distances[v] == Integer.MAX_VALUE) {
+                put(NO_PATH);
+            } else {
+                put((byte) ':');
+                int depth = 0;
+                for (int u = v; u >= 0; u = predecessors[u]) {
+                    stack[depth++] = u;
+                }
+                while (depth > 0) {
+                    put((byte) ' ');
+                    put(label(graph, labels, stack[--depth]));
+                }
+                put(COST);
+                putInt(distances[v]);
+            }
+            put(NEWLINE);
+        }
+    }
+
+    private static byte[] label(IndexedGraph graph, byte[][] labels, int v) {
+        byte[] label = labels[v];
+        if (label == null) {
+            label = graph.vertexAt(v).getLabel().getBytes(StandardCharsets.UTF_8);
+            labels[v] = label;
+        }
+        return label;
+    }
+
+    private void put(byte b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            drain();
+        }
+        buffer.put(b);
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            int count = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, count);
+            offset += count;
+        }
+    }
+
+    private void putInt(int value) throws IOException {
+        // Distances are never negative
+        int i = digits.length;
+        do {
+            digits[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        while (i < digits.length) {
+            put(digits[i++]);
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes out everything buffered so far
+     * @throws IOException if the channel cannot be written
+     */
+    public void flush() throws IOException {
+        drain();
+        if (out != null) {
+            out.flush();
+        }
+    }
+}
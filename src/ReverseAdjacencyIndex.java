@@ -0,0 +1,66 @@
+/**
+ * CSR index of the incoming edges of an {@link IndexedGraph}, so a search can
+ * walk the graph backwards from a target.
+ * <p>
+ * The edges entering vertex {@code v} are the ids in
+ * {@code [edgeStart(v), edgeEnd(v))}; {@link #edgeSource(int)} gives the
+ * vertex each one leaves from.
+ */
+public class ReverseAdjacencyIndex {
+
+    private final int[] offsets;
+    private final int[] sources;
+    private final int[] weights;
+
+    /**
+     * Builds the reverse index with a counting sort over the edge targets.
+     * <p>
+     * Time complexity: O(V + E)
+     * @param graph the graph to index
+     */
+    public ReverseAdjacencyIndex(IndexedGraph graph) {
+        int n = graph.getVertexCount();
+        offsets = new int[n + 1];
+        sources = new int[graph.getEdgeCount()];
+        weights = new int[sources.length];
+
+        for (int v = 0; v < n; v++) {
+            for (int e = graph.edgeStart(v), end = graph.edgeEnd(v); e < end; e++) {
+                offsets[graph.edgeTarget(e) + 1]++;
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] next = new int[n];
+        System.arraycopy(offsets, 0, next, 0, n);
+        for (int v = 0; v < n; v++) {
+            for (int e = graph.edgeStart(v), end = graph.edgeEnd(v); e < end; e++) {
+                int slot = next[graph.edgeTarget(e)]++;
+                sources[slot] = v;
+                weights[slot] = graph.edgeWeight(e);
+            }
+        }
+    }
+
+    public int edgeStart(int index) {
+        return offsets[index];
+    }
+
+    public int edgeEnd(int index) {
+        return offsets[index + 1];
+    }
+
+    /**
+     * Get the id of the vertex an incoming edge leaves from
+     * @param edge the reverse edge id
+     * @return the id of the source vertex
+     */
+    public int edgeSource(int edge) {
+        return sources[edge];
+    }
+
+    public int edgeWeight(int edge) {
+        return weights[edge];
+    }
+}
@@ -0,0 +1,284 @@
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.*;
+import jdk.jfr.*;
+
+/**
+ * Collects search counters and phase timings from the engines and
+ * {@link GraphBuilder}, and passes them on to listeners, JFR and JMX.
+ * <p>
+ * Metrics are off unless the {@code dijkstra.metrics} system property is
+ * {@code true} or {@link #enable(boolean)} is called. While off, an
+ * engine pays for a few local counter increments and one volatile read per
+ * search; no objects are created and nothing is published.
+ * <p>
+ * When on, every search and phase is
+ * <ul>
+ *   <li>added to running totals, readable here or through the
+ *       {@code dijkstra:type=SearchMetrics} MXBean;</li>
+ *   <li>committed as a {@code dijkstra.Search} or {@code dijkstra.Phase}
+ *       JFR event, if a recording has those events enabled;</li>
+ *   <li>handed to every registered {@link Listener}.</li>
+ * </ul>
+ */
+public class SearchMetrics implements SearchMetricsMXBean {
+
+    /**
+     * Receives each search and phase as it completes. Called on the thread
+     * that ran it, so implementations must be thread-safe and quick.
+     */
+    public interface Listener {
+        void searchCompleted(SearchStats stats);
+
+        void phaseCompleted(String phase, long durationNanos);
+    }
+
+    private static final SearchMetrics INSTANCE = new SearchMetrics();
+    private static volatile boolean enabled;
+
+    static {
+        if (Boolean.getBoolean("dijkstra.metrics")) {
+            enable(true);
+        }
+    }
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder settled = new LongAdder();
+    private final LongAdder relaxed = new LongAdder();
+    private final LongAdder improved = new LongAdder();
+    private final LongAdder stalePops = new LongAdder();
+    private final LongAdder inserts = new LongAdder();
+    private final LongAdder decreaseKeys = new LongAdder();
+    private final LongAccumulator peakQueueSize = new LongAccumulator(Math::max, 0);
+    private final LongAdder searchNanos = new LongAdder();
+    private final Map<String, LongAdder> phaseNanos = new ConcurrentHashMap<>();
+    private boolean registered;
+
+    private SearchMetrics() {
+    }
+
+    /**
+     * Returns the process-wide metrics, which is also the registered MXBean
+     */
+    public static SearchMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Whether the engines should report. Engines read this once per search.
+     */
+    public static boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns reporting on or off. Turning it on registers the MXBean if it
+     * is not registered yet.
+     * @param on whether searches and phases should be reported
+     */
+    public static void enable(boolean on) {
+        if (on) {
+            INSTANCE.register();
+        }
+        enabled = on;
+    }
+
+    /**
+     * Starts timing something if metrics are enabled
+     * @return System.nanoTime(), or 0 when metrics are off
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Reports a finished search. Engines call this only when {@link #enabled()}.
+     * @param stats the counters of the search
+     */
+    public static void record(SearchStats stats) {
+        INSTANCE.add(stats);
+    }
+
+    /**
+     * Reports a finished phase, if metrics are enabled
+     * @param phase the name of the phase, such as "load", "search" or "output"
+     * @param startNanos the value returned by {@link #start()} when the phase began
+     */
+    public static void phase(String phase, long startNanos) {
+        if (enabled && startNanos != 0) {
+            INSTANCE.addPhase(phase, System.nanoTime() - startNanos);
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void add(SearchStats stats) {
+        searches.increment();
+        settled.add(stats.getSettled());
+        relaxed.add(stats.getRelaxed());
+        improved.add(stats.getImproved());
+        stalePops.add(stats.getStalePops());
+        inserts.add(stats.getInserts());
+        decreaseKeys.add(stats.getDecreaseKeys());
+        peakQueueSize.accumulate(stats.getPeakQueueSize());
+        searchNanos.add(stats.getDurationNanos());
+
+        SearchEvent event = new SearchEvent();
+        if (event.shouldCommit()) {
+            event.engine = stats.getEngine();
+            event.searchDuration = stats.getDurationNanos();
+            event.settled = stats.getSettled();
+            event.relaxed = stats.getRelaxed();
+            event.improved = stats.getImproved();
+            event.stalePops = stats.getStalePops();
+            event.inserts = stats.getInserts();
+            event.decreaseKeys = stats.getDecreaseKeys();
+            event.peakQueueSize = stats.getPeakQueueSize();
+            event.commit();
+        }
+        for (Listener listener : listeners) {
+            listener.searchCompleted(stats);
+        }
+    }
+
+    private void addPhase(String phase, long nanos) {
+        phaseNanos.computeIfAbsent(phase, k -> new LongAdder()).add(nanos);
+
+        PhaseEvent event = new PhaseEvent();
+        if (event.shouldCommit()) {
+            event.phase = phase;
+            event.phaseDuration = nanos;
+            event.commit();
+        }
+        for (Listener listener : listeners) {
+            listener.phaseCompleted(phase, nanos);
+        }
+    }
+
+    private synchronized void register() {
+        if (registered) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("dijkstra:type=SearchMetrics"));
+        } catch (JMException e) {
+            System.err.println("Could not register SearchMetrics MXBean: " + e.getMessage());
+        }
+        registered = true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean on) {
+        enable(on);
+    }
+
+    @Override
+    public long getSearches() { return searches.sum(); }
+
+    @Override
+    public long getSettled() { return settled.sum(); }
+
+    @Override
+    public long getRelaxed() { return relaxed.sum(); }
+
+    @Override
+    public long getImproved() { return improved.sum(); }
+
+    @Override
+    public long getStalePops() { return stalePops.sum(); }
+
+    @Override
+    public long getInserts() { return inserts.sum(); }
+
+    @Override
+    public long getDecreaseKeys() { return decreaseKeys.sum(); }
+
+    @Override
+    public long getPeakQueueSize() { return peakQueueSize.get(); }
+
+    @Override
+    public long getSearchNanos() { return searchNanos.sum(); }
+
+    @Override
+    public Map<String, Long> getPhaseNanos() {
+        Map<String, Long> totals = new TreeMap<>();
+        phaseNanos.forEach((phase, nanos) -> totals.put(phase, nanos.sum()));
+        return totals;
+    }
+
+    @Override
+    public void reset() {
+        searches.reset();
+        settled.reset();
+        relaxed.reset();
+        improved.reset();
+        stalePops.reset();
+        inserts.reset();
+        decreaseKeys.reset();
+        peakQueueSize.reset();
+        searchNanos.reset();
+        phaseNanos.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("searches=%d settled=%d relaxed=%d improved=%d stalePops=%d inserts=%d decreaseKeys=%d peakQueue=%d searchTime=%.3f ms",
+                getSearches(), getSettled(), getRelaxed(), getImproved(), getStalePops(), getInserts(),
+                getDecreaseKeys(), getPeakQueueSize(), getSearchNanos() / 1e6));
+        getPhaseNanos().forEach((phase, nanos) -> sb.append(String.format(" %s=%.3f ms", phase, nanos / 1e6)));
+        return sb.toString();
+    }
+
+    @Name("dijkstra.Search")
+    @Label("Shortest Path Search")
+    @Category("Dijkstra")
+    static class SearchEvent extends Event {
+        @Label("Engine")
+        String engine;
+        @Label("Search Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long searchDuration;
+        @Label("Settled")
+        int settled;
+        @Label("Relaxed")
+        long relaxed;
+        @Label("Improved")
+        long improved;
+        @Label("Stale Pops")
+        long stalePops;
+        @Label("Inserts")
+        long inserts;
+        @Label("Decrease Keys")
+        long decreaseKeys;
+        @Label("Peak Queue Size")
+        int peakQueueSize;
+    }
+
+    @Name("dijkstra.Phase")
+    @Label("Shortest Path Phase")
+    @Category("Dijkstra")
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+        @Label("Phase Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long phaseDuration;
+    }
+}
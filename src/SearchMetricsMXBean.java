@@ -0,0 +1,38 @@
+/**
+ * JMX view of the totals collected by {@link SearchMetrics}, registered as
+ * {@code dijkstra:type=SearchMetrics}.
+ */
+public interface SearchMetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getSearches();
+
+    long getSettled();
+
+    long getRelaxed();
+
+    long getImproved();
+
+    long getStalePops();
+
+    long getInserts();
+
+    long getDecreaseKeys();
+
+    long getPeakQueueSize();
+
+    long getSearchNanos();
+
+    /**
+     * Total time per phase, such as load, search and output, in nanoseconds
+     */
+    java.util.Map<String, Long> getPhaseNanos();
+
+    /**
+     * Sets every total back to zero
+     */
+    void reset();
+}
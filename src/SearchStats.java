@@ -0,0 +1,66 @@
+/**
+ * Counters from one single-source search, as reported to {@link SearchMetrics}.
+ * <p>
+ * The engines count into local variables while they run and only build a
+ * SearchStats at the end, and only when metrics are enabled.
+ */
+public class SearchStats {
+
+    private final String engine;
+    private final long durationNanos;
+    private final int settled;
+    private final long relaxed;
+    private final long improved;
+    private final long stalePops;
+    private final long inserts;
+    private final long decreaseKeys;
+    private final int peakQueueSize;
+
+    /**
+     * @param engine the name of the engine that ran the search
+     * @param startNanos System.nanoTime() when the search started
+     * @param settled vertices whose distance was finalised
+     * @param relaxed edges looked at from a settled vertex
+     * @param improved relaxations that lowered a distance
+     * @param stalePops queue entries skipped because their vertex was already settled
+     * @param inserts vertices added to the queue
+     * @param decreaseKeys keys lowered in place for vertices already in the queue
+     * @param peakQueueSize the largest number of entries in the queue at once
+     */
+    public SearchStats(String engine, long startNanos, int settled, long relaxed, long improved,
+                       long stalePops, long inserts, long decreaseKeys, int peakQueueSize) {
+        this.engine = engine;
+        this.durationNanos = System.nanoTime() - startNanos;
+        this.settled = settled;
+        this.relaxed = relaxed;
+        this.improved = improved;
+        this.stalePops = stalePops;
+        this.inserts = inserts;
+        this.decreaseKeys = decreaseKeys;
+        this.peakQueueSize = peakQueueSize;
+    }
+
+    public String getEngine() { return engine; }
+
+    public long getDurationNanos() { return durationNanos; }
+
+    public int getSettled() { return settled; }
+
+    public long getRelaxed() { return relaxed; }
+
+    public long getImproved() { return improved; }
+
+    public long getStalePops() { return stalePops; }
+
+    public long getInserts() { return inserts; }
+
+    public long getDecreaseKeys() { return decreaseKeys; }
+
+    public int getPeakQueueSize() { return peakQueueSize; }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %.3f ms, settled=%d relaxed=%d improved=%d stalePops=%d inserts=%d decreaseKeys=%d peakQueue=%d",
+                engine, durationNanos / 1e6, settled, relaxed, improved, stalePops, inserts, decreaseKeys, peakQueueSize);
+    }
+}
@@ -0,0 +1,278 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.concurrent.*;
+
+/**
+ * How {@link ShardedShortestPath} starts its shard workers and talks to
+ * them. Each worker is driven by request and reply {@link Message}s, one
+ * call at a time, so a transport only has to carry messages both ways.
+ * <p>
+ * Two transports are provided:
+ * <ul>
+ *   <li>{@link #inProcess()}: one worker thread per shard in this JVM, with
+ *       messages passed by reference;</li>
+ *   <li>{@link #localSockets(boolean)}: every worker speaks the binary message
+ *       format over a loopback TCP connection, either from a thread of this
+ *       JVM or from its own worker process.</li>
+ * </ul>
+ */
+public interface ShardTransport extends AutoCloseable {
+
+    /**
+     * Starts a worker for a shard and hands it the shard
+     * @param shard the shard the worker will own
+     * @param shardCount the number of shards
+     * @return a connection to the worker
+     * @throws IOException if the worker cannot be started
+     */
+    Connection open(GraphShard shard, int shardCount) throws IOException;
+
+    /**
+     * Releases whatever the transport itself holds. Connections are closed separately.
+     */
+    @Override
+    void close() throws IOException;
+
+    /**
+     * A connection to one shard worker
+     */
+    interface Connection extends AutoCloseable {
+
+        /**
+         * Sends a request and waits for the worker's reply. Calls to one
+         * connection must not overlap; calls to different ones may.
+         * @param request the request
+         * @return the reply
+         * @throws IOException if the worker failed or cannot be reached
+         */
+        Message call(Message request) throws IOException;
+
+        /**
+         * Stops the worker
+         */
+        @Override
+        void close() throws IOException;
+    }
+
+    /**
+     * Workers as threads of this JVM
+     */
+    static ShardTransport inProcess() {
+        return new InProcess();
+    }
+
+    /**
+     * Workers connected over loopback TCP sockets
+     * @param processes whether to start every worker as its own JVM, with
+     *                  this JVM's class path; otherwise workers are threads
+     *                  that still go through the socket
+     */
+    static ShardTransport localSockets(boolean processes) {
+        return new LocalSockets(processes);
+    }
+
+    /**
+     * A request to a worker, or its reply: a kind, one int and a list of int
+     * arrays. On a socket it is written as big-endian ints: kind, value,
+     * array count, then each array as its length and elements.
+     */
+    final class Message {
+
+        /** value: shard; arrays: offsets, targetShards, targetLocals, weights, {shardCount} */
+        static final int LOAD = 1;
+        /** value: 1 to start a new query; arrays: updates as (local, distance, predShard, predLocal) */
+        static final int ROUND = 2;
+        /** arrays of the reply: distances, predShards, predLocals */
+        static final int COLLECT = 3;
+        static final int STOP = 4;
+        /** ROUND reply: value: vertices scanned; arrays: the updates for every shard */
+        static final int REPLY = 5;
+        static final int ERROR = 6;
+
+        private static final int[][] NONE = new int[0][];
+
+        final int kind;
+        final int value;
+        final int[][] arrays;
+
+        Message(int kind, int value, int[]... arrays) {
+            this.kind = kind;
+            this.value = value;
+            this.arrays = arrays == null ? NONE : arrays;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(kind);
+            out.writeInt(value);
+            out.writeInt(arrays.length);
+            for (int[] array : arrays) {
+                out.writeInt(array.length);
+                ByteBuffer bytes = ByteBuffer.allocate(array.length * Integer.BYTES);
+                bytes.asIntBuffer().put(array);
+                out.write(bytes.array());
+            }
+            out.flush();
+        }
+
+        static Message read(DataInputStream in) throws IOException {
+            int kind = in.readInt();
+            int value = in.readInt();
+            int[][] arrays = new int[in.readInt()][];
+            for (int i = 0; i < arrays.length; i++) {
+                byte[] bytes = new byte[in.readInt() * Integer.BYTES];
+                in.readFully(bytes);
+                arrays[i] = new int[bytes.length / Integer.BYTES];
+                ByteBuffer.wrap(bytes).asIntBuffer().get(arrays[i]);
+            }
+            return new Message(kind, value, arrays);
+        }
+    }
+
+    /**
+     * Every worker is a ShardWorker confined to its own single thread
+     */
+    final class InProcess implements ShardTransport {
+
+        @Override
+        public Connection open(GraphShard shard, int shardCount) {
+            ShardWorker worker = new ShardWorker(shard, shardCount);
+            ExecutorService thread = Executors.newSingleThreadExecutor(task -> {
+                Thread t = new Thread(task, "shard-" + shard.getShard());
+                t.setDaemon(true);
+                return t;
+            });
+            return new Connection() {
+                @Override
+                public Message call(Message request) throws IOException {
+                    try {
+                        return thread.submit(() -> worker.handle(request)).get();
+                    } catch (ExecutionException e) {
+                        throw new IOException("shard " + shard.getShard() + " failed", e.getCause());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("interrupted waiting for shard " + shard.getShard());
+                    }
+                }
+
+                @Override
+                public void close() {
+                    thread.shutdownNow();
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Workers connect back to a loopback server socket, then get their shard
+     * in a LOAD message
+     */
+    final class LocalSockets implements ShardTransport {
+
+        private static final int ACCEPT_TIMEOUT_MILLIS = 30_000;
+
+        private final boolean processes;
+        private ServerSocket server;
+
+        LocalSockets(boolean processes) {
+            this.processes = processes;
+        }
+
+        @Override
+        public synchronized Connection open(GraphShard shard, int shardCount) throws IOException {
+            if (server == null) {
+                server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+                server.setSoTimeout(ACCEPT_TIMEOUT_MILLIS);
+            }
+            String address = "127.0.0.1:" + server.getLocalPort();
+            Process process = null;
+            if (processes) {
+                String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+                process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        "ShardWorker", address)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start();
+            } else {
+                Thread thread = new Thread(() -> {
+                    try {
+                        ShardWorker.connect(address);
+                    } catch (IOException e) {
+                        System.err.println("shard worker: " + e.getMessage());
+                    }
+                }, "shard-" + shard.getShard());
+                thread.setDaemon(true);
+                thread.start();
+            }
+
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                if (process != null) {
+                    process.destroyForcibly();
+                }
+                throw new IOException("shard worker " + shard.getShard() + " did not connect", e);
+            }
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+            Process worker = process;
+            Connection connection = new Connection() {
+                @Override
+                public Message call(Message request) throws IOException {
+                    request.write(out);
+                    Message reply = Message.read(in);
+                    if (reply.kind == Message.ERROR) {
+                        throw new IOException("shard " + shard.getShard() + " failed, see its stderr");
+                    }
+                    return reply;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        call(new Message(Message.STOP, 0));
+                    } catch (IOException e) {
+                        // the worker is gone already
+                    } finally {
+                        socket.close();
+                        if (worker != null) {
+                            try {
+                                if (!worker.waitFor(5, TimeUnit.SECONDS)) {
+                                    worker.destroyForcibly();
+                                }
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                worker.destroyForcibly();
+                            }
+                        }
+                    }
+                }
+            };
+            try {
+                connection.call(new Message(Message.LOAD, shard.getShard(), shard.offsets, shard.targetShards,
+                        shard.targetLocals, shard.weights, new int[] {shardCount}));
+            } catch (IOException e) {
+                connection.close();
+                throw e;
+            }
+            return connection;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (server != null) {
+                server.close();
+                server = null;
+            }
+        }
+    }
+}
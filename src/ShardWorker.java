@@ -0,0 +1,182 @@
+import java.io.*;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runs the searches of one shard for {@link ShardedShortestPath}.
+ * <p>
+ * A query is a series of rounds. In each round the worker takes the
+ * distance updates sent to its vertices, and from every vertex they improve
+ * runs Dijkstra over its own edges until nothing local improves. Edges that
+ * leave the shard are not followed; each one instead becomes an update for
+ * the shard that owns its target, sent in the reply as one batch per shard.
+ * Only the best distance offered to a remote vertex so far is ever sent.
+ * Because a vertex may be improved again in a later round, the rounds
+ * together are a label-correcting (Bellman-Ford style) search whose rounds
+ * are local Dijkstra searches.
+ * <p>
+ * Run as a process, the worker connects to the coordinator and waits for
+ * its shard: {@code java ShardWorker host:port}.
+ */
+public class ShardWorker {
+
+    private final GraphShard shard;
+    private final int shardCount;
+    private final int[] distances;
+    private final int[] predShards;
+    private final int[] predLocals;
+    private final IndexedDaryHeap heap;
+    /** best distance sent per remote vertex in this query, keyed by shard and local id */
+    private final Map<Long, Integer> sent = new HashMap<>();
+
+    /**
+     * @param shard the shard to search
+     * @param shardCount the number of shards in the partition
+     */
+    public ShardWorker(GraphShard shard, int shardCount) {
+        this.shard = shard;
+        this.shardCount = shardCount;
+        int n = shard.size();
+        this.distances = new int[n];
+        this.predShards = new int[n];
+        this.predLocals = new int[n];
+        this.heap = new IndexedDaryHeap(n, DijkstraHeap.DEFAULT_ARITY);
+    }
+
+    /**
+     * Handles one request from the coordinator
+     * @param request a ROUND, COLLECT or STOP message
+     * @return the reply
+     */
+    ShardTransport.Message handle(ShardTransport.Message request) {
+        switch (request.kind) {
+            case ShardTransport.Message.ROUND:
+                if (request.value == 1) {
+                    Arrays.fill(distances, Integer.MAX_VALUE);
+                    Arrays.fill(predShards, -1);
+                    Arrays.fill(predLocals, -1);
+                    sent.clear();
+                }
+                return round(request.arrays[0]);
+            case ShardTransport.Message.COLLECT:
+                return new ShardTransport.Message(ShardTransport.Message.REPLY, 0, distances, predShards, predLocals);
+            case ShardTransport.Message.STOP:
+                return new ShardTransport.Message(ShardTransport.Message.REPLY, 0);
+            default:
+                throw new IllegalArgumentException("unexpected message kind " + request.kind);
+        }
+    }
+
+    /**
+     * Applies a batch of updates and searches locally from the vertices they improve.
+     * <p>
+     * Time complexity: O((updates + local edges reached) log V)
+     */
+    private ShardTransport.Message round(int[] updates) {
+        int self = shard.getShard();
+        int scanned = 0;
+        for (int i = 0; i < updates.length; i += 4) {
+            int v = updates[i];
+            int distance = updates[i + 1];
+            if (distance < distances[v]) {
+                distances[v] = distance;
+                predShards[v] = updates[i + 2];
+                predLocals[v] = updates[i + 3];
+                heap.decreaseKey(v, distance);
+            }
+        }
+
+        IntList[] outbound = new IntList[shardCount];
+        while (!heap.isEmpty()) {
+            int v = heap.extractMin();
+            scanned++;
+            int distance = distances[v];
+            for (int e = shard.offsets[v], end = shard.offsets[v + 1]; e < end; e++) {
+                int targetShard = shard.targetShards[e];
+                int target = shard.targetLocals[e];
+                int newDistance = distance + shard.weights[e];
+                if (targetShard == self) {
+                    if (newDistance < distances[target]) {
+                        distances[target] = newDistance;
+                        predShards[target] = self;
+                        predLocals[target] = v;
+                        heap.decreaseKey(target, newDistance);
+                    }
+                } else {
+                    Long key = ((long) targetShard << 32) | target;
+                    Integer best = sent.get(key);
+                    if (best == null || newDistance < best) {
+                        sent.put(key, newDistance);
+                        IntList batch = outbound[targetShard];
+                        if (batch == null) {
+                            batch = outbound[targetShard] = new IntList();
+                        }
+                        batch.add(target);
+                        batch.add(newDistance);
+                        batch.add(self);
+                        batch.add(v);
+                    }
+                }
+            }
+        }
+
+        int[][] batches = new int[shardCount][];
+        for (int s = 0; s < shardCount; s++) {
+            batches[s] = outbound[s] == null ? new int[0] : Arrays.copyOf(outbound[s].data, outbound[s].size);
+        }
+        return new ShardTransport.Message(ShardTransport.Message.REPLY, scanned, batches);
+    }
+
+    /**
+     * Connects to a coordinator, receives a shard and serves it until told to stop
+     * @param address the coordinator's host:port
+     * @throws IOException if the connection fails
+     */
+    static void connect(String address) throws IOException {
+        int colon = address.lastIndexOf(':');
+        try (Socket socket = new Socket(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)))) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+
+            ShardTransport.Message load = ShardTransport.Message.read(in);
+            if (load.kind != ShardTransport.Message.LOAD) {
+                throw new IOException("expected a LOAD message, got kind " + load.kind);
+            }
+            int[][] a = load.arrays;
+            ShardWorker worker = new ShardWorker(new GraphShard(load.value, null, a[0], a[1], a[2], a[3]), a[4][0]);
+            new ShardTransport.Message(ShardTransport.Message.REPLY, 0).write(out);
+
+            while (true) {
+                ShardTransport.Message request = ShardTransport.Message.read(in);
+                ShardTransport.Message reply;
+                try {
+                    reply = worker.handle(request);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    new ShardTransport.Message(ShardTransport.Message.ERROR, 0).write(out);
+                    return;
+                }
+                reply.write(out);
+                if (request.kind == ShardTransport.Message.STOP) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a worker process.
+     *
+     * @param args the command line arguments: &lt;coordinator host:port&gt;
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: ShardWorker <coordinator host:port>");
+            System.exit(1);
+        }
+        connect(args[0]);
+    }
+}
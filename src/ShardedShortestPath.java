@@ -0,0 +1,257 @@
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Single-source shortest paths over a graph split into shards, each held
+ * and searched by its own {@link ShardWorker}.
+ * <p>
+ * The coordinator keeps only the partition. A query runs in rounds: every
+ * shard with pending updates gets them in one batch, searches locally, and
+ * replies with its own batches of updates for the vertices it reaches in
+ * other shards, which the coordinator routes to their owners for the next
+ * round. The shards of a round run in parallel. When a round sends no
+ * updates, every distance is final, and the distances and predecessors are
+ * collected from the shards.
+ * <p>
+ * The distances always equal those of
+ * {@link DijkstraShortestPath#dijkstraWithPriorityQueue}. Where two paths
+ * tie, the predecessor may be the other, equally short, one.
+ */
+public class ShardedShortestPath implements AutoCloseable {
+
+    private final IndexedGraph graph;
+    private final int[] shardOf;
+    private final GraphShard[] shards;
+    private final int[] localOf;
+    private final ShardTransport transport;
+    private final ShardTransport.Connection[] connections;
+    private final ExecutorService callers;
+    private int lastRounds;
+    private long lastUpdates;
+
+    /**
+     * Splits the graph and starts one worker per shard
+     * @param graph the graph to search
+     * @param shardOf the shard of every vertex id, from a {@link GraphPartitioner}
+     * @param shardCount the number of shards
+     * @param transport how to start and reach the workers; closed with this object
+     * @throws IOException if a worker cannot be started
+     */
+    public ShardedShortestPath(IndexedGraph graph, int[] shardOf, int shardCount, ShardTransport transport)
+            throws IOException {
+        this.graph = graph;
+        this.shardOf = shardOf;
+        this.shards = GraphShard.split(graph, shardOf, shardCount);
+        this.localOf = new int[graph.getVertexCount()];
+        for (GraphShard shard : shards) {
+            for (int local = 0; local < shard.size(); local++) {
+                localOf[shard.globalIds[local]] = local;
+            }
+        }
+        this.transport = transport;
+        this.connections = new ShardTransport.Connection[shardCount];
+        this.callers = Executors.newFixedThreadPool(shardCount, task -> {
+            Thread thread = new Thread(task, "shard-caller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (int s = 0; s < shardCount; s++) {
+                connections[s] = transport.open(shards[s], shardCount);
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Computes the shortest paths from a source to every vertex.
+     * <p>
+     * Time complexity: O((V + E) log V) work in total, plus one message per
+     * busy shard per round
+     * @param source the source vertex
+     * @return the distances and predecessors of every vertex
+     * @throws IOException if a worker fails
+     * @throws IllegalArgumentException if the source is not in the graph
+     */
+    public IndexedDijkstraResult shortestPaths(Vertex source) throws IOException {
+        int s = graph.indexOf(source);
+        if (s < 0) {
+            throw new IllegalArgumentException("Source vertex " + source + " not found in graph");
+        }
+        int shardCount = shards.length;
+        int[][] inbox = new int[shardCount][];
+        Arrays.fill(inbox, new int[0]);
+        inbox[shardOf[s]] = new int[] {localOf[s], 0, -1, -1};
+
+        int rounds = 0;
+        long updates = 0;
+        boolean first = true;
+        while (true) {
+            List<Integer> busy = new ArrayList<>();
+            List<ShardTransport.Message> requests = new ArrayList<>();
+            for (int shard = 0; shard < shardCount; shard++) {
+                // the first round reaches every shard, to reset it for the new query
+                if (first || inbox[shard].length > 0) {
+                    busy.add(shard);
+                    requests.add(new ShardTransport.Message(ShardTransport.Message.ROUND, first ? 1 : 0, inbox[shard]));
+                }
+            }
+            if (busy.isEmpty()) {
+                break;
+            }
+            List<ShardTransport.Message> replies = callAll(busy, requests);
+            rounds++;
+            first = false;
+
+            // route each shard's batches to the shards they are for
+            IntList[] next = new IntList[shardCount];
+            for (ShardTransport.Message reply : replies) {
+                for (int target = 0; target < shardCount; target++) {
+                    int[] batch = reply.arrays[target];
+                    if (batch.length == 0) {
+                        continue;
+                    }
+                    if (next[target] == null) {
+                        next[target] = new IntList(batch.length);
+                    }
+                    for (int value : batch) {
+                        next[target].add(value);
+                    }
+                    updates += batch.length / 4;
+                }
+            }
+            for (int shard = 0; shard < shardCount; shard++) {
+                inbox[shard] = next[shard] == null ? new int[0] : Arrays.copyOf(next[shard].data, next[shard].size);
+            }
+        }
+        lastRounds = rounds;
+        lastUpdates = updates;
+
+        List<Integer> all = new ArrayList<>();
+        List<ShardTransport.Message> collect = new ArrayList<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            all.add(shard);
+            collect.add(new ShardTransport.Message(ShardTransport.Message.COLLECT, 0));
+        }
+        List<ShardTransport.Message> results = callAll(all, collect);
+        int[] distances = new int[graph.getVertexCount()];
+        int[] predecessors = new int[graph.getVertexCount()];
+        for (int shard = 0; shard < shardCount; shard++) {
+            int[][] arrays = results.get(shard).arrays;
+            int[] globalIds = shards[shard].globalIds;
+            for (int local = 0; local < globalIds.length; local++) {
+                int v = globalIds[local];
+                distances[v] = arrays[0][local];
+                int predShard = arrays[1][local];
+                predecessors[v] = predShard < 0 ? -1 : shards[predShard].globalIds[arrays[2][local]];
+            }
+        }
+        return new IndexedDijkstraResult(graph, distances, predecessors, source);
+    }
+
+    /**
+     * Sends one request to each of the given shards in parallel and waits for every reply
+     */
+    private List<ShardTransport.Message> callAll(List<Integer> targets, List<ShardTransport.Message> requests)
+            throws IOException {
+        List<Future<ShardTransport.Message>> futures = new ArrayList<>();
+        for (int i = 0; i < targets.size(); i++) {
+            ShardTransport.Connection connection = connections[targets.get(i)];
+            ShardTransport.Message request = requests.get(i);
+            futures.add(callers.submit(() -> connection.call(request)));
+        }
+        List<ShardTransport.Message> replies = new ArrayList<>();
+        try {
+            for (Future<ShardTransport.Message> future : futures) {
+                replies.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new java.io.InterruptedIOException("interrupted waiting for the shards");
+        }
+        return replies;
+    }
+
+    /**
+     * Get the number of rounds the last query took
+     */
+    public int getLastRounds() {
+        return lastRounds;
+    }
+
+    /**
+     * Get the number of boundary updates the last query sent between shards
+     */
+    public long getLastUpdates() {
+        return lastUpdates;
+    }
+
+    /**
+     * Stops the workers and closes the transport
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (ShardTransport.Connection connection : connections) {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+        }
+        callers.shutdownNow();
+        transport.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Runs a sharded search and prints the paths in the driver's format.
+     *
+     * @param args the command line arguments: &lt;graph file&gt; &lt;shards&gt;
+     *        [range|mincut] [inprocess|socket|process] [source label]
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("usage: ShardedShortestPath <graph file> <shards> [range|mincut]"
+                    + " [inprocess|socket|process] [source label]");
+            System.exit(1);
+        }
+        IndexedGraph graph = GraphBuilder.load(args[0]);
+        int shardCount = Integer.parseInt(args[1]);
+        String partitioner = args.length > 2 ? args[2] : "range";
+        String transportName = args.length > 3 ? args[3] : "inprocess";
+        String sourceLabel = args.length > 4 ? args[4] : "0";
+
+        int[] shardOf = partitioner.equals("mincut")
+                ? GraphPartitioner.byMinCut(graph, shardCount)
+                : GraphPartitioner.byVertexRange(graph, shardCount);
+        ShardTransport transport = transportName.equals("inprocess") ? ShardTransport.inProcess()
+                : ShardTransport.localSockets(transportName.equals("process"));
+        Vertex source = graph.getVertex(sourceLabel);
+        if (source == null) {
+            System.err.println("Source vertex " + sourceLabel + " not found in graph");
+            System.exit(1);
+        }
+        try (ShardedShortestPath sharded = new ShardedShortestPath(graph, shardOf, shardCount, transport)) {
+            long start = System.nanoTime();
+            IndexedDijkstraResult result = sharded.shortestPaths(source);
+            long nanos = System.nanoTime() - start;
+            result.printResults(graph);
+            System.err.printf("%d shards (%s, %d cut edges) over %s: %d rounds, %d updates, %.1f ms%n",
+                    shardCount, partitioner, GraphPartitioner.cutEdges(graph, shardOf), transportName,
+                    sharded.getLastRounds(), sharded.getLastUpdates(), nanos / 1e6);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Memory-bounded cache of shortest-path trees for one graph.
+ * <p>
+ * Trees are keyed by the graph version and the source vertex, and are
+ * stored as two int arrays indexed by vertex id. When the graph version
+ * changes (see {@link Graph#getVersion()}), every cached tree is dropped
+ * before the next lookup, so a stale tree is never served. When the
+ * estimated size of the cached trees goes over the budget, the least
+ * recently used trees are evicted.
+ * <p>
+ * The cache is thread-safe. Concurrent misses for the same source wait for
+ * a single search instead of each running their own. Mutating a
+ * {@link MyGraph} while lookups are in progress is not supported, as with
+ * the search engines themselves.
+ */
+public class ShortestPathCache {
+
+    private final Graph graph;
+    private final long budgetBytes;
+
+    // guarded by this
+    private final LinkedHashMap<Vertex, IndexedDijkstraResult> trees = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+    private long version = -1;
+    private IndexedGraph indexed;
+
+    private final ConcurrentHashMap<Vertex, CompletableFuture<IndexedDijkstraResult>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * @param graph the graph whose trees are cached
+     * @param budgetBytes the approximate heap space the cached trees may use
+     */
+    public ShortestPathCache(Graph graph, long budgetBytes) {
+        if (budgetBytes <= 0) {
+            throw new IllegalArgumentException("Cache budget must be positive");
+        }
+        this.graph = graph;
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Returns the shortest-path tree from the given source, searching only
+     * if it is not cached for the current version of the graph.
+     *
+     * @param source the source vertex
+     * @return the distances and paths from the source
+     * @throws IllegalArgumentException if the source is not in the graph
+     */
+    public DijkstraShortestPath.DijkstraResult get(Vertex source) {
+        IndexedGraph view;
+        long current = graph.getVersion();
+        synchronized (this) {
+            view = viewFor(current);
+            IndexedDijkstraResult tree = trees.get(source);
+            if (tree != null) {
+                hits.increment();
+                return tree;
+            }
+        }
+        int s = view.indexOf(source);
+        if (s < 0) {
+            throw new IllegalArgumentException("Source vertex " + source + " not found in graph");
+        }
+        misses.increment();
+
+        CompletableFuture<IndexedDijkstraResult> pending = new CompletableFuture<>();
+        CompletableFuture<IndexedDijkstraResult> running = inFlight.putIfAbsent(source, pending);
+        if (running != null) {
+            coalesced.increment();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        try {
+            DijkstraWorkspace workspace = DijkstraWorkspace.forThread(view.getVertexCount());
+            DijkstraHeap.search(view, s, workspace, DijkstraHeap.DEFAULT_ARITY);
+            IndexedDijkstraResult tree = IndexedDijkstraResult.fromWorkspace(view, workspace, view.vertexAt(s));
+            store(current, source, tree);
+            pending.complete(tree);
+            return tree;
+        } catch (RuntimeException | Error e) {
+            pending.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(source, pending);
+        }
+    }
+
+    /**
+     * Returns the indexed form of the graph for the given version, dropping
+     * every cached tree if the version has moved on.
+     */
+    private IndexedGraph viewFor(long current) {
+        if (current != version || indexed == null) {
+            if (!trees.isEmpty()) {
+                invalidations.increment();
+            }
+            trees.clear();
+            usedBytes = 0;
+            version = current;
+            indexed = graph instanceof IndexedGraph ? (IndexedGraph) graph : CompactGraph.fromGraph(graph);
+        }
+        return indexed;
+    }
+
+    private synchronized void store(long treeVersion, Vertex source, IndexedDijkstraResult tree) {
+        long size = tree.sizeInBytes();
+        if (treeVersion != version || size > budgetBytes) {
+            return;
+        }
+        if (trees.put(source, tree) == null) {
+            usedBytes += size;
+        }
+        Iterator<IndexedDijkstraResult> eldest = trees.values().iterator();
+        while (usedBytes > budgetBytes && eldest.hasNext()) {
+            usedBytes -= eldest.next().sizeInBytes();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Drops every cached tree
+     */
+    public synchronized void clear() {
+        trees.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * Returns a snapshot of the cache counters
+     * @return the current statistics
+     */
+    public synchronized Stats getStats() {
+        return new Stats(hits.sum(), misses.sum(), coalesced.sum(), evictions.sum(),
+                invalidations.sum(), trees.size(), usedBytes, budgetBytes);
+    }
+
+    /**
+     * Cache counters at one point in time
+     */
+    public static class Stats {
+        private final long hits;
+        private final long misses;
+        private final long coalesced;
+        private final long evictions;
+        private final long invalidations;
+        private final int entries;
+        private final long usedBytes;
+        private final long budgetBytes;
+
+        Stats(long hits, long misses, long coalesced, long evictions, long invalidations,
+              int entries, long usedBytes, long budgetBytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.coalesced = coalesced;
+            this.evictions = evictions;
+            this.invalidations = invalidations;
+            this.entries = entries;
+            this.usedBytes = usedBytes;
+            this.budgetBytes = budgetBytes;
+        }
+
+        /** Lookups answered from the cache */
+        public long getHits() { return hits; }
+
+        /** Lookups that were not cached, including the coalesced ones */
+        public long getMisses() { return misses; }
+
+        /** Misses that waited for a search started by another thread */
+        public long getCoalesced() { return coalesced; }
+
+        /** Trees dropped to stay within the budget */
+        public long getEvictions() { return evictions; }
+
+        /** Times the cache was emptied because the graph changed */
+        public long getInvalidations() { return invalidations; }
+
+        public int getEntries() { return entries; }
+
+        public long getUsedBytes() { return usedBytes; }
+
+        public long getBudgetBytes() { return budgetBytes; }
+
+        public double getHitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d misses=%d coalesced=%d evictions=%d invalidations=%d entries=%d bytes=%d/%d",
+                    hits, misses, coalesced, evictions, invalidations, entries, usedBytes, budgetBytes);
+        }
+    }
+}
@@ -0,0 +1,637 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Long-running query server: loads graphs once and answers shortest path
+ * queries over TCP, a Unix domain socket and/or stdin, so JVM startup and
+ * graph loading are paid once and the JIT stays warm.
+ * <p>
+ * The protocol is one request per line and one response per request. Most
+ * responses are a single line starting with {@code OK} or {@code ERR};
+ * {@code TREE} answers with the driver's output lines followed by {@code END}.
+ * <pre>
+ * GRAPHS                        list the loaded graphs
+ * PATH  graph source target     OK cost v1 v2 ... vk, or OK NO PATH
+ * DIST  graph source target     OK cost, or OK -1 if unreachable
+ * BATCH graph source t1 t2 ...  OK d1 d2 ... from one search, -1 if unreachable
+ * TREE  graph source            every path, as GraphShortestPathDriver prints them
+ * RADIUS graph source radius    OK v1 d1 v2 d2 ... for every vertex within the radius, nearest first
+ * NEAREST graph source k t1 ... OK t1 d1 ... for the k targets nearest to the source, nearest first
+ * PING                          OK PONG
+ * QUIT                          close this connection
+ * SHUTDOWN                      stop the server once running queries finish
+ * </pre>
+ * Each request runs on its own virtual thread when the JVM has them (Java 21+),
+ * and on a cached thread pool otherwise. Clients may pipeline: requests are
+ * started as soon as they are read and the responses are written back in
+ * request order. Graphs are read-only and shared by every query; search
+ * workspaces are pooled rather than kept per thread, since virtual threads
+ * do not live long enough for a ThreadLocal to pay off.
+ */
+public class ShortestPathServer {
+
+    /** Requests read ahead of the response being written, per connection */
+    private static final int MAX_PIPELINED = 1024;
+
+    private final Map<String, IndexedGraph> graphs = new LinkedHashMap<>();
+    private final Map<String, ReverseAdjacencyIndex> reverses = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<DijkstraWorkspace> workspaces = new ConcurrentLinkedQueue<>();
+    private final ExecutorService executor = newPerTaskExecutor();
+    private final List<Closeable> listeners = new CopyOnWriteArrayList<>();
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final Phaser active = new Phaser(1); // the server plus one party per open connection
+    private final AtomicBoolean stopping = new AtomicBoolean();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    /**
+     * Adds a graph under a name used by the queries
+     * @param name the name of the graph
+     * @param graph the graph, which must not change while the server runs
+     */
+    public void addGraph(String name, IndexedGraph graph) {
+        graphs.put(name, graph);
+    }
+
+    /**
+     * Returns an executor that starts a virtual thread per task, or a cached
+     * pool of daemon threads on JVMs without virtual threads.
+     */
+    static ExecutorService newPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "query");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Accepts connections on a loopback TCP port in the background
+     * @param port the port, or 0 for any free port
+     * @return the port that was bound
+     * @throws IOException if the port cannot be bound
+     */
+    public int listenTcp(int port) throws IOException {
+        ServerSocket server = new ServerSocket();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        // socket streams lock reads and writes separately, so responses go out while a read is pending
+        accept(server, "accept tcp:" + server.getLocalPort(), () -> {
+            Socket socket = server.accept();
+            start(socket::shutdownInput, socket, socket.getInputStream(), socket.getOutputStream());
+        });
+        return server.getLocalPort();
+    }
+
+    /**
+     * Accepts connections on a Unix domain socket in the background,
+     * replacing a stale socket file at the same path
+     * @param path the path of the socket file
+     * @throws FileAlreadyExistsException if a file other than a socket exists at the path
+     * @throws IOException if the socket cannot be bound
+     */
+    public void listenUnix(Path path) throws IOException {
+        if (Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            if (!isSocket(path)) {
+                throw new FileAlreadyExistsException(path.toString(), null, "not a socket, refusing to replace it");
+            }
+            Files.delete(path);
+        }
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(path));
+        // not Channels.newInputStream: its reads hold the lock that its writes need
+        accept(server, "accept " + path, () -> {
+            SocketChannel channel = server.accept();
+            start(channel::shutdownInput, channel, channelInput(channel), channelOutput(channel));
+        });
+    }
+
+    private static boolean isSocket(Path path) throws IOException {
+        try {
+            int mode = (Integer) Files.getAttribute(path, "unix:mode", LinkOption.NOFOLLOW_LINKS);
+            return (mode & 0170000) == 0140000;
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            // no unix view: sockets are the only "other" files such a system has
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isOther();
+        }
+    }
+
+    /**
+     * An open connection, as far as shutdown needs it
+     */
+    private interface Connection {
+        /** Ends the input of the connection, waking a blocked read */
+        void shutdownInput() throws IOException;
+    }
+
+    /**
+     * Accepts one connection and starts serving it
+     */
+    private interface Acceptor {
+        void acceptOne() throws IOException;
+    }
+
+    private void accept(Closeable server, String name, Acceptor acceptor) {
+        listeners.add(server);
+        Thread thread = new Thread(() -> {
+            while (!stopping.get()) {
+                try {
+                    acceptor.acceptOne();
+                } catch (ClosedChannelException e) {
+                    return;
+                } catch (IOException e) {
+                    if (stopping.get()) {
+                        return;
+                    }
+                    System.err.println("accept failed: " + e.getMessage());
+                }
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void start(Connection connection, Closeable socket, InputStream in, OutputStream out) {
+        try {
+            executor.execute(() -> {
+                connections.add(connection);
+                try {
+                    serve(in, out);
+                } finally {
+                    connections.remove(connection);
+                    try {
+                        socket.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Reads a blocking socket channel directly, which only takes the channel's read lock
+     */
+    private static InputStream channelInput(SocketChannel channel) {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return len == 0 ? 0 : channel.read(ByteBuffer.wrap(b, off, len));
+            }
+        };
+    }
+
+    /**
+     * Writes a blocking socket channel directly, which only takes the channel's write lock
+     */
+    private static OutputStream channelOutput(SocketChannel channel) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        };
+    }
+
+    /**
+     * Serves one connection until the client sends QUIT, closes its side or
+     * the server stops. Requests are read and started ahead of their
+     * responses; a writer hands the responses back in order.
+     *
+     * @param in the requests, left open
+     * @param out the responses, flushed but left open
+     */
+    public void serve(InputStream in, OutputStream out) {
+        active.register();
+        BlockingQueue<Future<String>> responses = new ArrayBlockingQueue<>(MAX_PIPELINED);
+        Future<String> endOfStream = CompletableFuture.completedFuture(null);
+        Thread writer = new Thread(() -> writeResponses(responses, out), "respond");
+        writer.setDaemon(true);
+        writer.start();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String request = line.trim();
+                if (request.isEmpty()) {
+                    continue;
+                }
+                String command = request.split("\\s+", 2)[0].toUpperCase(Locale.ROOT);
+                if (command.equals("QUIT")) {
+                    break;
+                }
+                if (command.equals("SHUTDOWN")) {
+                    responses.put(CompletableFuture.completedFuture("OK BYE"));
+                    // not on the executor: shutdown waits for the executor to drain
+                    new Thread(this::shutdown, "shutdown").start();
+                    break;
+                }
+                responses.put(executor.submit(() -> answer(request)));
+            }
+        } catch (IOException e) {
+            // the client went away, or the server closed the connection to stop
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RejectedExecutionException e) {
+            responses.offer(CompletableFuture.completedFuture("ERR server is shutting down"));
+        } finally {
+            try {
+                responses.put(endOfStream);
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            active.arriveAndDeregister();
+        }
+    }
+
+    private static void writeResponses(BlockingQueue<Future<String>> responses, OutputStream out) {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        try {
+            while (true) {
+                Future<String> next = responses.take();
+                String response;
+                try {
+                    response = next.get();
+                } catch (ExecutionException e) {
+                    response = "ERR " + e.getCause();
+                }
+                if (response == null) {
+                    break;
+                }
+                writer.write(response);
+                writer.write('\n');
+                // flush only when the pipeline has caught up, so bursts go out in few writes
+                if (responses.isEmpty()) {
+                    writer.flush();
+                }
+            }
+            writer.flush();
+        } catch (IOException e) {
+            // the client stopped reading; drain so the reader is not blocked
+            responses.clear();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Answers one request line
+     * @param request the request, without the line terminator
+     * @return the response, without the final line terminator
+     */
+    String answer(String request) {
+        String[] fields = request.trim().split("\\s+");
+        try {
+            switch (fields[0].toUpperCase(Locale.ROOT)) {
+                case "PING":
+                    return "OK PONG";
+                case "GRAPHS":
+                    return graphList();
+                case "PATH":
+                    return path(fields, true);
+                case "DIST":
+                    return path(fields, false);
+                case "BATCH":
+                    return batch(fields);
+                case "TREE":
+                    return tree(fields);
+                case "RADIUS":
+                    return radius(fields);
+                case "NEAREST":
+                    return nearest(fields);
+                default:
+                    return "ERR unknown command " + fields[0];
+            }
+        } catch (IllegalArgumentException e) {
+            return "ERR " + e.getMessage();
+        }
+    }
+
+    private String graphList() {
+        StringBuilder sb = new StringBuilder("OK");
+        for (Map.Entry<String, IndexedGraph> entry : graphs.entrySet()) {
+            sb.append(' ').append(entry.getKey())
+              .append("(vertices=").append(entry.getValue().getVertexCount())
+              .append(",edges=").append(entry.getValue().getEdgeCount()).append(')');
+        }
+        return sb.toString();
+    }
+
+    private String path(String[] fields, boolean withPath) {
+        expect(fields, 4, fields[0] + " graph source target");
+        IndexedGraph graph = graph(fields[1]);
+        Vertex source = vertex(graph, fields[2]);
+        Vertex target = vertex(graph, fields[3]);
+        ReverseAdjacencyIndex reverse = reverses.computeIfAbsent(fields[1], name -> new ReverseAdjacencyIndex(graph));
+        DijkstraWorkspace forward = borrow(graph);
+        DijkstraWorkspace backward = borrow(graph);
+        DijkstraShortestPath.DijkstraResult result;
+        try {
+            result = BidirectionalDijkstra.shortestPath(graph, reverse, source, target, forward, backward);
+        } finally {
+            workspaces.offer(forward);
+            workspaces.offer(backward);
+        }
+        int distance = result.getDistance(target);
+        if (!withPath) {
+            return "OK " + (distance == Integer.MAX_VALUE ? -1 : distance);
+        }
+        if (distance == Integer.MAX_VALUE) {
+            return "OK NO PATH";
+        }
+        StringBuilder sb = new StringBuilder("OK ").append(distance);
+        for (Vertex v : result.getPath(target)) {
+            sb.append(' ').append(v.getLabel());
+        }
+        return sb.toString();
+    }
+
+    private String batch(String[] fields) {
+        expect(fields, 3, "BATCH graph source target...");
+        IndexedGraph graph = graph(fields[1]);
+        int source = graph.indexOf(vertex(graph, fields[2]));
+        int[] targets = new int[fields.length - 3];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = graph.indexOf(vertex(graph, fields[i + 3]));
+        }
+        DijkstraWorkspace workspace = borrow(graph);
+        try {
+            DijkstraHeap.search(graph, source, workspace, DijkstraHeap.DEFAULT_ARITY);
+            StringBuilder sb = new StringBuilder("OK");
+            for (int t : targets) {
+                int distance = workspace.getDistance(t);
+                sb.append(' ').append(distance == Integer.MAX_VALUE ? -1 : distance);
+            }
+            return sb.toString();
+        } finally {
+            workspaces.offer(workspace);
+        }
+    }
+
+    private String tree(String[] fields) {
+        expect(fields, 3, "TREE graph source");
+        IndexedGraph graph = graph(fields[1]);
+        Vertex source = vertex(graph, fields[2]);
+        DijkstraWorkspace workspace = borrow(graph);
+        IndexedDijkstraResult result;
+        try {
+            DijkstraHeap.search(graph, graph.indexOf(source), workspace, DijkstraHeap.DEFAULT_ARITY);
+            result = IndexedDijkstraResult.fromWorkspace(graph, workspace, source);
+        } finally {
+            workspaces.offer(workspace);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            PathWriter writer = new PathWriter(bytes);
+            result.writeAll(writer);
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toString(StandardCharsets.UTF_8) + "END";
+    }
+
+    private String radius(String[] fields) {
+        expect(fields, 4, "RADIUS graph source radius");
+        IndexedGraph graph = graph(fields[1]);
+        int source = graph.indexOf(vertex(graph, fields[2]));
+        int radius = number(fields[3], "radius");
+        DijkstraWorkspace workspace = borrow(graph);
+        try {
+            IntList settled = BoundedDijkstra.search(graph, new int[] {source}, workspace, radius, null, 0);
+            return settledList(graph, workspace, settled);
+        } finally {
+            workspaces.offer(workspace);
+        }
+    }
+
+    private String nearest(String[] fields) {
+        expect(fields, 5, "NEAREST graph source k target...");
+        IndexedGraph graph = graph(fields[1]);
+        int source = graph.indexOf(vertex(graph, fields[2]));
+        int k = number(fields[3], "k");
+        int[] targets = new int[fields.length - 4];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = graph.indexOf(vertex(graph, fields[i + 4]));
+        }
+        Arrays.sort(targets);
+        DijkstraWorkspace workspace = borrow(graph);
+        try {
+            IntList settled = BoundedDijkstra.search(graph, new int[] {source}, workspace,
+                    BoundedDijkstra.UNBOUNDED, targets, k);
+            IntList found = new IntList();
+            for (int i = 0; i < settled.size && found.size < k; i++) {
+                if (Arrays.binarySearch(targets, settled.data[i]) >= 0) {
+                    found.add(settled.data[i]);
+                }
+            }
+            return settledList(graph, workspace, found);
+        } finally {
+            workspaces.offer(workspace);
+        }
+    }
+
+    private static String settledList(IndexedGraph graph, DijkstraWorkspace workspace, IntList vertices) {
+        StringBuilder sb = new StringBuilder("OK");
+        for (int i = 0; i < vertices.size; i++) {
+            int v = vertices.data[i];
+            sb.append(' ').append(graph.vertexAt(v).getLabel()).append(' ').append(workspace.getDistance(v));
+        }
+        return sb.toString();
+    }
+
+    private static int number(String field, String name) {
+        try {
+            int value = Integer.parseInt(field);
+            if (value >= 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException(name + " must be a non-negative integer: " + field);
+    }
+
+    private DijkstraWorkspace borrow(IndexedGraph graph) {
+        DijkstraWorkspace workspace = workspaces.poll();
+        if (workspace == null || workspace.capacity() < graph.getVertexCount()) {
+            int capacity = 0;
+            for (IndexedGraph g : graphs.values()) {
+                capacity = Math.max(capacity, g.getVertexCount());
+            }
+            workspace = new DijkstraWorkspace(capacity);
+        }
+        workspace.begin();
+        return workspace;
+    }
+
+    private IndexedGraph graph(String name) {
+        IndexedGraph graph = graphs.get(name);
+        if (graph == null) {
+            throw new IllegalArgumentException("unknown graph " + name);
+        }
+        return graph;
+    }
+
+    private static Vertex vertex(IndexedGraph graph, String label) {
+        Vertex vertex = graph.getVertex(label);
+        if (vertex == null) {
+            throw new IllegalArgumentException("vertex " + label + " not found");
+        }
+        return vertex;
+    }
+
+    private static void expect(String[] fields, int count, String usage) {
+        if (fields.length < count) {
+            throw new IllegalArgumentException("usage: " + usage);
+        }
+    }
+
+    /**
+     * Stops the server: no new connections are accepted, the connections
+     * already open are closed once their queued requests are answered, and
+     * {@link #awaitStop()} returns. Safe to call more than once.
+     */
+    public void shutdown() {
+        if (!stopping.compareAndSet(false, true)) {
+            return;
+        }
+        for (Closeable server : listeners) {
+            try {
+                server.close();
+            } catch (IOException ignored) {
+            }
+        }
+        // ending the input of each connection stops its reads; requests already read are still answered
+        for (Connection connection : connections) {
+            try {
+                connection.shutdownInput();
+            } catch (IOException ignored) {
+            }
+        }
+        try {
+            // a connection blocked reading stdin cannot be woken, so only wait so long
+            active.awaitAdvanceInterruptibly(active.arrive(), 10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            System.err.println("shutdown: gave up waiting for open connections");
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        stopped.countDown();
+    }
+
+    /**
+     * Blocks until the server has been shut down
+     */
+    public void awaitStop() throws InterruptedException {
+        stopped.await();
+    }
+
+    /**
+     * Starts the server.
+     * <pre>
+     * java ShortestPathServer [--port N] [--unix PATH] [--stdin] [name=]graphfile ...
+     * </pre>
+     * Graphs are named after their file (without extension) unless a name is
+     * given. Without --port or --unix, queries are read from stdin.
+     */
+    public static void main(String[] args) throws Exception {
+        ShortestPathServer server = new ShortestPathServer();
+        Integer port = null;
+        Path unix = null;
+        boolean stdin = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--unix":
+                    unix = Path.of(args[++i]);
+                    break;
+                case "--stdin":
+                    stdin = true;
+                    break;
+                default:
+                    String file = args[i];
+                    String name = new File(file).getName().replaceFirst("\\.[^.]*$", "");
+                    int eq = file.indexOf('=');
+                    if (eq > 0) {
+                        name = file.substring(0, eq);
+                        file = file.substring(eq + 1);
+                    }
+                    long start = System.nanoTime();
+                    IndexedGraph graph = GraphBuilder.load(file);
+                    server.addGraph(name, graph);
+                    System.err.printf("loaded %s: %d vertices, %d edges in %.1f ms%n", name,
+                            graph.getVertexCount(), graph.getEdgeCount(), (System.nanoTime() - start) / 1e6);
+            }
+        }
+        if (server.graphs.isEmpty()) {
+            System.err.println("Usage: java ShortestPathServer [--port N] [--unix PATH] [--stdin] [name=]graphfile ...");
+            System.exit(1);
+        }
+        if (port != null) {
+            System.err.println("listening on port " + server.listenTcp(port));
+        }
+        if (unix != null) {
+            server.listenUnix(unix);
+            System.err.println("listening on " + unix);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(server::shutdown));
+        if (stdin || (port == null && unix == null)) {
+            server.serve(System.in, System.out);
+            if (port == null && unix == null) {
+                server.shutdown();
+            }
+        }
+        server.awaitStop();
+        if (unix != null) {
+            Files.deleteIfExists(unix);
+        }
+    }
+}
@@ -10,7 +10,17 @@ public class Vertex implements Comparable<Vertex> {
     /**
      * The uniquely identifying label for the Vertex
      */
-    private String label;
+    private final String label;
+
+    /**
+     * The hash code, computed once since vertices are hashed on every map probe
+     */
+    private final int hash;
+
+    /**
+     * The dense id of this vertex in the immutable graph that created it
+     */
+    private Ordinal ordinal;
 
     /**
      * Enumeration to model the states of a Vertex
@@ -20,16 +30,17 @@ public class Vertex implements Comparable<Vertex> {
     public Vertex(String label)
     {
         this.label = label;
-
+        this.hash = Objects.hash(label);
     }
     
             /**
      * Returns the hash code for this object, based on the label (calls <code>this.label.hashCode()</code>.
+     * The value is cached when the vertex is created.
      * @return
      */
     @Override
     public int hashCode() {
-        return Objects.hash(label);
+        return hash;
     }
     
         /**
@@ -66,4 +77,39 @@ public class Vertex implements Comparable<Vertex> {
     public String getLabel() {
         return label;
     }
+
+    /**
+     * Records the dense id of this vertex in an immutable graph, so that
+     * graph can find it without a label lookup. Only the graph that created
+     * the vertex binds it, so a vertex never keeps another graph alive.
+     * @param owner the graph numbering the vertex
+     * @param index the id of the vertex in that graph
+     */
+    void bindOrdinal(Object owner, int index) {
+        ordinal = new Ordinal(owner, index);
+    }
+
+    /**
+     * Gets the dense id of this vertex in the given graph, if that graph bound it
+     * @param owner the graph to look up
+     * @return the id, or -1 if the vertex was not bound by that graph
+     */
+    int ordinalIn(Object owner) {
+        Ordinal o = ordinal;
+        return o != null && o.owner == owner ? o.index : -1;
+    }
+
+    /**
+     * Graph and id pair, replaced as a whole so a racing reader never sees
+     * the id of one graph paired with another
+     */
+    private static final class Ordinal {
+        final Object owner;
+        final int index;
+
+        Ordinal(Object owner, int index) {
+            this.owner = owner;
+            this.index = index;
+        }
+    }
 }
\ No newline at end of file